@@ -0,0 +1,724 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates an extractor, and an inserter when possible, for every class annotated with
+ * <code>NX.Mapping</code>. Constructor parameters are bound just like <code>NX.binding</code>
+ * does at runtime. Every package with mapped classes also gets a <code>NxMappings</code> class
+ * registering the generated extractors.
+ * <p>
+ * Annotations are looked up by name so the processor doesn't depend on the library.
+ */
+public class MappingProcessor extends AbstractProcessor {
+
+    static final String MAPPING = "com.developerb.nmxmlp.NX.Mapping";
+    static final String REGISTRATION = "NxMappings";
+
+    private static final String ATTR = "com.developerb.nmxmlp.NX.Attr";
+    private static final String CHILD = "com.developerb.nmxmlp.NX.Child";
+    private static final String SELF = "com.developerb.nmxmlp.NX.Self";
+    private static final String CREATOR = "com.developerb.nmxmlp.NX.Creator";
+
+    /**
+     * Classes with an inserter, generated in this or in earlier rounds
+     */
+    private final Set<String> inserters = new LinkedHashSet<>();
+
+    private final Set<String> registeredPackages = new LinkedHashSet<>();
+
+    private Elements elements;
+    private Types types;
+    private Messager messager;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(MAPPING);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        messager = processingEnv.getMessager();
+
+        final TypeElement mapping = elements.getTypeElement(MAPPING);
+        if (mapping == null) {
+            return false;
+        }
+
+        final Map<TypeElement, List<Property>> mapped = new LinkedHashMap<>();
+
+        for (Element element : round.getElementsAnnotatedWith(mapping)) {
+            final List<Property> properties = properties((TypeElement) element);
+
+            if (properties != null) {
+                mapped.put((TypeElement) element, properties);
+            }
+        }
+
+        resolveInserters(mapped);
+
+        final Map<PackageElement, List<TypeElement>> packages = new LinkedHashMap<>();
+
+        for (Map.Entry<TypeElement, List<Property>> entry : mapped.entrySet()) {
+            final TypeElement type = entry.getKey();
+
+            writeExtractor(type, entry.getValue());
+
+            if (inserters.contains(type.getQualifiedName().toString())) {
+                writeInserter(type, entry.getValue());
+            }
+
+            packages.computeIfAbsent(elements.getPackageOf(type), p -> new ArrayList<>()).add(type);
+        }
+
+        for (Map.Entry<PackageElement, List<TypeElement>> entry : packages.entrySet()) {
+            if (registeredPackages.add(entry.getKey().getQualifiedName().toString())) {
+                writeRegistration(entry.getKey(), entry.getValue());
+            } else {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Mapped classes found in a later round, "
+                        + REGISTRATION + " has already been generated for this package", entry.getValue().get(0));
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return Bound constructor parameters or null if the class can't be mapped
+     */
+    private List<Property> properties(TypeElement type) {
+        final Set<Modifier> modifiers = type.getModifiers();
+
+        if (type.getKind() != ElementKind.CLASS && !isRecord(type) || modifiers.contains(Modifier.ABSTRACT)) {
+            return error(type, "Only concrete classes and records can be mapped");
+        }
+        if (type.getNestingKind().isNested() && !modifiers.contains(Modifier.STATIC)) {
+            return error(type, "Inner classes can't be mapped, make it static");
+        }
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return error(type, "Private classes can't be mapped");
+        }
+
+        final ExecutableElement constructor = constructor(type);
+        if (constructor == null) {
+            return null;
+        }
+
+        final List<Property> properties = new ArrayList<>();
+
+        for (VariableElement parameter : constructor.getParameters()) {
+            final Property property = property(type, parameter);
+
+            if (property == null) {
+                return null;
+            }
+
+            properties.add(property);
+        }
+
+        return properties;
+    }
+
+    private ExecutableElement constructor(TypeElement type) {
+        final List<ExecutableElement> constructors = new ArrayList<>();
+        final List<ExecutableElement> annotated = new ArrayList<>();
+        final List<String> components = new ArrayList<>();
+
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR) {
+                constructors.add((ExecutableElement) member);
+
+                if (annotation(member, CREATOR) != null) {
+                    annotated.add((ExecutableElement) member);
+                }
+            } else if (member.getKind().name().equals("RECORD_COMPONENT")) {
+                components.add(member.getSimpleName().toString());
+            }
+        }
+
+        ExecutableElement constructor = null;
+
+        if (isRecord(type)) {
+            for (ExecutableElement candidate : constructors) {
+                final List<String> names = new ArrayList<>();
+                candidate.getParameters().forEach(parameter -> names.add(parameter.getSimpleName().toString()));
+
+                if (names.equals(components)) {
+                    constructor = candidate;
+                }
+            }
+        } else if (annotated.size() == 1) {
+            constructor = annotated.get(0);
+        } else if (annotated.isEmpty() && constructors.size() == 1) {
+            constructor = constructors.get(0);
+        }
+
+        if (constructor == null) {
+            return error(type, "Annotate a single constructor with @Creator");
+        }
+        if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+            return error(constructor, "The constructor can't be private");
+        }
+
+        return constructor;
+    }
+
+    private Property property(TypeElement owner, VariableElement parameter) {
+        final String name = parameter.getSimpleName().toString();
+        final AnnotationMirror attr = annotation(parameter, ATTR);
+        final AnnotationMirror child = annotation(parameter, CHILD);
+        final AnnotationMirror self = annotation(parameter, SELF);
+
+        if ((attr != null ? 1 : 0) + (child != null ? 1 : 0) + (self != null ? 1 : 0) > 1) {
+            return error(parameter, "Only one of @Attr, @Child and @Self can be used");
+        }
+
+        final Property.Source source;
+        final List<String> names = new ArrayList<>();
+        boolean required = true;
+
+        if (attr != null) {
+            final String value = (String) value(attr, "value");
+
+            source = Property.Source.ATTRIBUTE;
+            names.add(value.isEmpty() ? name : value);
+            required = (Boolean) value(attr, "required");
+        } else if (self != null) {
+            source = Property.Source.SELF;
+        } else {
+            source = Property.Source.CHILD;
+
+            if (child != null) {
+                for (Object value : (List<?>) value(child, "value")) {
+                    names.add((String) ((AnnotationValue) value).getValue());
+                }
+
+                required = (Boolean) value(child, "required");
+            }
+
+            if (names.isEmpty()) {
+                names.add(name);
+            }
+        }
+
+        final TypeMirror type = parameter.asType();
+        final Property.Kind kind = kind(type);
+        final boolean primitive = type.getKind().isPrimitive();
+
+        if (kind == null) {
+            return error(parameter, "Unsupported type " + type);
+        }
+        if (primitive && !required) {
+            return error(parameter, "Primitives can't be optional");
+        }
+        if (source == Property.Source.ATTRIBUTE && (kind == Property.Kind.MAPPED || kind == Property.Kind.OTHER)) {
+            return error(parameter, "Attributes can only be bound to strings, numbers, booleans and enums");
+        }
+
+        final String mappedPrefix = kind == Property.Kind.MAPPED ? qualifiedPrefix((TypeElement) types.asElement(type)) : null;
+        return new Property(name, source, kind, primitive, required, names, type.toString(),
+                types.erasure(type).toString(), mappedPrefix, accessor(owner, name, type));
+    }
+
+    private Property.Kind kind(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+                return Property.Kind.INT;
+            case LONG:
+                return Property.Kind.LONG;
+            case DOUBLE:
+                return Property.Kind.DOUBLE;
+            case FLOAT:
+                return Property.Kind.FLOAT;
+            case BOOLEAN:
+                return Property.Kind.BOOLEAN;
+            case DECLARED:
+                break;
+            default:
+                return null;
+        }
+
+        final TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+
+        switch (element.getQualifiedName().toString()) {
+            case "java.lang.String":
+                return Property.Kind.STRING;
+            case "java.lang.Integer":
+                return Property.Kind.INT;
+            case "java.lang.Long":
+                return Property.Kind.LONG;
+            case "java.lang.Double":
+                return Property.Kind.DOUBLE;
+            case "java.lang.Float":
+                return Property.Kind.FLOAT;
+            case "java.lang.Boolean":
+                return Property.Kind.BOOLEAN;
+            default:
+                break;
+        }
+
+        if (element.getKind() == ElementKind.ENUM) {
+            return Property.Kind.ENUM;
+        } else if (annotation(element, MAPPING) != null) {
+            return Property.Kind.MAPPED;
+        } else {
+            return Property.Kind.OTHER;
+        }
+    }
+
+    /**
+     * @return Expression reading the property from <code>input</code> or null if there's none
+     */
+    private String accessor(TypeElement owner, String name, TypeMirror type) {
+        final String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        String field = null;
+
+        for (Element member : elements.getAllMembers(owner)) {
+            final Set<Modifier> modifiers = member.getModifiers();
+
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)) {
+                continue;
+            }
+
+            final String memberName = member.getSimpleName().toString();
+
+            if (member.getKind() == ElementKind.METHOD && ((ExecutableElement) member).getParameters().isEmpty()
+                    && types.isSameType(((ExecutableElement) member).getReturnType(), type)
+                    && (memberName.equals(name) || memberName.equals("get" + capitalized) || memberName.equals("is" + capitalized))) {
+                return "input." + memberName + "()";
+            } else if (member.getKind() == ElementKind.FIELD && memberName.equals(name) && types.isSameType(member.asType(), type)) {
+                field = "input." + memberName;
+            }
+        }
+
+        return field;
+    }
+
+    /**
+     * Inserters can be generated when every property can be read and written,
+     * including the properties of other mapped classes.
+     */
+    private void resolveInserters(Map<TypeElement, List<Property>> mapped) {
+        final Map<String, List<Property>> candidates = new LinkedHashMap<>();
+
+        for (Map.Entry<TypeElement, List<Property>> entry : mapped.entrySet()) {
+            final String reason = whyNoInserter(entry.getValue());
+
+            if (reason == null) {
+                candidates.put(entry.getKey().getQualifiedName().toString(), entry.getValue());
+            } else {
+                messager.printMessage(Diagnostic.Kind.NOTE, "No inserter generated, " + reason, entry.getKey());
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (java.util.Iterator<Map.Entry<String, List<Property>>> iterator = candidates.entrySet().iterator(); iterator.hasNext(); ) {
+                final Map.Entry<String, List<Property>> entry = iterator.next();
+
+                for (Property property : entry.getValue()) {
+                    if (property.kind == Property.Kind.MAPPED && !candidates.containsKey(property.rawType)
+                            && !inserters.contains(property.rawType) && !generatedInserterExists(property)) {
+                        iterator.remove();
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        inserters.addAll(candidates.keySet());
+    }
+
+    private boolean generatedInserterExists(Property property) {
+        return elements.getTypeElement(property.mappedPrefix + "Inserter") != null;
+    }
+
+    private static String whyNoInserter(List<Property> properties) {
+        for (Property property : properties) {
+            if (property.accessor == null) {
+                return "there's no accessible field or method for " + property.name;
+            } else if (property.kind == Property.Kind.OTHER) {
+                return property.name + " isn't a mapped class";
+            }
+        }
+
+        return null;
+    }
+
+
+    private void writeExtractor(TypeElement type, List<Property> properties) {
+        final String prefix = prefix(type);
+        final String className = prefix + "Extractor";
+        final String typeName = type.getQualifiedName().toString();
+
+        try (PrintWriter out = open(type, className)) {
+            header(out, type);
+            out.println("/**");
+            out.println(" * Generated from {@link " + typeName + "}, don't edit.");
+            out.println(" */");
+            out.println("public final class " + className + " implements NX.Extractor<" + typeName + "> {");
+            out.println();
+            out.println("    public static final " + className + " INSTANCE = new " + className + "();");
+            out.println();
+            paths(out, properties);
+
+            boolean unchecked = false;
+            for (Property property : properties) {
+                unchecked |= property.kind == Property.Kind.OTHER && !property.type.equals(property.rawType);
+            }
+
+            out.println("    @Override");
+            if (unchecked) {
+                out.println("    @SuppressWarnings(\"unchecked\")");
+            }
+            out.println("    public " + typeName + " transform(NX.Cursor cursor) throws NX.Ex {");
+
+            final List<String> arguments = new ArrayList<>();
+            boolean parseBoolean = false;
+
+            for (Property property : properties) {
+                arguments.add(local(property));
+                read(out, property);
+
+                parseBoolean |= property.kind == Property.Kind.BOOLEAN;
+            }
+
+            out.println();
+            out.println("        return new " + typeName + "(" + String.join(", ", arguments) + ");");
+            out.println("    }");
+            out.println();
+
+            if (parseBoolean) {
+                out.println("    private static boolean parseBoolean(String text) {");
+                out.println("        final String trimmed = text.trim();");
+                out.println("        return \"true\".equals(trimmed) || \"1\".equals(trimmed);");
+                out.println("    }");
+                out.println();
+            }
+
+            out.println("}");
+        }
+    }
+
+    private static void read(PrintWriter out, Property property) {
+        final Property.Kind kind = property.kind;
+        final String local = local(property);
+        final String declaration = "        final " + property.type + " " + local + " = ";
+
+        if (property.source == Property.Source.ATTRIBUTE) {
+            final String name = literal(property.names.get(0));
+
+            if (kind.isNumber()) {
+                final String value = cast(kind, "cursor.attrAs" + kind.method + "(" + name + ")");
+                out.println(declaration + (property.required ? value : "cursor.hasAttr(" + name + ") ? " + value + " : null") + ";");
+            } else {
+                fromText(out, property, "cursor." + (property.required ? "attr" : "optionalAttr") + "(" + name + ").text()");
+            }
+
+            return;
+        }
+
+        String node = "cursor";
+
+        if (property.source == Property.Source.CHILD) {
+            node = local + "Node";
+            out.println("        final NX.Cursor " + node + " = cursor." + (property.required ? "to" : "toOptional") + "(" + property.pathConstant() + ");");
+        }
+
+        if (kind.isNumber()) {
+            final String value = cast(kind, node + ".extract" + kind.method + "()");
+            out.println(declaration + (property.required ? value : node + ".name() != null ? " + value + " : null") + ";");
+        } else if (kind == Property.Kind.MAPPED) {
+            out.println(declaration + node + ".extract(" + property.mappedPrefix + "Extractor.INSTANCE);");
+        } else if (kind == Property.Kind.OTHER) {
+            final String extracted = node + ".extract(" + property.rawType + ".class)";
+            out.println(declaration + (property.type.equals(property.rawType) ? extracted : "(" + property.type + ") " + extracted) + ";");
+        } else {
+            fromText(out, property, node + ".text()");
+        }
+    }
+
+    private static void fromText(PrintWriter out, Property property, String text) {
+        final String local = local(property);
+        final String declaration = "        final " + property.type + " " + local + " = ";
+
+        if (property.kind == Property.Kind.STRING) {
+            out.println(declaration + text + ";");
+            return;
+        } else if (property.primitive) {
+            out.println(declaration + "parseBoolean(" + text + ");");
+            return;
+        }
+
+        out.println("        final String " + local + "Text = " + text + ";");
+
+        if (property.kind == Property.Kind.BOOLEAN) {
+            out.println(declaration + local + "Text != null ? parseBoolean(" + local + "Text) : null;");
+        } else {
+            out.println(declaration + local + "Text != null ? " + property.type + ".valueOf(" + local + "Text.trim()) : null;");
+        }
+    }
+
+    private static String cast(Property.Kind kind, String value) {
+        return kind == Property.Kind.FLOAT ? "(float) " + value : value;
+    }
+
+    private void writeInserter(TypeElement type, List<Property> properties) {
+        final String className = prefix(type) + "Inserter";
+        final String typeName = type.getQualifiedName().toString();
+
+        try (PrintWriter out = open(type, className)) {
+            header(out, type);
+            out.println("/**");
+            out.println(" * Generated from {@link " + typeName + "}, don't edit.");
+            out.println(" */");
+            out.println("public final class " + className + " implements NX.Inserter<" + typeName + "> {");
+            out.println();
+            out.println("    public static final " + className + " INSTANCE = new " + className + "();");
+            out.println();
+            paths(out, properties);
+            out.println("    @Override");
+            out.println("    public void insert(NX.Cursor cursor, " + typeName + " input) throws NX.Ex {");
+
+            for (int i = 0; i < properties.size(); i++) {
+                final Property property = properties.get(i);
+                final String local = local(property);
+
+                if (i > 0) {
+                    out.println();
+                }
+
+                out.println("        final " + property.type + " " + local + " = " + property.accessor + ";");
+                write(out, property, local);
+            }
+
+            out.println("    }");
+            out.println();
+            out.println("}");
+        }
+    }
+
+    private static void write(PrintWriter out, Property property, String local) {
+        final String node = property.source == Property.Source.SELF ? "cursor" : "cursor.to(" + property.pathConstant() + ")";
+        final String statement;
+        final String missing;
+
+        if (property.kind == Property.Kind.MAPPED) {
+            statement = property.mappedPrefix + "Inserter.INSTANCE.insert(" + node + ", " + local + ");";
+        } else {
+            final String text = property.kind == Property.Kind.STRING ? local
+                    : property.kind == Property.Kind.ENUM ? local + ".name()" : "String.valueOf(" + local + ")";
+
+            statement = property.source == Property.Source.ATTRIBUTE
+                    ? "cursor.setAttr(" + literal(property.names.get(0)) + ", " + text + ");"
+                    : node + ".text(" + text + ");";
+        }
+
+        if (property.source == Property.Source.ATTRIBUTE) {
+            missing = "cursor.removeAttr(" + literal(property.names.get(0)) + ");";
+        } else if (property.source == Property.Source.CHILD) {
+            missing = "cursor.toOptional(" + property.pathConstant() + ").remove();";
+        } else {
+            missing = null;
+        }
+
+        if (property.primitive || missing == null) {
+            out.println("        " + statement);
+        } else {
+            out.println("        if (" + local + " != null) {");
+            out.println("            " + statement);
+            out.println("        } else {");
+            out.println("            " + missing);
+            out.println("        }");
+        }
+    }
+
+    private void writeRegistration(PackageElement owner, List<TypeElement> mapped) {
+        final String packageName = owner.getQualifiedName().toString();
+
+        try (PrintWriter out = open(packageName.isEmpty() ? REGISTRATION : packageName + "." + REGISTRATION, mapped.toArray(new Element[0]))) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+
+            out.println("import com.developerb.nmxmlp.NX;");
+            out.println();
+            out.println("import java.util.function.Consumer;");
+            out.println();
+            out.println("/**");
+            out.println(" * Registers the extractors generated for this package, don't edit.");
+            out.println(" */");
+            out.println("public final class " + REGISTRATION + " implements Consumer<NX.ExtractorRegistration> {");
+            out.println();
+            out.println("    public static NX register(NX nx) {");
+            out.println("        return nx.registerExtractors(new " + REGISTRATION + "());");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void accept(NX.ExtractorRegistration registration) {");
+
+            for (TypeElement type : mapped) {
+                out.println("        registration.register(" + type.getQualifiedName() + ".class, " + prefix(type) + "Extractor.INSTANCE);");
+            }
+
+            out.println("    }");
+            out.println();
+            out.println("}");
+        }
+    }
+
+    private static void paths(PrintWriter out, List<Property> properties) {
+        boolean any = false;
+
+        for (Property property : properties) {
+            if (property.source == Property.Source.CHILD) {
+                final List<String> literals = new ArrayList<>();
+                property.names.forEach(name -> literals.add(literal(name)));
+
+                out.println("    private static final NX.Path " + property.pathConstant() + " = NX.path(" + String.join(", ", literals) + ");");
+                any = true;
+            }
+        }
+
+        if (any) {
+            out.println();
+        }
+    }
+
+    private void header(PrintWriter out, TypeElement type) {
+        final String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+
+        if (!packageName.isEmpty()) {
+            out.println("package " + packageName + ";");
+            out.println();
+        }
+
+        out.println("import com.developerb.nmxmlp.NX;");
+        out.println();
+    }
+
+    private PrintWriter open(TypeElement type, String className) {
+        final String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        return open(packageName.isEmpty() ? className : packageName + "." + className, type);
+    }
+
+    private PrintWriter open(String qualifiedName, Element... originatingElements) {
+        try {
+            return new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedName, originatingElements).openWriter());
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to create " + qualifiedName, ex);
+        }
+    }
+
+    /**
+     * @return Simple names of the type and the types it's nested in, separated by underscores
+     */
+    /**
+     * Mapped types may live in another package than the class referring to their generated classes
+     */
+    private String qualifiedPrefix(TypeElement type) {
+        final PackageElement owner = elements.getPackageOf(type);
+        return owner.isUnnamed() ? prefix(type) : owner.getQualifiedName() + "." + prefix(type);
+    }
+
+    private static String prefix(TypeElement type) {
+        final List<String> names = new ArrayList<>();
+
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            names.add(0, element.getSimpleName().toString());
+        }
+
+        return String.join("_", names);
+    }
+
+    private static String local(Property property) {
+        return property.name.equals("cursor") || property.name.equals("input") ? property.name + "Value" : property.name;
+    }
+
+    private static String literal(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static boolean isRecord(TypeElement type) {
+        return type.getKind().name().equals("RECORD");
+    }
+
+    private static AnnotationMirror annotation(Element element, String name) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(name)) {
+                return annotation;
+            }
+        }
+
+        return null;
+    }
+
+    private Object value(AnnotationMirror annotation, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : elements.getElementValuesWithDefaults(annotation).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+
+        throw new IllegalStateException("No value named " + name + " in " + annotation);
+    }
+
+    private <T> T error(Element element, String message) {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+        return null;
+    }
+
+}
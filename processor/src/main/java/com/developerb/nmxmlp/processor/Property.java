@@ -0,0 +1,124 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp.processor;
+
+import java.util.List;
+
+/**
+ * A constructor parameter of a mapped class and how it's bound to the xml.
+ */
+final class Property {
+
+    enum Source {
+        ATTRIBUTE, CHILD, SELF
+    }
+
+    enum Kind {
+
+        STRING(null, null),
+        INT("Int", "Integer"),
+        LONG("Long", "Long"),
+        DOUBLE("Double", "Double"),
+        FLOAT("Double", "Float"),
+        BOOLEAN(null, "Boolean"),
+        ENUM(null, null),
+
+        /**
+         * Another mapped class, read and written using its generated code
+         */
+        MAPPED(null, null),
+
+        /**
+         * Left to the extractors registered with NX, can't be written
+         */
+        OTHER(null, null);
+
+        /**
+         * Suffix of the boxing free cursor methods, extractInt / attrAsInt etc
+         */
+        final String method;
+        final String boxed;
+
+        Kind(String method, String boxed) {
+            this.method = method;
+            this.boxed = boxed;
+        }
+
+        boolean isNumber() {
+            return method != null;
+        }
+
+    }
+
+    final String name;
+    final Source source;
+    final Kind kind;
+    final boolean primitive;
+    final boolean required;
+
+    /**
+     * Attribute name or path to the child node, empty for the node itself
+     */
+    final List<String> names;
+
+    /**
+     * Type as written in source and its erasure, for class literals
+     */
+    final String type;
+    final String rawType;
+
+    /**
+     * Prefix of the generated classes for mapped types, qualified by their package
+     */
+    final String mappedPrefix;
+
+    /**
+     * Expression reading the value from an instance, null if there's no accessible field or method
+     */
+    final String accessor;
+
+    Property(String name, Source source, Kind kind, boolean primitive, boolean required, List<String> names,
+             String type, String rawType, String mappedPrefix, String accessor) {
+        this.name = name;
+        this.source = source;
+        this.kind = kind;
+        this.primitive = primitive;
+        this.required = required;
+        this.names = names;
+        this.type = type;
+        this.rawType = rawType;
+        this.mappedPrefix = mappedPrefix;
+        this.accessor = accessor;
+    }
+
+    /**
+     * @return Name of the constant holding the path to the child node
+     */
+    String pathConstant() {
+        final StringBuilder constant = new StringBuilder();
+
+        for (char c : name.toCharArray()) {
+            if (Character.isUpperCase(c) && constant.length() > 0) {
+                constant.append('_');
+            }
+
+            constant.append(Character.toUpperCase(c));
+        }
+
+        return constant.append("_PATH").toString();
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp.processor;
+
+import com.developerb.nmxmlp.NX;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappingProcessorTest {
+
+    private static final String COUNTRY = "package sample;\n" +
+            "import com.developerb.nmxmlp.NX;\n" +
+            "@NX.Mapping\n" +
+            "public class Country {\n" +
+            "    public enum Continent { EU, AS }\n" +
+            "    final String code; final Continent continent; final int population; final Float area; final Capital capital; final Boolean member;\n" +
+            "    public Country(@NX.Attr(\"countryCode\") String code, @NX.Attr Continent continent, @NX.Attr int population,\n" +
+            "                   @NX.Attr(value = \"areaInSqKm\", required = false) Float area, @NX.Child Capital capital, @NX.Attr(required = false) Boolean member) {\n" +
+            "        this.code = code; this.continent = continent; this.population = population; this.area = area; this.capital = capital; this.member = member;\n" +
+            "    }\n" +
+            "    public String getCode() { return code; }\n" +
+            "    public Continent continent() { return continent; }\n" +
+            "    public Boolean isMember() { return member; }\n" +
+            "    @Override public String toString() { return code + \" \" + continent + \" \" + population + \" \" + area + \" \" + capital + \" \" + member; }\n" +
+            "}\n";
+
+    private static final String CAPITAL = "package sample;\n" +
+            "import com.developerb.nmxmlp.NX;\n" +
+            "@NX.Mapping\n" +
+            "class Capital {\n" +
+            "    final String name; final Double latitude;\n" +
+            "    Capital(@NX.Child(\"name\") String name, @NX.Child(value = {\"position\", \"lat\"}, required = false) Double latitude) {\n" +
+            "        this.name = name; this.latitude = latitude;\n" +
+            "    }\n" +
+            "    @Override public String toString() { return name + \"@\" + latitude; }\n" +
+            "}\n";
+
+    private static final String XML = "<country countryCode='NO' continent='EU' population='5000000' member='true'>" +
+            "<capital><name>Oslo</name><position><lat>59.9</lat></position></capital>" +
+            "</country>";
+
+    @Test
+    void generatedExtractors() throws Exception {
+        Compilation compilation = compile(COUNTRY, CAPITAL);
+        assertEquals(Collections.emptyList(), compilation.errors());
+
+        NX nx = (NX) compilation.load("sample.NxMappings").getMethod("register", NX.class).invoke(null, new NX());
+        Object country = nx.from(XML).extract(compilation.load("sample.Country"));
+
+        assertEquals("NO EU 5000000 null Oslo@59.9 true", country.toString());
+        assertEquals("SE AS 1 2.5 Stockholm@null null", nx.from("<country countryCode='SE' continent='AS' population='1' areaInSqKm='2.5'><capital><name>Stockholm</name></capital></country>")
+                .extract(compilation.load("sample.Country")).toString());
+    }
+
+    @Test
+    void generatedSourceUsesPrecompiledPaths() throws Exception {
+        Compilation compilation = compile(COUNTRY, CAPITAL);
+        String extractor = compilation.source("sample/CapitalExtractor.java");
+
+        assertThat(extractor)
+                .contains("private static final NX.Path LATITUDE_PATH = NX.path(\"position\", \"lat\");")
+                .contains("final java.lang.Double latitude = latitudeNode.name() != null ? latitudeNode.extractDouble() : null;")
+                .doesNotContain("java.lang.reflect");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void generatedInserter() throws Exception {
+        Compilation compilation = compile(COUNTRY, CAPITAL);
+        NX nx = (NX) compilation.load("sample.NxMappings").getMethod("register", NX.class).invoke(null, new NX());
+
+        Object country = nx.from(XML).extract(compilation.load("sample.Country"));
+        NX.Inserter<Object> inserter = (NX.Inserter<Object>) compilation.load("sample.CountryInserter").getField("INSTANCE").get(null);
+
+        NX.Cursor prototype = nx.from("<country countryCode='?' continent='?' population='?' areaInSqKm='?'>" +
+                "<capital><name>?</name><position><lat>?</lat></position></capital>" +
+                "</country>");
+
+        prototype.update(country, inserter);
+
+        assertEquals(country.toString(), prototype.extract(compilation.load("sample.Country")).toString());
+        assertTrue(prototype.hasAttr("member"));
+        assertThat(prototype.hasAttr("areaInSqKm")).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void mappedTypesFromOtherPackages() throws Exception {
+        Compilation compilation = compile(
+                "package a;\n@com.developerb.nmxmlp.NX.Mapping\npublic class Inner {\n    public final String value;\n    public Inner(@com.developerb.nmxmlp.NX.Attr String value) { this.value = value; }\n}\n",
+                "package b;\n@com.developerb.nmxmlp.NX.Mapping\npublic class Outer {\n    public final a.Inner inner;\n    public Outer(@com.developerb.nmxmlp.NX.Child(\"inner\") a.Inner inner) { this.inner = inner; }\n}\n");
+        assertEquals(Collections.emptyList(), compilation.errors());
+
+        NX nx = (NX) compilation.load("b.NxMappings").getMethod("register", NX.class).invoke(null, new NX());
+        nx = (NX) compilation.load("a.NxMappings").getMethod("register", NX.class).invoke(null, nx);
+        Object outer = nx.from("<outer><inner value='x'/></outer>").extract(compilation.load("b.Outer"));
+
+        NX.Cursor prototype = nx.from("<outer><inner value='?'/></outer>");
+        prototype.update(outer, (NX.Inserter<Object>) compilation.load("b.OuterInserter").getField("INSTANCE").get(null));
+
+        assertEquals("x", prototype.to("inner").attr("value").text());
+    }
+
+    @Test
+    void classesWithoutAccessorsOnlyGetAnExtractor() throws Exception {
+        Compilation compilation = compile(CAPITAL.replace("final String name;", "private final String name;"),
+                "package sample;\n@com.developerb.nmxmlp.NX.Mapping\nclass Hidden {\n    Hidden(String value) { }\n}\n");
+
+        assertEquals(Collections.emptyList(), compilation.errors());
+        compilation.load("sample.HiddenExtractor");
+        assertThrows(ClassNotFoundException.class, () -> compilation.load("sample.HiddenInserter"));
+    }
+
+    @Test
+    void invalidMappings() throws Exception {
+        assertThat(compile("package sample;\n@com.developerb.nmxmlp.NX.Mapping\nclass A {\n    private A(String a) { }\n}\n").errors())
+                .containsExactly("The constructor can't be private");
+
+        assertThat(compile("package sample;\n@com.developerb.nmxmlp.NX.Mapping\nclass A {\n    A() { }\n    A(String a) { }\n}\n").errors())
+                .containsExactly("Annotate a single constructor with @Creator");
+
+        assertThat(compile("package sample;\n@com.developerb.nmxmlp.NX.Mapping\nclass A {\n    A(@com.developerb.nmxmlp.NX.Attr(required = false) int a) { }\n}\n").errors())
+                .containsExactly("Primitives can't be optional");
+
+        assertThat(compile("package sample;\n@com.developerb.nmxmlp.NX.Mapping\nclass A {\n    A(@com.developerb.nmxmlp.NX.Attr java.util.List<String> a) { }\n}\n").errors())
+                .containsExactly("Attributes can only be bound to strings, numbers, booleans and enums");
+    }
+
+
+    private Compilation compile(String... sources) throws IOException {
+        Path directory = Files.createTempDirectory("nmxmlp-processor");
+        Path sourceDirectory = Files.createDirectories(directory.resolve("src"));
+        Path generatedDirectory = Files.createDirectories(directory.resolve("generated"));
+        Path classDirectory = Files.createDirectories(directory.resolve("classes"));
+
+        List<File> files = new ArrayList<>();
+        for (String source : sources) {
+            String name = source.replaceAll("(?s).*?class (\\w+).*", "$1");
+            Path file = sourceDirectory.resolve(name + ".java");
+
+            Files.write(file, source.getBytes(UTF_8));
+            files.add(file.toFile());
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, UTF_8)) {
+            List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"),
+                    "-d", classDirectory.toString(), "-s", generatedDirectory.toString());
+
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, fileManager.getJavaFileObjectsFromFiles(files));
+            task.setProcessors(Collections.singletonList(new MappingProcessor()));
+            task.call();
+        }
+
+        return new Compilation(diagnostics.getDiagnostics(), generatedDirectory, classDirectory);
+    }
+
+    private static class Compilation {
+
+        private final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+        private final Path generatedDirectory;
+        private final ClassLoader classLoader;
+
+        Compilation(List<Diagnostic<? extends JavaFileObject>> diagnostics, Path generatedDirectory, Path classDirectory) throws IOException {
+            this.diagnostics = diagnostics;
+            this.generatedDirectory = generatedDirectory;
+            this.classLoader = new URLClassLoader(new URL[] { classDirectory.toUri().toURL() }, getClass().getClassLoader());
+        }
+
+        List<String> errors() {
+            return diagnostics.stream()
+                    .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                    .map(diagnostic -> diagnostic.getMessage(null))
+                    .collect(Collectors.toList());
+        }
+
+        Class<?> load(String name) throws ClassNotFoundException {
+            return classLoader.loadClass(name);
+        }
+
+        String source(String path) throws IOException {
+            return new String(Files.readAllBytes(generatedDirectory.resolve(path)), UTF_8);
+        }
+
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Documents used as benchmark input, either test resources or generated records.
+ */
+public enum BenchmarkDocument {
+
+    COUNTRIES("country", "countryCode") {
+        @Override
+        byte[] load() {
+            return resource("/data/countries.xml");
+        }
+    },
+
+    SOAP_REQUEST(null, null) {
+        @Override
+        byte[] load() {
+            return resource("/soap/soap-request.xml");
+        }
+    },
+
+    SYNTHETIC_1KB("record", "id") {
+        @Override
+        byte[] load() {
+            return generate(1024);
+        }
+    },
+
+    SYNTHETIC_1MB("record", "id") {
+        @Override
+        byte[] load() {
+            return generate(1024 * 1024);
+        }
+    },
+
+    SYNTHETIC_100MB("record", "id") {
+        @Override
+        byte[] load() {
+            return generate(100 * 1024 * 1024);
+        }
+    };
+
+    /**
+     * Name of the repeated child nodes of the document element, null if there are none
+     */
+    final String recordName;
+
+    /**
+     * Attribute present on every record, null if there are no records
+     */
+    final String keyAttribute;
+
+    BenchmarkDocument(String recordName, String keyAttribute) {
+        this.recordName = recordName;
+        this.keyAttribute = keyAttribute;
+    }
+
+    abstract byte[] load();
+
+    private static byte[] resource(String name) {
+        try (InputStream stream = BenchmarkDocument.class.getResourceAsStream(name)) {
+            if (stream == null) {
+                throw new IllegalStateException("Missing resource " + name);
+            }
+
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+
+            return output.toByteArray();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Records with attributes, nested elements and a bit of text, stopping once the
+     * document has reached roughly the given size.
+     */
+    private static byte[] generate(int size) {
+        final String footer = "</records>\n";
+        final StringBuilder xml = new StringBuilder(size + 512);
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<records>\n");
+
+        for (int id = 0; xml.length() + footer.length() < size; id++) {
+            xml.append("    <record id=\"").append(id).append("\" type=\"").append(id % 2 == 0 ? "even" : "odd").append("\">\n")
+                    .append("        <name>Record number ").append(id).append("</name>\n")
+                    .append("        <amount currency=\"NOK\">").append(id * 7 % 10000).append(".50</amount>\n")
+                    .append("        <description>Nasse Nøff &amp; friends, entry ").append(id).append("</description>\n")
+                    .append("    </record>\n");
+        }
+
+        return xml.append(footer).toString().getBytes(UTF_8);
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Dumping already parsed documents, once without features and once for each feature.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DumpBenchmark {
+
+    @Param
+    public BenchmarkDocument document;
+
+    @Param({ "NONE", "DUMP_INDENTED_XML", "DUMP_WITHOUT_XML_DECLARATION", "RETAIN_DTD" })
+    public String feature;
+
+    @Param({ "false", "true" })
+    public boolean nativeDump;
+
+    private NX.Cursor cursor;
+    private NX.Feature[] features;
+
+    @Setup
+    public void setUp() {
+        final NX nx = nativeDump ? new NX(EnumSet.of(NX.ConfigFeature.NATIVE_DUMP)) : new NX();
+
+        cursor = nx.from(new ByteArrayInputStream(document.load()), new NX.ReadContext(null));
+        features = "NONE".equals(feature) ? new NX.Feature[0] : new NX.Feature[] { NX.Feature.valueOf(feature) };
+    }
+
+    @Benchmark
+    public String dumpXml() {
+        return cursor.dumpXml(UTF_8, features);
+    }
+
+    /**
+     * Leaves out building the resulting string
+     */
+    @Benchmark
+    public void dumpXmlToStream() {
+        cursor.dumpXml(NullOutputStream.INSTANCE, UTF_8, features);
+    }
+
+
+    private static class NullOutputStream extends OutputStream {
+
+        static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iterating over and extracting the records of already parsed documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExtractionBenchmark {
+
+    @Param({ "COUNTRIES", "SYNTHETIC_1KB", "SYNTHETIC_1MB", "SYNTHETIC_100MB" })
+    public BenchmarkDocument document;
+
+    @Param({ "false", "true" })
+    public boolean compactTree;
+
+    private NX.Cursor cursor;
+
+    @Setup
+    public void setUp() {
+        final NX nx = compactTree ? new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE)) : new NX();
+        nx.registerExtractor(Key.class, new KeyExtractor(document.keyAttribute));
+
+        cursor = nx.from(new ByteArrayInputStream(document.load()), new NX.ReadContext(null));
+    }
+
+    @Benchmark
+    public void iterateCollection(Blackhole blackhole) {
+        cursor.iterateCollection(document.recordName, record -> blackhole.consume(record.attr(document.keyAttribute).text()));
+    }
+
+    @Benchmark
+    public void iterateCollectionReusingCursor(Blackhole blackhole) {
+        cursor.iterateCollectionReusingCursor(document.recordName, record -> blackhole.consume(record.attr(document.keyAttribute).text()));
+    }
+
+    @Benchmark
+    public List<Key> extractCollection() {
+        return cursor.extractCollection(document.recordName, Key.class);
+    }
+
+    /**
+     * Includes freezing the document when it isn't a compact tree
+     */
+    @Benchmark
+    public List<Key> extractCollectionParallel() {
+        return cursor.extractCollectionParallel(document.recordName, new KeyExtractor(document.keyAttribute), ForkJoinPool.commonPool());
+    }
+
+
+    public static class Key {
+
+        final String value;
+
+        Key(String value) {
+            this.value = value;
+        }
+
+    }
+
+    private static class KeyExtractor implements NX.Extractor<Key> {
+
+        private final String attributeName;
+
+        KeyExtractor(String attributeName) {
+            this.attributeName = attributeName;
+        }
+
+        @Override
+        public Key transform(NX.Cursor cursor) throws NX.Ex {
+            return new Key(cursor.attr(attributeName).text());
+        }
+
+    }
+
+}
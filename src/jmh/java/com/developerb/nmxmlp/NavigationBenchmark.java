@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Navigation and attribute lookup on already parsed documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NavigationBenchmark {
+
+    private static final NX.Path NETWORK_CODE = NX.path("Header", "RequestHeader", "networkCode");
+
+    @Param({ "DOM", "COMPACT_TREE", "CHILD_INDEX" })
+    public String tree;
+
+    private NX.Cursor soapRequest;
+    private NX.Cursor countries;
+    private NX.Cursor country;
+
+    @Setup
+    public void setUp() {
+        final NX nx = "DOM".equals(tree) ? new NX() : new NX(EnumSet.of(NX.ConfigFeature.valueOf(tree)));
+
+        soapRequest = parse(nx, BenchmarkDocument.SOAP_REQUEST);
+        countries = parse(nx, BenchmarkDocument.COUNTRIES);
+        country = countries.to(100, "country");
+    }
+
+    @Benchmark
+    public NX.Cursor toVarargs() {
+        return soapRequest.to("Header", "RequestHeader", "networkCode");
+    }
+
+    @Benchmark
+    public NX.Cursor toChained() {
+        return soapRequest.to("Header").to("RequestHeader").to("networkCode");
+    }
+
+    @Benchmark
+    public NX.Cursor toPath() {
+        return soapRequest.to(NETWORK_CODE);
+    }
+
+    @Benchmark
+    public NX.Cursor toOptionalMissing() {
+        return soapRequest.toOptional("Header", "missing", "networkCode");
+    }
+
+    @Benchmark
+    public NX.Cursor toPositionLastCountry() {
+        return countries.to(249, "country");
+    }
+
+    @Benchmark
+    public String attr() {
+        return country.attr("currencyCode").text();
+    }
+
+    @Benchmark
+    public boolean attrMissing() {
+        return country.hasAttr("missing");
+    }
+
+    private static NX.Cursor parse(NX nx, BenchmarkDocument document) {
+        return nx.from(new ByteArrayInputStream(document.load()), new NX.ReadContext(null));
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParseBenchmark {
+
+    @Param
+    public BenchmarkDocument document;
+
+    @Param({ "false", "true" })
+    public boolean compactTree;
+
+    private NX nx;
+    private byte[] bytes;
+    private String xml;
+    private NX.Projection projection;
+
+    @Setup
+    public void setUp() {
+        nx = compactTree ? new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE)) : new NX();
+        bytes = document.load();
+        xml = new String(bytes, UTF_8);
+        projection = document.recordName != null
+                ? NX.projection("*/" + document.recordName + "/@" + document.keyAttribute)
+                : NX.projection("*/*");
+    }
+
+    @Benchmark
+    public NX.Cursor fromString() {
+        return nx.from(xml);
+    }
+
+    @Benchmark
+    public NX.Cursor fromInputStream() {
+        return nx.from(new ByteArrayInputStream(bytes), new NX.ReadContext(null));
+    }
+
+    /**
+     * Only the key attribute of each record, or the children of the document element
+     */
+    @Benchmark
+    public NX.Cursor fromInputStreamProjected() {
+        return nx.from(new ByteArrayInputStream(bytes), new NX.ReadContext(null), projection);
+    }
+
+}
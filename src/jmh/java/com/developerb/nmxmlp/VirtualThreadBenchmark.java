@@ -0,0 +1,112 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a document from 10 000 concurrent tasks, each on a virtual thread of its own or
+ * sharing a thread per processor. Virtual threads are looked up reflectively as benchmarks
+ * are compiled for Java 8, so this benchmark must run on Java 21 or newer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class VirtualThreadBenchmark {
+
+    private static final int TASKS = 10000;
+
+    @Param({ "SOAP_REQUEST", "SYNTHETIC_1KB" })
+    public BenchmarkDocument document;
+
+    @Param({ "false", "true" })
+    public boolean virtualThreadMode;
+
+    @Param({ "VIRTUAL", "PLATFORM" })
+    public String threads;
+
+    private NX nx;
+    private byte[] bytes;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() throws Exception {
+        nx = virtualThreadMode ? new NX(EnumSet.of(NX.ConfigFeature.VIRTUAL_THREADS)) : new NX();
+        bytes = document.load();
+        executor = "VIRTUAL".equals(threads)
+                ? (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null)
+                : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * One operation parses the document {@value #TASKS} times, so documents per second
+     * is the score multiplied by {@value #TASKS}.
+     */
+    @Benchmark
+    public int from() throws Exception {
+        final List<Future<NX.Cursor>> futures = new ArrayList<>(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            futures.add(executor.submit(() -> nx.from(stream(), new NX.ReadContext(null))));
+        }
+
+        int parsed = 0;
+        for (Future<NX.Cursor> future : futures) {
+            if (future.get() != null) {
+                parsed++;
+            }
+        }
+
+        return parsed;
+    }
+
+    /**
+     * Hides the byte array, so the document is buffered like any other stream in virtual thread mode
+     */
+    private InputStream stream() {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) { };
+    }
+
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extractors calling a constructor, see {@link NX#binding(Class)}.
+ * <p>
+ * Reflection is only used while binding. Every parameter is turned into a method handle
+ * reading the value from the cursor, and those are combined with the constructor into
+ * a single method handle taking the cursor.
+ */
+final class Bindings {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    // Cursor methods
+    private static final MethodHandle TO = virtual("to", NX.Cursor.class, NX.Path.class);
+    private static final MethodHandle TO_OPTIONAL = virtual("toOptional", NX.Cursor.class, NX.Path.class);
+    private static final MethodHandle TEXT = virtual("text", String.class);
+    private static final MethodHandle EXTRACT = virtual("extract", Object.class, Class.class);
+    private static final MethodHandle EXTRACT_INT = virtual("extractInt", int.class);
+    private static final MethodHandle EXTRACT_LONG = virtual("extractLong", long.class);
+    private static final MethodHandle EXTRACT_DOUBLE = virtual("extractDouble", double.class);
+    private static final MethodHandle ATTR_AS_INT = virtual("attrAsInt", int.class, String.class);
+    private static final MethodHandle ATTR_AS_LONG = virtual("attrAsLong", long.class, String.class);
+    private static final MethodHandle ATTR_AS_DOUBLE = virtual("attrAsDouble", double.class, String.class);
+    private static final MethodHandle HAS_ATTR = virtual("hasAttr", boolean.class, String.class);
+
+    // Helpers below
+    private static final MethodHandle ATTR_TEXT = helper("attrText", String.class, String.class, boolean.class, NX.Cursor.class);
+    private static final MethodHandle IS_PRESENT = helper("isPresent", boolean.class, NX.Cursor.class);
+    private static final MethodHandle PARSE_BOOLEAN = helper("parseBoolean", boolean.class, String.class);
+    private static final MethodHandle PARSE_BOXED_BOOLEAN = helper("parseBoxedBoolean", Boolean.class, String.class);
+    private static final MethodHandle ENUM_VALUE = helper("enumValue", Enum.class, Class.class, String.class);
+
+    // Only present on Java 16 and newer
+    private static final Method GET_RECORD_COMPONENTS = method(Class.class, "getRecordComponents");
+    private static final Method RECORD_COMPONENT_NAME = method(recordComponentClass(), "getName");
+    private static final Method RECORD_COMPONENT_TYPE = method(recordComponentClass(), "getType");
+
+    private Bindings() {
+    }
+
+    static <T> NX.Extractor<T> bind(Class<T> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            throw new IllegalArgumentException("Can't bind abstract type " + type.getName());
+        }
+        if (type.isMemberClass() && !Modifier.isStatic(type.getModifiers())) {
+            throw new IllegalArgumentException("Can't bind inner class " + type.getName() + ", make it static");
+        }
+
+        final Object[] components = recordComponents(type);
+        final Constructor<?> constructor = components != null ? canonicalConstructor(type, components) : constructor(type);
+        final Parameter[] parameters = constructor.getParameters();
+        final MethodHandle[] values = new MethodHandle[parameters.length];
+
+        for (int i = 0; i < parameters.length; i++) {
+            final String name = components != null ? (String) invoke(RECORD_COMPONENT_NAME, components[i]) : parameters[i].isNamePresent() ? parameters[i].getName() : null;
+            values[i] = value(type, parameters[i], name);
+        }
+
+        // (Cursor, Cursor, ...) -> T where every argument is the same cursor
+        final MethodHandle filtered = MethodHandles.filterArguments(unreflect(constructor), 0, values);
+        final MethodHandle creator = MethodHandles.permuteArguments(filtered, MethodType.methodType(type, NX.Cursor.class), new int[parameters.length]);
+
+        return new BoundExtractor<>(type, creator.asType(MethodType.methodType(Object.class, NX.Cursor.class)));
+    }
+
+    /**
+     * @return Method handle reading the value of the parameter from a cursor
+     */
+    private static MethodHandle value(Class<?> type, Parameter parameter, String parameterName) {
+        final NX.Attr attr = parameter.getAnnotation(NX.Attr.class);
+        final NX.Child child = parameter.getAnnotation(NX.Child.class);
+        final NX.Self self = parameter.getAnnotation(NX.Self.class);
+        final Class<?> target = parameter.getType();
+
+        if ((attr != null ? 1 : 0) + (child != null ? 1 : 0) + (self != null ? 1 : 0) > 1) {
+            throw new IllegalArgumentException(describe(type, parameter, parameterName) + " can only have one of @Attr, @Child and @Self");
+        }
+
+        if (self != null) {
+            return node(type, parameter, parameterName, target);
+        }
+
+        if (attr != null) {
+            final String name = attr.value().isEmpty() ? requireName(type, parameter, parameterName) : attr.value();
+
+            if (target.isPrimitive() && !attr.required()) {
+                throw new IllegalArgumentException(describe(type, parameter, parameterName) + " is primitive, it can't be optional");
+            }
+
+            return attribute(type, parameter, parameterName, name, attr.required());
+        }
+
+        final String[] names = child != null && child.value().length > 0 ? child.value() : new String[] { requireName(type, parameter, parameterName) };
+        final boolean required = child == null || child.required();
+
+        if (target.isPrimitive() && !required) {
+            throw new IllegalArgumentException(describe(type, parameter, parameterName) + " is primitive, it can't be optional");
+        }
+
+        final MethodHandle navigate = MethodHandles.insertArguments(required ? TO : TO_OPTIONAL, 1, NX.path(names));
+        return MethodHandles.filterArguments(node(type, parameter, parameterName, target), 0, navigate);
+    }
+
+    /**
+     * @return (Cursor) -> target, reading the value of the node the cursor points to
+     */
+    private static MethodHandle node(Class<?> type, Parameter parameter, String parameterName, Class<?> target) {
+        final MethodHandle primitive = primitive(target, EXTRACT_INT, EXTRACT_LONG, EXTRACT_DOUBLE);
+
+        if (primitive != null) {
+            return target.isPrimitive() ? primitive : nullUnless(IS_PRESENT, primitive, target);
+        }
+
+        final MethodHandle text = fromText(target, TEXT);
+
+        if (text != null) {
+            return text;
+        }
+
+        if (target.isPrimitive()) {
+            throw new IllegalArgumentException(describe(type, parameter, parameterName) + " has unsupported type " + target.getName());
+        }
+
+        // Anything else is left to the extractors registered with NX
+        return MethodHandles.insertArguments(EXTRACT, 1, target).asType(MethodType.methodType(target, NX.Cursor.class));
+    }
+
+    /**
+     * @return (Cursor) -> target, reading the value of an attribute
+     */
+    private static MethodHandle attribute(Class<?> type, Parameter parameter, String parameterName, String name, boolean required) {
+        final Class<?> target = parameter.getType();
+        final MethodHandle primitive = primitive(target,
+                MethodHandles.insertArguments(ATTR_AS_INT, 1, name),
+                MethodHandles.insertArguments(ATTR_AS_LONG, 1, name),
+                MethodHandles.insertArguments(ATTR_AS_DOUBLE, 1, name));
+
+        if (primitive != null) {
+            return target.isPrimitive() || required ? primitive.asType(MethodType.methodType(target, NX.Cursor.class))
+                    : nullUnless(MethodHandles.insertArguments(HAS_ATTR, 1, name), primitive, target);
+        }
+
+        final MethodHandle text = fromText(target, MethodHandles.insertArguments(ATTR_TEXT, 0, name, required));
+
+        if (text != null) {
+            return text;
+        } else {
+            throw new IllegalArgumentException(describe(type, parameter, parameterName) + " has unsupported type " + target.getName() + " for an attribute");
+        }
+    }
+
+    /**
+     * @return Boxing free method handle for numbers or null
+     */
+    private static MethodHandle primitive(Class<?> target, MethodHandle intValue, MethodHandle longValue, MethodHandle doubleValue) {
+        if (target == int.class || target == Integer.class) {
+            return intValue;
+        } else if (target == long.class || target == Long.class) {
+            return longValue;
+        } else if (target == double.class || target == Double.class) {
+            return doubleValue;
+        } else if (target == float.class || target == Float.class) {
+            return MethodHandles.explicitCastArguments(doubleValue, MethodType.methodType(float.class, NX.Cursor.class));
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * @param text (Cursor) -> String
+     * @return Method handle for types parsed from text or null
+     */
+    private static MethodHandle fromText(Class<?> target, MethodHandle text) {
+        if (target == String.class) {
+            return text;
+        } else if (target == boolean.class) {
+            return MethodHandles.filterReturnValue(text, PARSE_BOOLEAN);
+        } else if (target == Boolean.class) {
+            return MethodHandles.filterReturnValue(text, PARSE_BOXED_BOOLEAN);
+        } else if (target.isEnum()) {
+            return MethodHandles.filterReturnValue(text, MethodHandles.insertArguments(ENUM_VALUE, 0, target).asType(MethodType.methodType(target, String.class)));
+        } else {
+            return null;
+        }
+    }
+
+    private static MethodHandle nullUnless(MethodHandle test, MethodHandle value, Class<?> target) {
+        final MethodType type = MethodType.methodType(target, NX.Cursor.class);
+        final MethodHandle missing = MethodHandles.dropArguments(MethodHandles.constant(target, null), 0, NX.Cursor.class);
+
+        return MethodHandles.guardWithTest(test, value.asType(type), missing);
+    }
+
+
+    // Called through method handles
+
+    private static String attrText(String name, boolean required, NX.Cursor cursor) {
+        return required ? cursor.attr(name).text() : cursor.optionalAttr(name).text();
+    }
+
+    private static boolean isPresent(NX.Cursor cursor) {
+        return cursor.name() != null;
+    }
+
+    private static boolean parseBoolean(String text) {
+        final String trimmed = text != null ? text.trim() : null;
+        return "true".equals(trimmed) || "1".equals(trimmed);
+    }
+
+    private static Boolean parseBoxedBoolean(String text) {
+        return text != null ? parseBoolean(text) : null;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Enum<?> enumValue(Class type, String text) {
+        return text != null ? Enum.valueOf(type, text.trim()) : null;
+    }
+
+
+    private static Constructor<?> constructor(Class<?> type) {
+        final Constructor<?>[] constructors = type.getDeclaredConstructors();
+        final List<Constructor<?>> annotated = new ArrayList<>();
+
+        for (Constructor<?> constructor : constructors) {
+            if (constructor.isAnnotationPresent(NX.Creator.class)) {
+                annotated.add(constructor);
+            }
+        }
+
+        if (annotated.size() == 1) {
+            return annotated.get(0);
+        } else if (annotated.isEmpty() && constructors.length == 1) {
+            return constructors[0];
+        } else {
+            throw new IllegalArgumentException("Annotate a single constructor of " + type.getName() + " with @Creator");
+        }
+    }
+
+    private static Constructor<?> canonicalConstructor(Class<?> type, Object[] components) {
+        final Class<?>[] types = new Class<?>[components.length];
+
+        for (int i = 0; i < components.length; i++) {
+            types[i] = (Class<?>) invoke(RECORD_COMPONENT_TYPE, components[i]);
+        }
+
+        try {
+            return type.getDeclaredConstructor(types);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException("Record without a canonical constructor: " + type.getName(), ex);
+        }
+    }
+
+    private static MethodHandle unreflect(Constructor<?> constructor) {
+        try {
+            constructor.setAccessible(true);
+        } catch (RuntimeException ignored) {
+            // Might still be accessible, otherwise we'll fail below
+        }
+
+        try {
+            return LOOKUP.unreflectConstructor(constructor);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalArgumentException("Can't access " + constructor, ex);
+        }
+    }
+
+    /**
+     * @return Record components or null if the type isn't a record
+     */
+    private static Object[] recordComponents(Class<?> type) {
+        return GET_RECORD_COMPONENTS != null ? (Object[]) invoke(GET_RECORD_COMPONENTS, type) : null;
+    }
+
+    private static String requireName(Class<?> type, Parameter parameter, String parameterName) {
+        if (parameterName == null) {
+            throw new IllegalArgumentException(describe(type, parameter, null) + " needs a name, annotate it or compile with -parameters");
+        }
+
+        return parameterName;
+    }
+
+    private static String describe(Class<?> type, Parameter parameter, String parameterName) {
+        return "Parameter " + (parameterName != null ? parameterName : parameter.getName()) + " of " + type.getName();
+    }
+
+    private static MethodHandle virtual(String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return LOOKUP.findVirtual(NX.Cursor.class, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static MethodHandle helper(String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return LOOKUP.findStatic(Bindings.class, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Class<?> recordComponentClass() {
+        try {
+            return Class.forName("java.lang.reflect.RecordComponent");
+        } catch (ClassNotFoundException ex) {
+            return null;
+        }
+    }
+
+    private static Method method(Class<?> type, String name) {
+        try {
+            return type != null ? type.getMethod(name) : null;
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    private static Object invoke(Method method, Object target) {
+        try {
+            return method.invoke(target);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+
+    private static final class BoundExtractor<T> implements NX.Extractor<T> {
+
+        private final Class<T> type;
+
+        // (Cursor) -> Object
+        private final MethodHandle creator;
+
+        BoundExtractor(Class<T> type, MethodHandle creator) {
+            this.type = type;
+            this.creator = creator;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T transform(NX.Cursor cursor) throws NX.Ex {
+            try {
+                return (T) (Object) creator.invokeExact(cursor);
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new NX.Ex(cursor, "Failed to create " + type.getName(), ex);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Binding for " + type.getName();
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Growable in memory buffer without the locking done by ByteArrayOutputStream and
+ * ByteArrayInputStream. Only to be used by one thread at a time.
+ */
+final class Bytes extends OutputStream {
+
+    private byte[] buffer = new byte[8192];
+    private int size;
+
+    /**
+     * Reads the stream until the end and closes it
+     */
+    static Bytes readFully(InputStream input) throws IOException {
+        final Bytes bytes = new Bytes();
+
+        try (InputStream stream = input) {
+            int read;
+            while ((read = stream.read(bytes.buffer, bytes.size, bytes.buffer.length - bytes.size)) != -1) {
+                bytes.size += read;
+                bytes.ensureCapacity(bytes.size + 1);
+            }
+        }
+
+        return bytes;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(size + 1);
+        buffer[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(size + len);
+        System.arraycopy(b, off, buffer, size, len);
+        size += len;
+    }
+
+    void writeTo(OutputStream output) throws IOException {
+        output.write(buffer, 0, size);
+    }
+
+    InputStream inputStream() {
+        return new InputStream() {
+
+            private int position;
+
+            @Override
+            public int read() {
+                return position < size ? buffer[position++] & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                } else if (position >= size) {
+                    return -1;
+                }
+
+                final int read = Math.min(len, size - position);
+                System.arraycopy(buffer, position, b, off, read);
+                position += read;
+
+                return read;
+            }
+
+            @Override
+            public int available() {
+                return size - position;
+            }
+
+        };
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Children of a single node grouped by name code, see {@link NX.ConfigFeature#CHILD_INDEX}.
+ * A child named with a namespace prefix is indexed both with and without the prefix.
+ *
+ * @param <N> node type, W3C DOM node or compact tree node index
+ */
+final class ChildIndex<N> {
+
+    private final Map<Integer, List<N>> children = new HashMap<>();
+    private final int modCount;
+
+    private ChildIndex(int modCount) {
+        this.modCount = modCount;
+    }
+
+    void add(int nameCode, N child) {
+        children.computeIfAbsent(nameCode, code -> new ArrayList<>(1)).add(child);
+    }
+
+    int count(int nameCode) {
+        final List<N> named = children.get(nameCode);
+        return named != null ? named.size() : 0;
+    }
+
+    /**
+     * @return Child at the given position among the children with the given name or null
+     */
+    N get(int nameCode, int position) {
+        final List<N> named = children.get(nameCode);
+        return named != null && position < named.size() ? named.get(position) : null;
+    }
+
+
+    /**
+     * Child indexes of a single document, built the first time a node is queried
+     * and rebuilt if the document has been modified since.
+     *
+     * @param <N> node type
+     */
+    static final class Cache<N> {
+
+        private final Map<N, ChildIndex<N>> indexes;
+        private final NamePool names;
+        private int modCount = 0;
+
+        /**
+         * @param indexes must be thread safe if the document is shared between threads
+         * @param names   of the document, the indexes are keyed by codes from this pool
+         */
+        Cache(Map<N, ChildIndex<N>> indexes, NamePool names) {
+            this.indexes = indexes;
+            this.names = names;
+        }
+
+        NamePool names() {
+            return names;
+        }
+
+        /**
+         * Must be called whenever children are added to or removed from any node in the document.
+         */
+        void modified() {
+            modCount++;
+        }
+
+        ChildIndex<N> get(N node, BiConsumer<N, ChildIndex<N>> builder) {
+            ChildIndex<N> index = indexes.get(node);
+
+            if (index == null || index.modCount != modCount) {
+                index = new ChildIndex<>(modCount);
+                builder.accept(node, index);
+                indexes.put(node, index);
+            }
+
+            return index;
+        }
+
+    }
+
+}
@@ -0,0 +1,841 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.ext.DefaultHandler2;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.XMLConstants;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read only document stored as a structure of arrays instead of a W3C DOM.
+ * <p>
+ * Nodes are identified by their index. Elements, text, cdata sections, comments and
+ * processing instructions are kept, all character data lives in a single char buffer.
+ * The root element is always node zero.
+ * <p>
+ * Trees are never modified once built, so any number of threads can read them at once.
+ */
+final class CompactTree {
+
+    static final int NONE = -1;
+
+    private static final int TEXT = -1;
+    private static final int CDATA = -2;
+    private static final int COMMENT = -3;
+    private static final int PROCESSING_INSTRUCTION = -4;
+
+    // Coded first by the name pool of every tree, see names
+    private static final int TEXT_NAME = 0;
+    private static final int CDATA_NAME = 1;
+    private static final int COMMENT_NAME = 2;
+
+    // Indexed by node
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+
+    /**
+     * Index into the name table for elements, negative for other nodes.
+     * Processing instructions store the name of their target as PROCESSING_INSTRUCTION - name.
+     */
+    private final int[] nameCode;
+
+    /**
+     * Character data for text nodes, first attribute and number of attributes for elements.
+     */
+    private final int[] dataStart;
+    private final int[] dataLength;
+
+    // Indexed by attribute
+    private final int[] attributeName;
+    private final int[] attributeStart;
+    private final int[] attributeLength;
+
+    private final char[] characters;
+
+    // Read only view of the characters for parsing numbers in place, the position is never moved
+    private final CharSequence characterView;
+
+    private final String[] qualifiedNames;
+    private final String[] localNames;
+    private final String[] namespaces;
+
+    // Only holds the names of this tree, so documents never add names to anything outliving them
+    private final NamePool names = new NamePool();
+
+    // Codes from the name pool of the tree, see lookup
+    private final int[] qualifiedNameCodes;
+    private final int[] localNameCodes;
+
+    private final String doctypePublic;
+    private final String doctypeSystem;
+
+    // Null unless enabled, the tree is never modified so indexes are built at most once
+    private final ChildIndex.Cache<Integer> childIndexes;
+
+    // Null unless the tree was built from a projection, see ProjectionFilter
+    private final NX.Projection projection;
+    private final Map<Integer, ProjectionFilter.Step[]> skeleton;
+
+    // Null unless navigation is recorded to learn a projection, see ProjectionLearner
+    private final ProjectionLearner.Touched touched;
+
+    private CompactTree(Builder builder) {
+        final int nodes = builder.nodeCount;
+        final int attributes = builder.attributeCount;
+
+        this.parent = Arrays.copyOf(builder.parent, nodes);
+        this.firstChild = Arrays.copyOf(builder.firstChild, nodes);
+        this.nextSibling = Arrays.copyOf(builder.nextSibling, nodes);
+        this.nameCode = Arrays.copyOf(builder.nameCode, nodes);
+        this.dataStart = Arrays.copyOf(builder.dataStart, nodes);
+        this.dataLength = Arrays.copyOf(builder.dataLength, nodes);
+
+        this.attributeName = Arrays.copyOf(builder.attributeName, attributes);
+        this.attributeStart = Arrays.copyOf(builder.attributeStart, attributes);
+        this.attributeLength = Arrays.copyOf(builder.attributeLength, attributes);
+
+        this.characters = Arrays.copyOf(builder.characters, builder.characterCount);
+        this.characterView = CharBuffer.wrap(characters);
+
+        final int nameCount = builder.names.size();
+        this.qualifiedNames = builder.qualifiedNames.toArray(new String[nameCount]);
+        this.localNames = builder.localNames.toArray(new String[nameCount]);
+        this.namespaces = builder.namespaces.toArray(new String[nameCount]);
+
+        names.code("#text");
+        names.code("#cdata-section");
+        names.code("#comment");
+
+        this.qualifiedNameCodes = new int[nameCount];
+        this.localNameCodes = new int[nameCount];
+
+        for (int i = 0; i < nameCount; i++) {
+            qualifiedNameCodes[i] = names.code(qualifiedNames[i]);
+            localNameCodes[i] = names.code(localNames[i]);
+        }
+
+        this.doctypePublic = builder.doctypePublic;
+        this.doctypeSystem = builder.doctypeSystem;
+        this.childIndexes = builder.childIndex ? new ChildIndex.Cache<>(new ConcurrentHashMap<>(), names) : null;
+        this.projection = builder.projection;
+        this.skeleton = builder.skeleton;
+        this.touched = builder.touched;
+    }
+
+
+    /**
+     * Copies a W3C DOM document, see {@link NX.Cursor#freeze()}.
+     *
+     * @param nodes W3C DOM nodes mapped to their index in the copy, as long as they're part of the document
+     */
+    static CompactTree copyOf(Document document, boolean childIndex, Map<Node, Integer> nodes) {
+        final Builder builder = new Builder(false, childIndex);
+        builder.copy(document, nodes);
+
+        return builder.build();
+    }
+
+    int nodeCount() {
+        return parent.length;
+    }
+
+    /**
+     * @return Projection the tree was built from or null
+     */
+    NX.Projection projection() {
+        return projection;
+    }
+
+    /**
+     * @return Projected steps if the node is an element on the way to projected elements,
+     *         only built with the children and attributes in the projection, otherwise null
+     */
+    ProjectionFilter.Step[] skeleton(int node) {
+        return skeleton != null ? skeleton.get(node) : null;
+    }
+
+    /**
+     * @return Where navigation of the document element is recorded or null
+     */
+    ProjectionLearner.Touched touched() {
+        return touched;
+    }
+
+    int parent(int node) {
+        return parent[node];
+    }
+
+    int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    boolean isElement(int node) {
+        return nameCode[node] >= 0;
+    }
+
+    /**
+     * @return Name without namespace prefix, only for elements
+     */
+    String localName(int node) {
+        return localNames[nameCode[node]];
+    }
+
+    /**
+     * Same names as W3C DOM, #text, #cdata-section and #comment for character data.
+     */
+    String name(int node) {
+        final int code = nameCode[node];
+
+        if (code >= 0) {
+            return qualifiedNames[code];
+        } else if (code == TEXT) {
+            return "#text";
+        } else if (code == CDATA) {
+            return "#cdata-section";
+        } else if (code == COMMENT) {
+            return "#comment";
+        } else {
+            return qualifiedNames[PROCESSING_INSTRUCTION - code];
+        }
+    }
+
+    /**
+     * @return Code of the needle for {@link #isNamed(int, int)} and {@link #findAttribute(int, int)},
+     *         {@link NamePool#UNKNOWN} if no node or attribute in the tree has a name like it
+     */
+    int lookup(String needle) {
+        return names.lookup(needle);
+    }
+
+    /**
+     * Names are compared ignoring case, both with and without namespace prefix.
+     *
+     * @param needle code from {@link #lookup(String)}
+     */
+    boolean isNamed(int node, int needle) {
+        final int code = nameCode[node];
+
+        if (code >= 0) {
+            return qualifiedNameCodes[code] == needle || localNameCodes[code] == needle;
+        } else if (code == TEXT) {
+            return needle == TEXT_NAME;
+        } else if (code == CDATA) {
+            return needle == CDATA_NAME;
+        } else if (code == COMMENT) {
+            return needle == COMMENT_NAME;
+        } else {
+            return qualifiedNameCodes[PROCESSING_INSTRUCTION - code] == needle;
+        }
+    }
+
+    /**
+     * @return Children of the node by name code or null if child indexes are disabled
+     */
+    ChildIndex<Integer> childIndex(int node) {
+        if (childIndexes == null) {
+            return null;
+        }
+
+        return childIndexes.get(node, (parentNode, childIndex) -> {
+            for (int child = firstChild[parentNode]; child != NONE; child = nextSibling[child]) {
+                final int code = nameCode[child];
+
+                if (code >= 0) {
+                    childIndex.add(qualifiedNameCodes[code], child);
+
+                    if (localNameCodes[code] != qualifiedNameCodes[code]) {
+                        childIndex.add(localNameCodes[code], child);
+                    }
+                } else if (code == TEXT) {
+                    childIndex.add(TEXT_NAME, child);
+                } else if (code == CDATA) {
+                    childIndex.add(CDATA_NAME, child);
+                } else if (code == COMMENT) {
+                    childIndex.add(COMMENT_NAME, child);
+                } else {
+                    childIndex.add(qualifiedNameCodes[PROCESSING_INSTRUCTION - code], child);
+                }
+            }
+        });
+    }
+
+    /**
+     * Names of the child nodes, used for error messages.
+     */
+    Set<String> childNames(int node) {
+        final Set<String> names = new TreeSet<>();
+
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            final int code = nameCode[child];
+            names.add(code >= 0 ? localNames[code] : name(child));
+        }
+
+        return names;
+    }
+
+    /**
+     * Same as {@link org.w3c.dom.Node#getTextContent()}, concatenated text and cdata.
+     */
+    String text(int node) {
+        final int code = nameCode[node];
+
+        if (code < 0) {
+            return new String(characters, dataStart[node], dataLength[node]);
+        }
+
+        final int first = firstChild[node];
+        if (first == NONE) {
+            return "";
+        } else if (nextSibling[first] == NONE && firstChild[first] == NONE && isCharacterData(first)) {
+            return new String(characters, dataStart[first], dataLength[first]);
+        } else {
+            final StringBuilder builder = new StringBuilder();
+            appendText(node, builder);
+
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Same as parsing {@link #text(int)}, without copying the characters unless
+     * the text is spread over several nodes.
+     *
+     * @throws NumberFormatException if the text isn't an integer between min and max
+     */
+    long parseLong(int node, long min, long max) {
+        final int data = characterData(node);
+
+        if (data != NONE) {
+            return Numbers.parseLong(characterView, dataStart[data], dataStart[data] + dataLength[data], min, max);
+        } else {
+            final String text = text(node);
+            return Numbers.parseLong(text, 0, text.length(), min, max);
+        }
+    }
+
+    /**
+     * @throws NumberFormatException if the text isn't a number
+     */
+    double parseDouble(int node) {
+        final int data = characterData(node);
+
+        if (data != NONE) {
+            return Numbers.parseDouble(characterView, dataStart[data], dataStart[data] + dataLength[data]);
+        } else {
+            final String text = text(node);
+            return Numbers.parseDouble(text, 0, text.length());
+        }
+    }
+
+    long parseLongAttribute(int attribute, long min, long max) {
+        return Numbers.parseLong(characterView, attributeStart[attribute], attributeStart[attribute] + attributeLength[attribute], min, max);
+    }
+
+    double parseDoubleAttribute(int attribute) {
+        return Numbers.parseDouble(characterView, attributeStart[attribute], attributeStart[attribute] + attributeLength[attribute]);
+    }
+
+    /**
+     * @return The node holding all of the text of the given node, or NONE if there's no such node
+     */
+    private int characterData(int node) {
+        if (nameCode[node] < 0) {
+            return node;
+        }
+
+        final int first = firstChild[node];
+        if (first != NONE && nextSibling[first] == NONE && isCharacterData(first)) {
+            return first;
+        } else {
+            return NONE;
+        }
+    }
+
+    private void appendText(int node, StringBuilder builder) {
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            if (isCharacterData(child)) {
+                builder.append(characters, dataStart[child], dataLength[child]);
+            } else if (nameCode[child] >= 0) {
+                appendText(child, builder);
+            }
+        }
+    }
+
+    private boolean isCharacterData(int node) {
+        return nameCode[node] == TEXT || nameCode[node] == CDATA;
+    }
+
+    /**
+     * @param needle code from {@link #lookup(String)}
+     * @return Index of the first attribute with a matching name or NONE
+     */
+    int findAttribute(int node, int needle) {
+        if (nameCode[node] < 0) {
+            return NONE;
+        }
+
+        final int first = dataStart[node];
+        final int last = first + dataLength[node];
+
+        for (int attribute = first; attribute < last; attribute++) {
+            final int code = attributeName[attribute];
+
+            if (qualifiedNameCodes[code] == needle || localNameCodes[code] == needle) {
+                return attribute;
+            }
+        }
+
+        return NONE;
+    }
+
+    String attributeValue(int attribute) {
+        return new String(characters, attributeStart[attribute], attributeLength[attribute]);
+    }
+
+
+    void serialize(int node, XmlSerializer serializer) throws IOException {
+        serializer.startDocument();
+        write(node, serializer);
+        serializer.endDocument();
+    }
+
+    private void write(int node, XmlSerializer serializer) throws IOException {
+        final int code = nameCode[node];
+
+        if (code >= 0) {
+            final String qname = qualifiedNames[code];
+            serializer.startElement(qname);
+
+            final int first = dataStart[node];
+            final int last = first + dataLength[node];
+
+            for (int attribute = first; attribute < last; attribute++) {
+                serializer.namespaceDeclaration(qualifiedNames[attributeName[attribute]], attributeValue(attribute));
+            }
+
+            for (int attribute = first; attribute < last; attribute++) {
+                final int attributeCode = attributeName[attribute];
+                serializer.attribute(qualifiedNames[attributeCode], namespaces[attributeCode], attributeValue(attribute));
+            }
+
+            serializer.elementNamespace(qname, namespaces[code], true);
+
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                write(child, serializer);
+            }
+
+            serializer.endElement(qname);
+        } else if (code == TEXT) {
+            serializer.characters(text(node));
+        } else if (code == CDATA) {
+            serializer.cdata(text(node));
+        } else if (code == COMMENT) {
+            serializer.comment(text(node));
+        } else {
+            serializer.processingInstruction(name(node), text(node));
+        }
+    }
+
+    String doctypePublic() {
+        return doctypePublic;
+    }
+
+    String doctypeSystem() {
+        return doctypeSystem;
+    }
+
+
+    /**
+     * Builds a tree from SAX events. Expects namespace prefixes to be reported
+     * so namespace declarations end up as attributes, just like with W3C DOM.
+     */
+    static final class Builder extends DefaultHandler2 {
+
+        private final boolean ignoreWhitespace;
+        private final boolean childIndex;
+
+        private int nodeCount = 0;
+        private int[] parent = new int[64];
+        private int[] firstChild = new int[64];
+        private int[] nextSibling = new int[64];
+        private int[] nameCode = new int[64];
+        private int[] dataStart = new int[64];
+        private int[] dataLength = new int[64];
+
+        private int attributeCount = 0;
+        private int[] attributeName = new int[16];
+        private int[] attributeStart = new int[16];
+        private int[] attributeLength = new int[16];
+
+        private int characterCount = 0;
+        private char[] characters = new char[1024];
+
+        private final Map<String, Integer> names = new HashMap<>();
+        private final List<String> qualifiedNames = new ArrayList<>();
+        private final List<String> localNames = new ArrayList<>();
+        private final List<String> namespaces = new ArrayList<>();
+
+        private int current = NONE;
+        private int lastChild = NONE;
+
+        private boolean inCData = false;
+        private boolean inDtd = false;
+
+        private String doctypePublic;
+        private String doctypeSystem;
+
+        private NX.Projection projection;
+        private Map<Integer, ProjectionFilter.Step[]> skeleton;
+        private ProjectionLearner.Touched touched;
+
+        Builder(boolean ignoreWhitespace, boolean childIndex) {
+            this.ignoreWhitespace = ignoreWhitespace;
+            this.childIndex = childIndex;
+        }
+
+        CompactTree build() {
+            if (nodeCount == 0) {
+                throw new IllegalStateException("No document element");
+            }
+
+            return new CompactTree(this);
+        }
+
+        /**
+         * @param projection null if the whole document was built
+         * @param skeleton   see {@link CompactTree#skeleton(int)}
+         * @param touched    see {@link CompactTree#touched()}, null unless navigation is recorded
+         */
+        CompactTree build(NX.Projection projection, Map<Integer, ProjectionFilter.Step[]> skeleton, ProjectionLearner.Touched touched) {
+            this.projection = projection;
+            this.skeleton = projection != null ? skeleton : null;
+            this.touched = touched;
+
+            return build();
+        }
+
+        /**
+         * @return Element most recently started and not yet ended
+         */
+        int currentNode() {
+            return current;
+        }
+
+        /**
+         * Replays a W3C DOM node and its descendants as SAX events.
+         */
+        void copy(Node node, Map<Node, Integer> nodes) {
+            switch (node.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    startElement(uri(node), localName(node), node.getNodeName(), attributes(node));
+                    nodes.replace(node, current);
+
+                    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                        copy(child, nodes);
+                    }
+
+                    endElement(uri(node), localName(node), node.getNodeName());
+                    return;
+
+                case Node.TEXT_NODE:
+                    characters(node.getNodeValue().toCharArray(), 0, node.getNodeValue().length());
+                    break;
+
+                case Node.CDATA_SECTION_NODE:
+                    startCDATA();
+                    characters(node.getNodeValue().toCharArray(), 0, node.getNodeValue().length());
+                    endCDATA();
+                    break;
+
+                case Node.COMMENT_NODE:
+                    comment(node.getNodeValue().toCharArray(), 0, node.getNodeValue().length());
+                    break;
+
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    processingInstruction(node.getNodeName(), node.getNodeValue());
+                    break;
+
+                case Node.DOCUMENT_TYPE_NODE:
+                    final DocumentType doctype = (DocumentType) node;
+                    startDTD(doctype.getName(), doctype.getPublicId(), doctype.getSystemId());
+                    endDTD();
+                    return;
+
+                default:
+                    // Documents, fragments and entity references
+                    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                        copy(child, nodes);
+                    }
+
+                    return;
+            }
+
+            if (current != NONE) {
+                nodes.replace(node, lastChild);
+            }
+        }
+
+        private static Attributes attributes(Node element) {
+            final NamedNodeMap attributes = element.getAttributes();
+            final AttributesImpl copy = new AttributesImpl();
+
+            for (int i = 0; i < attributes.getLength(); i++) {
+                final Node attribute = attributes.item(i);
+
+                // Sax doesn't put namespace declarations in the xmlns namespace
+                final String uri = XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI()) ? "" : uri(attribute);
+                copy.addAttribute(uri, localName(attribute), attribute.getNodeName(), "CDATA", attribute.getNodeValue());
+            }
+
+            return copy;
+        }
+
+        private static String uri(Node node) {
+            return node.getNamespaceURI() != null ? node.getNamespaceURI() : "";
+        }
+
+        /**
+         * Nodes created without a namespace don't have a local name in W3C DOM.
+         */
+        private static String localName(Node node) {
+            return node.getLocalName() != null ? node.getLocalName() : "";
+        }
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId) {
+            doctypePublic = publicId;
+            doctypeSystem = systemId;
+            inDtd = true;
+        }
+
+        @Override
+        public void endDTD() {
+            inDtd = false;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            final int node = addNode(nameCode(qName, localName, uri));
+            final int count = attributes.getLength();
+
+            dataStart[node] = attributeCount;
+            dataLength[node] = count;
+
+            for (int i = 0; i < count; i++) {
+                if (attributeCount == attributeName.length) {
+                    attributeName = Arrays.copyOf(attributeName, attributeCount * 2);
+                    attributeStart = Arrays.copyOf(attributeStart, attributeCount * 2);
+                    attributeLength = Arrays.copyOf(attributeLength, attributeCount * 2);
+                }
+
+                final String qualifiedName = attributes.getQName(i);
+                final String value = attributes.getValue(i);
+
+                attributeName[attributeCount] = nameCode(qualifiedName, attributes.getLocalName(i), attributes.getURI(i));
+                attributeStart[attributeCount] = append(value);
+                attributeLength[attributeCount] = value.length();
+                attributeCount++;
+            }
+
+            sortAttributes(attributeCount - count, attributeCount);
+
+            current = node;
+            lastChild = NONE;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            // The element we're leaving is the last child of its parent
+            lastChild = current;
+            current = parent[current];
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (current == NONE || length == 0) {
+                return;
+            }
+
+            // Parsers may report text in several chunks, W3C DOM merges them into a single node.
+            // Cdata sections are created up front by startCDATA.
+            if (inCData || (lastChild != NONE && nameCode[lastChild] == TEXT)) {
+                appendCharacters(ch, start, length);
+                dataLength[lastChild] += length;
+            } else {
+                final int node = addNode(TEXT);
+                dataStart[node] = appendCharacters(ch, start, length);
+                dataLength[node] = length;
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            if (!ignoreWhitespace) {
+                characters(ch, start, length);
+            }
+        }
+
+        @Override
+        public void startCDATA() {
+            if (current != NONE) {
+                final int node = addNode(CDATA);
+                dataStart[node] = characterCount;
+                dataLength[node] = 0;
+                inCData = true;
+            }
+        }
+
+        @Override
+        public void endCDATA() {
+            inCData = false;
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length) {
+            if (current != NONE && !inDtd) {
+                final int node = addNode(COMMENT);
+                dataStart[node] = appendCharacters(ch, start, length);
+                dataLength[node] = length;
+            }
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) {
+            if (current != NONE) {
+                final int node = addNode(PROCESSING_INSTRUCTION - nameCode(target, target, null));
+                dataStart[node] = append(data);
+                dataLength[node] = data.length();
+            }
+        }
+
+        /**
+         * W3C DOM keeps attributes ordered by name, both when they're looked up and dumped.
+         */
+        private void sortAttributes(int first, int end) {
+            for (int i = first + 1; i < end; i++) {
+                final int name = attributeName[i];
+                final int start = attributeStart[i];
+                final int length = attributeLength[i];
+                final String qualifiedName = qualifiedNames.get(name);
+
+                int j = i - 1;
+                while (j >= first && qualifiedNames.get(attributeName[j]).compareTo(qualifiedName) > 0) {
+                    attributeName[j + 1] = attributeName[j];
+                    attributeStart[j + 1] = attributeStart[j];
+                    attributeLength[j + 1] = attributeLength[j];
+                    j--;
+                }
+
+                attributeName[j + 1] = name;
+                attributeStart[j + 1] = start;
+                attributeLength[j + 1] = length;
+            }
+        }
+
+        private int addNode(int code) {
+            if (nodeCount == parent.length) {
+                final int capacity = nodeCount * 2;
+
+                parent = Arrays.copyOf(parent, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                nameCode = Arrays.copyOf(nameCode, capacity);
+                dataStart = Arrays.copyOf(dataStart, capacity);
+                dataLength = Arrays.copyOf(dataLength, capacity);
+            }
+
+            final int node = nodeCount++;
+            parent[node] = current;
+            firstChild[node] = NONE;
+            nextSibling[node] = NONE;
+            nameCode[node] = code;
+
+            if (lastChild != NONE) {
+                nextSibling[lastChild] = node;
+            } else if (current != NONE) {
+                firstChild[current] = node;
+            }
+
+            lastChild = node;
+            return node;
+        }
+
+        private int nameCode(String qualifiedName, String localName, String uri) {
+            final String key = uri == null || uri.isEmpty() ? qualifiedName : qualifiedName + ' ' + uri;
+            final Integer existing = names.get(key);
+
+            if (existing != null) {
+                return existing;
+            }
+
+            final int code = qualifiedNames.size();
+            qualifiedNames.add(qualifiedName);
+            localNames.add(localName.isEmpty() ? qualifiedName.substring(qualifiedName.indexOf(':') + 1) : localName);
+            namespaces.add(uri == null || uri.isEmpty() ? null : uri);
+            names.put(key, code);
+
+            return code;
+        }
+
+        private int append(String value) {
+            final int start = reserve(value.length());
+            value.getChars(0, value.length(), characters, start);
+            characterCount += value.length();
+
+            return start;
+        }
+
+        private int appendCharacters(char[] ch, int start, int length) {
+            final int position = reserve(length);
+            System.arraycopy(ch, start, characters, position, length);
+            characterCount += length;
+
+            return position;
+        }
+
+        private int reserve(int length) {
+            if (characterCount + length > characters.length) {
+                characters = Arrays.copyOf(characters, Math.max(characters.length * 2, characterCount + length));
+            }
+
+            return characterCount;
+        }
+
+    }
+
+}
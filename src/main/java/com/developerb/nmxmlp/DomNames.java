@@ -0,0 +1,168 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Name codes for the children and attributes of a single W3C DOM document. W3C DOM
+ * doesn't let us code names while parsing, so the children and attributes of a node
+ * are coded the first time it's queried, and coded again if they've been modified since.
+ * Matching a name is then a single int comparison per node.
+ * <p>
+ * Not thread safe, just like W3C DOM.
+ */
+final class DomNames {
+
+    private final NamePool names = new NamePool();
+    private final Map<Node, Coded> children = new IdentityHashMap<>();
+    private final Map<Node, Coded> attributes = new IdentityHashMap<>();
+
+    // Null unless ConfigFeature.CHILD_INDEX is enabled
+    private final ChildIndex.Cache<Node> childIndexes;
+
+    private int childrenModCount = 0;
+    private int attributesModCount = 0;
+
+    DomNames(boolean childIndex) {
+        this.childIndexes = childIndex ? new ChildIndex.Cache<>(new HashMap<>(), names) : null;
+    }
+
+    /**
+     * @return Code of the needle, {@link NamePool#UNKNOWN} unless a node has been coded with a name like it
+     */
+    int lookup(String needle) {
+        return names.lookup(needle);
+    }
+
+    /**
+     * @return Null unless ConfigFeature.CHILD_INDEX is enabled
+     */
+    ChildIndex.Cache<Node> childIndexes() {
+        return childIndexes;
+    }
+
+    /**
+     * Must be called whenever children are added to or removed from any node in the document.
+     */
+    void childrenModified() {
+        childrenModCount++;
+
+        if (childIndexes != null) {
+            childIndexes.modified();
+        }
+    }
+
+    /**
+     * Must be called whenever attributes are added to or removed from any element in the document.
+     */
+    void attributesModified() {
+        attributesModCount++;
+    }
+
+    /**
+     * Code the needle after this, names are only added to the pool as nodes are coded.
+     */
+    Coded children(Node parent) {
+        Coded coded = children.get(parent);
+
+        if (coded == null || coded.modCount != childrenModCount) {
+            int length = 0;
+            for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+                length++;
+            }
+
+            coded = new Coded(length, childrenModCount);
+
+            int i = 0;
+            for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+                coded.set(i++, child);
+            }
+
+            children.put(parent, coded);
+        }
+
+        return coded;
+    }
+
+    /**
+     * Code the needle after this, names are only added to the pool as nodes are coded.
+     */
+    Coded attributes(Node element) {
+        Coded coded = attributes.get(element);
+
+        if (coded == null || coded.modCount != attributesModCount) {
+            final NamedNodeMap map = element.getAttributes();
+            coded = new Coded(map.getLength(), attributesModCount);
+
+            for (int i = 0; i < map.getLength(); i++) {
+                coded.set(i, map.item(i));
+            }
+
+            attributes.put(element, coded);
+        }
+
+        return coded;
+    }
+
+
+    /**
+     * Children or attributes of a node in document order. A node named with a namespace
+     * prefix matches its name both with and without the prefix.
+     */
+    final class Coded {
+
+        private final Node[] nodes;
+        private final int[] nameCodes;
+        private final int[] localNameCodes;
+        private final int modCount;
+
+        private Coded(int length, int modCount) {
+            this.nodes = new Node[length];
+            this.nameCodes = new int[length];
+            this.localNameCodes = new int[length];
+            this.modCount = modCount;
+        }
+
+        private void set(int i, Node node) {
+            final String nodeName = node.getNodeName();
+            final String localName = node.getLocalName();
+
+            nodes[i] = node;
+            nameCodes[i] = names.code(nodeName);
+            localNameCodes[i] = localName != null && localName != nodeName ? names.code(localName) : nameCodes[i];
+        }
+
+        int length() {
+            return nodes.length;
+        }
+
+        Node node(int i) {
+            return nodes[i];
+        }
+
+        boolean isNamed(int i, int needle) {
+            return nameCodes[i] == needle || localNameCodes[i] == needle;
+        }
+
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+/**
+ * Java Flight Recorder events for parsing, dumping, inserting and extracting.
+ * <p>
+ * Flight Recorder isn't available on Java 8, so this version does nothing. On Java 11
+ * and newer it's replaced by the version in src/main/java11 through the multi release jar.
+ */
+final class Events {
+
+    private Events() {
+    }
+
+    static TracedOperation parse() {
+        return TracedOperation.NONE;
+    }
+
+    static TracedOperation dump() {
+        return TracedOperation.NONE;
+    }
+
+    static TracedOperation insertCollection() {
+        return TracedOperation.NONE;
+    }
+
+    static TracedOperation extractCollection() {
+        return TracedOperation.NONE;
+    }
+
+}
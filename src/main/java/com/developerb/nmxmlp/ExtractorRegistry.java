@@ -0,0 +1,145 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Extractors by type, safe to register with and look up from any number of threads.
+ * <p>
+ * A type without an extractor of its own is resolved to the extractor of its closest
+ * superclass, or the first interface found breadth first. Resolved extractors are cached
+ * per requested type. Registered extractors are published as a whole, replacing the cache,
+ * so a lookup never sees half of a bulk registration.
+ */
+final class ExtractorRegistry {
+
+    private static final NX.Extractor<?> MISSING = cursor -> null;
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap());
+
+    synchronized void register(Map<Class<?>, NX.Extractor<?>> extractors) {
+        final Map<Class<?>, NX.Extractor<?>> registered = new HashMap<>(snapshot.registered);
+        registered.putAll(extractors);
+
+        snapshot = new Snapshot(registered);
+    }
+
+    /**
+     * @return Extractor for the type or null if there's no extractor for the type or any of its supertypes
+     */
+    @SuppressWarnings("unchecked")
+    <R> NX.Extractor<R> get(Class<R> type) {
+        final Snapshot current = snapshot;
+        final NX.Extractor<?> extractor = current.resolved.computeIfAbsent(type, current::resolve);
+
+        return extractor != MISSING ? (NX.Extractor<R>) extractor : null;
+    }
+
+
+    private static final class Snapshot {
+
+        private final Map<Class<?>, NX.Extractor<?>> registered;
+        private final ConcurrentMap<Class<?>, NX.Extractor<?>> resolved = new ConcurrentHashMap<>();
+
+        Snapshot(Map<Class<?>, NX.Extractor<?>> registered) {
+            this.registered = registered;
+        }
+
+        NX.Extractor<?> resolve(Class<?> type) {
+            final NX.Extractor<?> exact = registered.get(type);
+            if (exact != null) {
+                return exact;
+            }
+
+            for (Class<?> superclass = type.getSuperclass(); superclass != null; superclass = superclass.getSuperclass()) {
+                final NX.Extractor<?> extractor = registered.get(superclass);
+
+                if (extractor != null) {
+                    return new Checked<>(type, superclass, extractor);
+                }
+            }
+
+            final Deque<Class<?>> interfaces = new ArrayDeque<>();
+            final Set<Class<?>> visited = new HashSet<>();
+
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                Collections.addAll(interfaces, current.getInterfaces());
+            }
+
+            while (!interfaces.isEmpty()) {
+                final Class<?> candidate = interfaces.removeFirst();
+
+                if (visited.add(candidate)) {
+                    final NX.Extractor<?> extractor = registered.get(candidate);
+
+                    if (extractor != null) {
+                        return new Checked<>(type, candidate, extractor);
+                    }
+
+                    Collections.addAll(interfaces, candidate.getInterfaces());
+                }
+            }
+
+            // Interfaces don't have Object as their superclass
+            if (type.isInterface() && registered.containsKey(Object.class)) {
+                return new Checked<>(type, Object.class, registered.get(Object.class));
+            }
+
+            return MISSING;
+        }
+
+    }
+
+    /**
+     * Extractor registered for a supertype of the requested type, it might return
+     * something that isn't of the requested type.
+     */
+    private static final class Checked<R> implements NX.Extractor<R> {
+
+        private final Class<R> type;
+        private final Class<?> registeredType;
+        private final NX.Extractor<?> extractor;
+
+        Checked(Class<R> type, Class<?> registeredType, NX.Extractor<?> extractor) {
+            this.type = type;
+            this.registeredType = registeredType;
+            this.extractor = extractor;
+        }
+
+        @Override
+        public R transform(NX.Cursor cursor) throws NX.Ex {
+            final Object extracted = extractor.transform(cursor);
+
+            if (extracted == null || type.isInstance(extracted)) {
+                return type.cast(extracted);
+            } else {
+                throw new NX.Ex(cursor, "Extractor registered for " + registeredType.getName() + " returned "
+                        + extracted.getClass().getName() + ", expected " + type.getName());
+            }
+        }
+
+    }
+
+}
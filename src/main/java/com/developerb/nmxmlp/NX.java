@@ -18,15 +18,23 @@ package com.developerb.nmxmlp;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentType;
 import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.DefaultHandler2;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
@@ -34,63 +42,270 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.StringJoiner;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static javax.xml.transform.OutputKeys.INDENT;
 import static javax.xml.transform.OutputKeys.OMIT_XML_DECLARATION;
 
 /**
  * No more xml please!
+ * <p>
+ * Instances are thread safe once configured, parsers and transformers are pooled
+ * internally so one instance should be shared by all threads. Cursors into a W3C DOM
+ * document must only be used by one thread at a time, see {@link Cursor#freeze()}.
  *
  * @author Kim A. Betti
  */
 public class NX {
 
     private final DocumentBuilderFactory docBuilderFactory;
-    private final TransformerFactory transformerFactory;
-    private final Map<Class<?>, Extractor<?>> extractors = new HashMap<>();
+    private final Pool<DocumentBuilder> docBuilders;
+    private final Pool<SAXParser> saxParsers;
+    private final TransformerPools transformers;
+    private final XMLInputFactory inputFactory;
+    private final boolean ignoreWhitespace;
+    private final boolean nativeDump;
+    private final boolean compactTree;
+    private final boolean childIndex;
+    private final boolean lightweightExceptions;
+    private final boolean virtualThreads;
+    private final ExtractorRegistry extractors = new ExtractorRegistry();
+    private Metrics metrics = Metrics.NONE;
+
+    // Null until registered, see xmlExecutor()
+    private XmlExecutor xmlExecutor;
+    private volatile ProjectionLearner learner;
 
     public NX() {
         this(Collections.emptySet());
     }
 
     public NX(Set<ConfigFeature> features) {
-        transformerFactory = TransformerFactory.newInstance();
+        transformers = new TransformerPools(TransformerFactory.newInstance());
         docBuilderFactory = DocumentBuilderFactory.newInstance();
 
         // Without this "localName" won't work for namespaced documents
         docBuilderFactory.setNamespaceAware(true);
 
-        docBuilderFactory.setIgnoringElementContentWhitespace(features.contains(ConfigFeature.IGNORE_WHITESPACE));
+        ignoreWhitespace = features.contains(ConfigFeature.IGNORE_WHITESPACE);
+        docBuilderFactory.setIgnoringElementContentWhitespace(ignoreWhitespace);
         docBuilderFactory.setValidating(features.contains(ConfigFeature.VALIDATING));
+        nativeDump = features.contains(ConfigFeature.NATIVE_DUMP);
+        compactTree = features.contains(ConfigFeature.COMPACT_TREE);
+        childIndex = features.contains(ConfigFeature.CHILD_INDEX);
+        lightweightExceptions = features.contains(ConfigFeature.LIGHTWEIGHT_EXCEPTIONS);
+        virtualThreads = features.contains(ConfigFeature.VIRTUAL_THREADS);
+
+        docBuilders = new Pool<>(Pool.DEFAULT_CAPACITY, docBuilderFactory::newDocumentBuilder);
+
+        try {
+            final SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+            saxParserFactory.setNamespaceAware(true);
+            saxParserFactory.setValidating(features.contains(ConfigFeature.VALIDATING));
+
+            // Report namespace declarations as attributes, just like W3C DOM
+            saxParserFactory.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+            saxParsers = new Pool<>(Pool.DEFAULT_CAPACITY, saxParserFactory::newSAXParser);
+        } catch (Exception ex) {
+            throw new Ex("Failed to configure sax parser", ex);
+        }
+
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
 
         // Default extractors
-        extractors.put(Integer.class, new IntegerExtractor());
-        extractors.put(Long.class, new LongExtractor());
-        extractors.put(Float.class, new FloatExtractor());
-        extractors.put(Double.class, new DoubleExtractor());
+        registerExtractors(registration -> registration
+                .register(Integer.class, new IntegerExtractor())
+                .register(Long.class, new LongExtractor())
+                .register(Float.class, new FloatExtractor())
+                .register(Double.class, new DoubleExtractor()));
     }
 
 
+    /**
+     * The extractor is also used for subclasses and implementations of the type, unless
+     * they have an extractor of their own. Extractors can be registered at any time,
+     * even while other threads are extracting.
+     */
     public <R> NX registerExtractor(Class<R> type, Extractor<R> extractor) {
-        extractors.put(type, extractor);
+        return registerExtractors(registration -> registration.register(type, extractor));
+    }
+
+    /**
+     * Registers a bunch of extractors at once. Other threads will either see all or none of them.
+     */
+    public NX registerExtractors(Consumer<ExtractorRegistration> registrations) {
+        final Map<Class<?>, Extractor<?>> registered = new HashMap<>();
+
+        registrations.accept(new ExtractorRegistration() {
+            @Override
+            public <R> ExtractorRegistration register(Class<R> type, Extractor<R> extractor) {
+                if (type == null || extractor == null) {
+                    throw new IllegalArgumentException("Type and extractor can't be null");
+                }
+
+                registered.put(type, extractor);
+                return this;
+            }
+        });
+
+        extractors.register(registered);
+        return this;
+    }
+
+    /**
+     * Creates an extractor calling a constructor of the given type, the canonical constructor
+     * for records. Parameters are bound to child nodes named after the parameter unless
+     * annotated with {@link Attr}, {@link Child} or {@link Self}. Parameter names are only
+     * known for records and classes compiled with <code>-parameters</code>.
+     * <p>
+     * Numbers, booleans, strings and enums are read from the text, anything else is
+     * extracted using the extractors registered with the cursor's NX instance.
+     * <p>
+     * The constructor and parameters are looked up once, the returned extractor doesn't use reflection.
+     *
+     * @throws IllegalArgumentException if the type or one of its parameters can't be bound
+     */
+    public static <T> Extractor<T> binding(Class<T> type) {
+        return Bindings.bind(type);
+    }
+
+    /**
+     * Replaces the default metrics, doing nothing, with the given listener.
+     * Should be registered before the instance is shared between threads.
+     */
+    public NX registerMetrics(Metrics metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("Metrics can't be null, use Metrics.NONE");
+        }
+
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Replaces the default executor used for asynchronous operations, one thread per available
+     * processor failing new tasks when too many are queued. The default is shared by all instances
+     * without a registered executor and only created once one of them goes asynchronous.
+     * Should be registered before the instance is shared between threads. The caller is
+     * responsible for closing the executor.
+     */
+    public NX registerXmlExecutor(XmlExecutor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor can't be null");
+        }
+
+        this.xmlExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Records the children, attributes and text extractors passed to {@link #extract(InputStream, ReadContext, Extractor)}
+     * navigate to, for each name of the document element. Once the given number of documents with the
+     * same document element have been recorded, only the parts of them that were navigated to are built,
+     * see {@link #projection(String...)}.
+     * <p>
+     * Documents extracted this way are parsed to read only compact trees, documents parsed with
+     * {@link #from(InputStream, ReadContext)} are neither recorded nor projected. If an extractor navigates
+     * outside the learned projection the document is parsed again in full and extracted once more,
+     * recording the new paths, so extractors must not have side effects or catch {@link Ex}.
+     */
+    public NX learnProjections(int documents) {
+        this.learner = new ProjectionLearner(documents);
+        return this;
+    }
+
+    /**
+     * Same as {@link #learnProjections(int)}, starting out with projections learned earlier.
+     *
+     * @param learned by name of the document element, typically from {@link #learnedProjections()}
+     *                of a previous run. Paths must start with the document element.
+     */
+    public NX learnProjections(int documents, Map<String, Projection> learned) {
+        this.learner = new ProjectionLearner(documents, learned);
         return this;
     }
 
+    /**
+     * @return Projections learned so far by name of the document element, empty unless
+     *         learning, see {@link #learnProjections(int)}
+     */
+    public Map<String, Projection> learnedProjections() {
+        final ProjectionLearner current = learner;
+        return current != null ? current.projections() : Collections.emptyMap();
+    }
+
+    /**
+     * @param names leading from a cursor to the target node, each expected to match a single child
+     * @return A path that can be reused with {@link Cursor#to(Path)} from any thread
+     */
+    public static Path path(String... names) {
+        final int[] positions = new int[names.length];
+        Arrays.fill(positions, Path.SINGLE);
+
+        return new Path(names.clone(), positions);
+    }
+
+    /**
+     * @param paths starting with the document element, separated by slashes. A star matches any
+     *              element and paths may end with an attribute, like <code>Envelope/Body/&#42;/Order/@currencyCode</code>.
+     *              Attributes on their own, like <code>@currencyCode</code>, are kept on every element.
+     * @return Projection for {@link #from(InputStream, ReadContext, Projection)}, elements at the end of
+     *         a path are built with all their descendants
+     */
+    public static Projection projection(String... paths) {
+        return new Projection(Arrays.asList(paths.clone()));
+    }
+
     public Cursor from(String xml) throws Ex {
         return from(xml, new ReadContext(null));
     }
@@ -100,38 +315,193 @@ public class NX {
     }
 
     public Cursor from(InputStream stream, ReadContext context) throws Ex {
+        return from(stream, context, null);
+    }
+
+    public Cursor from(String xml, Projection projection) throws Ex {
+        return from(new ByteArrayInputStream(xml.getBytes()), new ReadContext(null), projection);
+    }
+
+    /**
+     * Only builds the parts of the document within the projection, see {@link #projection(String...)}.
+     * The document is read only, just like a compact tree. Navigating to children or attributes
+     * left out by the projection throws {@link OutsideProjection}, as does reading the text of,
+     * dumping or searching with a predicate through elements on the way to projected elements.
+     */
+    public Cursor from(InputStream stream, ReadContext context, Projection projection) throws Ex {
+        if (virtualThreads && Threads.isVirtual() && !(stream instanceof ByteArrayInputStream)) {
+            try {
+                // Don't hold on to a pooled parser while blocked reading the stream
+                stream = Bytes.readFully(stream).inputStream();
+            } catch (IOException ex) {
+                throw new Ex("Failed to initialize xml cursor", ex);
+            }
+        }
+
+        return parse(stream, context, projection != null ? name -> projection : null, null, false);
+    }
+
+    /**
+     * Parses the document and extracts a result from it. Same as parsing the document and
+     * extracting from the cursor, unless learning projections, see {@link #learnProjections(int)}.
+     */
+    public <R> R extract(InputStream stream, ReadContext context, Extractor<R> extractor) throws Ex {
+        final ProjectionLearner current = learner;
+
+        if (current == null) {
+            return from(stream, context).extract(extractor);
+        }
+
+        final Bytes document;
         try {
-            DocumentBuilder docBuilder = docBuilderFactory.newDocumentBuilder();
-            docBuilder.setErrorHandler(new ErrorHandler() {
+            // Kept around in case the document has to be parsed again
+            document = Bytes.readFully(stream);
+        } catch (IOException ex) {
+            throw new Ex("Failed to initialize xml cursor", ex);
+        }
 
-                @Override
-                public void warning(SAXParseException exception) {
-                    throw new Ex("Parser warning: " + exception.getMessage(), exception);
-                }
+        try {
+            return parse(document.inputStream(), context, current::projectionFor, current, false).extract(extractor);
+        } catch (OutsideProjection ex) {
+            return parse(document.inputStream(), context, name -> null, current, true).extract(extractor);
+        }
+    }
 
-                @Override
-                public void error(SAXParseException exception) {
-                    throw new Ex("Parser error: " + exception.getMessage(), exception);
-                }
+    /**
+     * @param projections by local name of the document element, null to build every document in full
+     * @param learner     records navigation of documents built in full, null unless extracting
+     * @param fallback    whether the document is parsed again after leaving a learned projection
+     */
+    private Cursor parse(InputStream stream, ReadContext context, Function<String, Projection> projections, ProjectionLearner learner, boolean fallback) throws Ex {
+        final boolean compact = compactTree || projections != null;
+        final TracedOperation event = Events.parse();
 
-                @Override
-                public void fatalError(SAXParseException exception) {
-                    throw new Ex("Parser fatal error: " + exception.getMessage(), exception);
-                }
+        if (metrics == Metrics.NONE && !event.isEnabled()) {
+            return compact ? fromCompact(stream, context, projections, learner, fallback) : fromDom(stream, context);
+        }
 
-            });
+        final CountingInputStream countingStream = new CountingInputStream(stream);
+        final long start = System.nanoTime();
 
-            if (context != null) {
-                if (context.entityResolver != null) {
-                    docBuilder.setEntityResolver(context.entityResolver);
-                }
+        final Cursor cursor;
+        final int nodes;
+
+        if (compact) {
+            final CompactCursor compactCursor = fromCompact(countingStream, context, projections, learner, fallback);
+            event.end();
+
+            cursor = compactCursor;
+            nodes = compactCursor.tree.nodeCount();
+        } else {
+            final NodeCursor nodeCursor = fromDom(countingStream, context);
+            event.end();
+
+            cursor = nodeCursor;
+            nodes = countNodes(nodeCursor.document);
+        }
+
+        metrics.parsed(countingStream.count, System.nanoTime() - start, nodes);
+        event.finish(cursor, countingStream.count, nodes);
+
+        return cursor;
+    }
+
+    /**
+     * Parses the document on the xml executor, see {@link #registerXmlExecutor(XmlExecutor)}.
+     * The future fails with {@link Overloaded} if the executor rejects the task.
+     */
+    public CompletableFuture<Cursor> fromAsync(InputStream stream, ReadContext context) {
+        return fromAsync(stream, context, xmlExecutor());
+    }
+
+    /**
+     * Parses the document on the given executor. The future fails with {@link Overloaded}
+     * if the executor rejects the task.
+     */
+    public CompletableFuture<Cursor> fromAsync(InputStream stream, ReadContext context, Executor executor) {
+        return async(executor, stream, () -> from(stream, context));
+    }
+
+    /**
+     * Parses the document and extracts a result from it as one task on the xml executor,
+     * see {@link #registerXmlExecutor(XmlExecutor)}. The future fails with {@link Overloaded}
+     * if the executor rejects the task.
+     */
+    public <R> CompletableFuture<R> extractAsync(InputStream stream, ReadContext context, Extractor<R> extractor) {
+        return async(xmlExecutor(), stream, () -> extract(stream, context, extractor));
+    }
+
+    /**
+     * Same as {@link #fromAll(Iterable, ReadContext, Extractor, Executor, int)} using one
+     * worker per available processor and no entity resolver.
+     */
+    public <R> List<BatchResult<R>> fromAll(Iterable<InputStream> streams, Extractor<R> extractor, Executor executor) throws Ex {
+        return fromAll(streams, new ReadContext(null), extractor, executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Parses a batch of documents and extracts a result from each of them, blocking until
+     * all documents are done. The calling thread is one of at most <code>parallelism</code>
+     * workers, the others are submitted to the executor. Each worker parses one document after
+     * the other with pooled parsers. The batch doesn't wait for submitted workers to start, so it's
+     * safe to call from a task running on the same executor, rejected workers are simply left out.
+     * <p>
+     * Failures to parse or extract a document are captured in its result rather than failing
+     * the batch. The streams are closed once they have been parsed.
+     *
+     * @return One result per stream, in the same order as the streams
+     */
+    public <R> List<BatchResult<R>> fromAll(Iterable<InputStream> streams, ReadContext context, Extractor<R> extractor, Executor executor, int parallelism) throws Ex {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be greater then zero");
+        }
+
+        final List<InputStream> documents = new ArrayList<>();
+        for (InputStream stream : streams) {
+            documents.add(stream);
+        }
+
+        final BatchWorker<R> worker = new BatchWorker<>(documents, context, extractor);
+        final int workers = Math.min(parallelism, documents.size());
+
+        for (int i = 1; i < workers; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException ex) {
+                break;
             }
+        }
+
+        // Once the calling thread runs out of documents, the rest are being worked on by others
+        worker.run();
+
+        try {
+            worker.done.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new Ex("Interrupted while waiting for the batch to complete", ex);
+        }
+
+        if (worker.failure != null) {
+            throw worker.failure;
+        }
+
+        return Collections.unmodifiableList(Arrays.asList(worker.results));
+    }
+
+    private NodeCursor fromDom(InputStream stream, ReadContext context) throws Ex {
+        DocumentBuilder docBuilder = null;
+
+        try {
+            docBuilder = borrowDocBuilder(context);
 
             final Document document = docBuilder.parse(stream);
-            return new NodeCursor(document, document.getDocumentElement());
+            return new NodeCursor(document, new DomNames(childIndex), null, document.getDocumentElement(), 0);
         } catch (Exception ex) {
             throw new Ex("Failed to initialize xml cursor", ex);
         } finally {
+            releaseDocBuilder(docBuilder);
+
             try {
                 stream.close();
             } catch (IOException ignored) {
@@ -139,928 +509,3847 @@ public class NX {
         }
     }
 
+    /**
+     * @param projections null to build the whole document
+     * @param learner     records navigation of the document if built in full, may be null
+     */
+    private CompactCursor fromCompact(InputStream stream, ReadContext context, Function<String, Projection> projections, ProjectionLearner learner, boolean fallback) throws Ex {
+        SAXParser parser = null;
+
+        try {
+            parser = saxParsers.borrow();
+
+            final CompactTree.Builder builder = new CompactTree.Builder(ignoreWhitespace, childIndex);
+            final ProjectionFilter filter = projections != null ? new ProjectionFilter(builder, projections) : null;
+            final DefaultHandler2 handler = filter != null ? filter : builder;
+
+            final XMLReader reader = parser.getXMLReader();
+            reader.setContentHandler(handler);
+            reader.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+            reader.setErrorHandler(FailingErrorHandler.INSTANCE);
+            reader.setEntityResolver(context != null ? context.entityResolver : null);
+            reader.parse(new InputSource(stream));
+
+            final CompactTree tree;
+            if (filter == null) {
+                tree = builder.build();
+            } else {
+                final ProjectionLearner.Touched touched = learner != null && filter.projection() == null
+                        ? learner.recording(filter.rootName(), fallback)
+                        : null;
 
-    public interface Extractor<R> {
+                tree = builder.build(filter.projection(), filter.skeleton(), touched);
+            }
 
-        R transform(Cursor cursor) throws Ex;
+            return new CompactCursor(tree, 0, null, 0);
+        } catch (Exception ex) {
+            throw new Ex("Failed to initialize xml cursor", ex);
+        } finally {
+            if (parser != null) {
+                try {
+                    parser.reset();
+                    saxParsers.release(parser);
+                } catch (UnsupportedOperationException ignored) {
+                    // Parsers that can't be reset are not safe to reuse
+                }
+            }
 
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
     }
 
-    public interface Iterator {
+    /**
+     * Same nodes as a compact tree would have, elements, text, cdata, comments and processing instructions.
+     */
+    private static int countNodes(Document document) {
+        int count = 0;
+        Node node = document.getDocumentElement();
 
-        void on(Cursor cursor) throws Ex;
+        while (node != null) {
+            count++;
+
+            if (node.getFirstChild() != null) {
+                node = node.getFirstChild();
+            } else {
+                while (node != null && node.getNextSibling() == null) {
+                    node = node.getParentNode();
+                }
 
+                node = node != null ? node.getNextSibling() : null;
+            }
+        }
+
+        return count;
     }
 
-    public interface Inserter<R> {
+    /**
+     * Reports time spent and bytes written to the metrics and flight recorder, if enabled.
+     */
+    private void measureDump(Cursor cursor, OutputStream output, Consumer<OutputStream> dump) {
+        final TracedOperation event = Events.dump();
 
-        void insert(Cursor cursor, R input) throws Ex;
+        if (metrics == Metrics.NONE && !event.isEnabled()) {
+            dump.accept(output);
+            return;
+        }
 
+        final CountingOutputStream countingOutput = new CountingOutputStream(output);
+        final long start = System.nanoTime();
+
+        dump.accept(countingOutput);
+        event.end();
+
+        metrics.dumped(countingOutput.count, System.nanoTime() - start);
+        event.finish(cursor, countingOutput.count, 0);
     }
 
-    private static class IntegerExtractor implements Extractor<Integer> {
+    /**
+     * Same as {@link #measureDump(Cursor, OutputStream, Consumer)}, counting characters instead of bytes
+     */
+    private void measureDump(Cursor cursor, Writer output, Consumer<Writer> dump) {
+        final TracedOperation event = Events.dump();
 
-        @Override
-        public Integer transform(Cursor cursor) throws Ex {
-            return Integer.parseInt(cursor.text());
+        if (metrics == Metrics.NONE && !event.isEnabled()) {
+            dump.accept(output);
+            return;
         }
 
+        final CountingWriter countingOutput = new CountingWriter(output);
+        final long start = System.nanoTime();
+
+        dump.accept(countingOutput);
+        event.end();
+
+        metrics.dumped(countingOutput.count, System.nanoTime() - start);
+        event.finish(cursor, countingOutput.count, 0);
     }
 
+    private MissingNode counted(MissingNode missingNode) {
+        metrics.missingNode();
+        return missingNode;
+    }
 
-    private static class LongExtractor implements Extractor<Long> {
+    private Ambiguous counted(Ambiguous ambiguous) {
+        metrics.ambiguous();
+        return ambiguous;
+    }
+
+    private DocumentBuilder borrowDocBuilder(ReadContext context) throws Exception {
+        final DocumentBuilder docBuilder = docBuilders.borrow();
+
+        // Both are cleared when the builder is reset
+        docBuilder.setErrorHandler(FailingErrorHandler.INSTANCE);
+        docBuilder.setEntityResolver(context != null ? context.entityResolver : null);
+
+        return docBuilder;
+    }
+
+    private void releaseDocBuilder(DocumentBuilder docBuilder) {
+        if (docBuilder != null) {
+            try {
+                docBuilder.reset();
+                docBuilders.release(docBuilder);
+            } catch (UnsupportedOperationException ignored) {
+                // Builders that can't be reset are not safe to reuse
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
 
         @Override
-        public Long transform(Cursor cursor) throws Ex {
-            return Long.parseLong(cursor.text());
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+
+            return b;
         }
 
-    }
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
 
-    private static class DoubleExtractor implements Extractor<Double> {
+            return read;
+        }
 
         @Override
-        public Double transform(Cursor cursor) throws Ex {
-            return Double.parseDouble(cursor.text());
+        public long skip(long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
         }
 
     }
 
-    private static class FloatExtractor implements Extractor<Float> {
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
 
         @Override
-        public Float transform(Cursor cursor) throws Ex {
-            return Float.parseFloat(cursor.text());
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
         }
 
     }
 
+    private static class CountingWriter extends FilterWriter {
 
-    /**
-     * This is the main concept in this API. It's basically a convenient wrapper around
-     * a node is a xml document. The cursor can be used to navigate, extract and insert data.
-     */
-    public interface Cursor {
+        private long count = 0;
 
-        Cursor to(String firstName, String... remainingNames) throws Ex;
+        CountingWriter(Writer out) {
+            super(out);
+        }
 
-        Cursor toOptional(String firstNeedle, String... remainingNeedles) throws Ex;
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count++;
+        }
 
-        Cursor to(int position, String tagName) throws MissingNode;
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            count += len;
+        }
 
-        Cursor append(String nodeName) throws Ex;
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            count += len;
+        }
 
-        /**
-         * Insert a new node after the first predicate match.
-         * The node will be inserted at the end if the predicate never matches.
-         */
-        Cursor appendAfter(String nodeName, Predicate<Cursor> predicate) throws Ex;
+    }
 
-        void setAttr(String name, String value) throws Ex;
+    private static class FailingErrorHandler implements ErrorHandler {
 
-        int count(String tagName);
+        static final FailingErrorHandler INSTANCE = new FailingErrorHandler();
 
-        <R> R extract(Extractor<R> extractor) throws Ex;
+        @Override
+        public void warning(SAXParseException exception) {
+            throw new Ex("Parser warning: " + exception.getMessage(), exception);
+        }
 
-        <R> R extract(Class<R> type) throws Ex;
+        @Override
+        public void error(SAXParseException exception) {
+            throw new Ex("Parser error: " + exception.getMessage(), exception);
+        }
+
+        @Override
+        public void fatalError(SAXParseException exception) {
+            throw new Ex("Parser fatal error: " + exception.getMessage(), exception);
+        }
+
+    }
+
+    /**
+     * Stream records from a document without loading the whole document into memory.
+     * Only a single record is kept in memory at a time and it's wrapped by a plain
+     * cursor so extractors and iterators work as usual.
+     * <p>
+     * Example: {@code nx.stream(input, "countries", "country").iterate(country -> ...)}
+     * <p>
+     * The document is read using a pull parser, so {@link ConfigFeature#VALIDATING}
+     * has no effect on streamed documents.
+     *
+     * @param stream         will be closed once all records have been read
+     * @param firstName      name of the document element
+     * @param remainingNames names leading from the document element to the records
+     */
+    public Records stream(InputStream stream, String firstName, String... remainingNames) {
+        final String[] path = new String[remainingNames.length + 1];
+        path[0] = firstName;
+        System.arraycopy(remainingNames, 0, path, 1, remainingNames.length);
+
+        return new StreamedRecords(stream, path);
+    }
+
+
+    public interface Extractor<R> {
+
+        R transform(Cursor cursor) throws Ex;
+
+    }
+
+    /**
+     * Binds a parameter to an attribute of the node, see {@link NX#binding(Class)}
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.PARAMETER)
+    public @interface Attr {
+
+        /**
+         * @return Name of the attribute, defaults to the name of the parameter
+         */
+        String value() default "";
+
+        /**
+         * @return False to pass null if the attribute is missing
+         */
+        boolean required() default true;
+
+    }
+
+    /**
+     * Binds a parameter to a child node, see {@link NX#binding(Class)}
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.PARAMETER)
+    public @interface Child {
+
+        /**
+         * @return Names leading to the child node, defaults to the name of the parameter
+         */
+        String[] value() default {};
+
+        /**
+         * @return False to pass null if the child node is missing
+         */
+        boolean required() default true;
+
+    }
+
+    /**
+     * Binds a parameter to the node itself, typically extracted by another registered extractor.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.PARAMETER)
+    public @interface Self {
+    }
+
+    /**
+     * Picks the constructor used by {@link NX#binding(Class)} when there are more then one.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.CONSTRUCTOR)
+    public @interface Creator {
+    }
+
+    /**
+     * Marks classes the nmxmlp-processor annotation processor generates an extractor and an
+     * inserter for, at compile time. Parameters are bound like {@link NX#binding(Class)}.
+     */
+    @Retention(RetentionPolicy.CLASS)
+    @Target(ElementType.TYPE)
+    public @interface Mapping {
+    }
+
+    /**
+     * See {@link NX#registerExtractors(Consumer)}
+     */
+    public interface ExtractorRegistration {
+
+        <R> ExtractorRegistration register(Class<R> type, Extractor<R> extractor);
+
+    }
+
+    public interface Iterator {
+
+        void on(Cursor cursor) throws Ex;
+
+    }
+
+    /**
+     * Outcome of one document in a batch, see {@link NX#fromAll(Iterable, Extractor, Executor)}
+     */
+    public static final class BatchResult<R> {
+
+        private final R value;
+        private final RuntimeException failure;
+
+        BatchResult(R value, RuntimeException failure) {
+            this.value = value;
+            this.failure = failure;
+        }
+
+        public boolean isSuccess() {
+            return failure == null;
+        }
+
+        /**
+         * @return The extracted value, rethrowing the failure if the document failed
+         */
+        public R get() throws RuntimeException {
+            if (failure != null) {
+                throw failure;
+            }
+
+            return value;
+        }
+
+        /**
+         * @return Exception thrown while parsing or extracting the document, null on success
+         */
+        public RuntimeException failure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return isSuccess() ? "Success(" + value + ")" : "Failure(" + failure + ")";
+        }
+
+    }
+
+    public interface Inserter<R> {
+
+        void insert(Cursor cursor, R input) throws Ex;
+
+    }
+
+    /**
+     * Records read from a document stream, see {@link NX#stream(InputStream, String, String...)}.
+     * The records can only be read once.
+     */
+    public interface Records extends AutoCloseable {
+
+        /**
+         * The cursor passed to the iterator is only backed by the current record.
+         * Records are read lazily, one at a time, as the iteration progresses.
+         */
+        void iterate(Iterator iterator) throws Ex;
+
+        <R> void extract(Extractor<R> extractor, Consumer<R> consumer) throws Ex;
+
+        <R> void extract(Class<R> type, Consumer<R> consumer) throws Ex;
+
+        @Override
+        void close();
+
+    }
+
+    private static class IntegerExtractor implements Extractor<Integer> {
+
+        @Override
+        public Integer transform(Cursor cursor) throws Ex {
+            return Integer.parseInt(cursor.text());
+        }
+
+    }
+
+
+    private static class LongExtractor implements Extractor<Long> {
+
+        @Override
+        public Long transform(Cursor cursor) throws Ex {
+            return Long.parseLong(cursor.text());
+        }
+
+    }
+
+    private static class DoubleExtractor implements Extractor<Double> {
+
+        @Override
+        public Double transform(Cursor cursor) throws Ex {
+            return Double.parseDouble(cursor.text());
+        }
+
+    }
+
+    private static class FloatExtractor implements Extractor<Float> {
+
+        @Override
+        public Float transform(Cursor cursor) throws Ex {
+            return Float.parseFloat(cursor.text());
+        }
+
+    }
+
+
+    /**
+     * This is the main concept in this API. It's basically a convenient wrapper around
+     * a node is a xml document. The cursor can be used to navigate, extract and insert data.
+     */
+    public interface Cursor {
+
+        Cursor to(String firstName, String... remainingNames) throws Ex;
+
+        Cursor toOptional(String firstNeedle, String... remainingNeedles) throws Ex;
+
+        Cursor to(int position, String tagName) throws MissingNode;
+
+        /**
+         * Same as navigating one step at a time, but the names have been case folded up front.
+         */
+        default Cursor to(Path path) throws Ex {
+            Cursor cursor = this;
+
+            for (int step = 0; step < path.length(); step++) {
+                cursor = path.position(step) == Path.SINGLE
+                        ? cursor.to(path.name(step))
+                        : cursor.to(path.position(step), path.name(step));
+            }
+
+            return cursor;
+        }
+
+        /**
+         * @return A cursor pointing to nothing if any of the steps are missing
+         */
+        default Cursor toOptional(Path path) throws Ex {
+            Cursor cursor = this;
+
+            for (int step = 0; step < path.length(); step++) {
+                final String name = path.name(step);
+                final int position = path.position(step);
+
+                if (position == Path.SINGLE) {
+                    cursor = cursor.toOptional(name);
+                } else if (position < cursor.count(name)) {
+                    cursor = cursor.to(position, name);
+                } else {
+                    return DefaultCursors.PLAIN.new EmptyCursor(cursor);
+                }
+            }
+
+            return cursor;
+        }
+
+        Cursor append(String nodeName) throws Ex;
+
+        /**
+         * Insert a new node after the first predicate match.
+         * The node will be inserted at the end if the predicate never matches.
+         */
+        Cursor appendAfter(String nodeName, Predicate<Cursor> predicate) throws Ex;
+
+        void setAttr(String name, String value) throws Ex;
+
+        int count(String tagName);
+
+        <R> R extract(Extractor<R> extractor) throws Ex;
+
+        <R> R extract(Class<R> type) throws Ex;
+
+        <R> List<R> extractCollection(String needle, Extractor<R> extractor) throws Ex;
+
+        <R> List<R> extractCollection(String needle, Class<R> type) throws Ex;
+
+        /**
+         * Same as {@link #extractCollection(String, Extractor)}, but the extractor is called
+         * by the threads of the pool. The results are kept in document order.
+         * <p>
+         * W3C DOM isn't safe to read from several threads, so the document is frozen first
+         * unless it's already read only, see {@link #freeze()}. Freeze it yourself if you're
+         * going to extract more than a single collection.
+         * <p>
+         * Cursors that aren't known to be safe for several threads extract on the calling thread.
+         */
+        default <R> List<R> extractCollectionParallel(String needle, Extractor<R> extractor, ForkJoinPool pool) throws Ex {
+            return extractCollection(needle, extractor);
+        }
+
+        /**
+         * @return Cursors for the matching child nodes in document order. The stream is only split
+         * for parallel processing if the document is read only, see {@link #freeze()}.
+         */
+        default Stream<Cursor> stream(String needle) {
+            return extractCollection(needle, cursor -> cursor).stream();
+        }
+
+        void iterateCollection(String needle, Iterator extractor) throws Ex;
+
+        /**
+         * Same as {@link #iterateCollection(String, Iterator)}, but the same cursor instance is
+         * repositioned and passed to the iterator for every matching node. This avoids creating
+         * garbage when iterating over huge collections.
+         * <p>
+         * The cursor, and any cursor navigated to from it, is only valid until the iterator returns.
+         * Use {@link #copy()} if you need to hold on to it.
+         */
+        default void iterateCollectionReusingCursor(String needle, Iterator iterator) throws Ex {
+            iterateCollection(needle, iterator);
+        }
+
+        /**
+         * @return A new cursor pointing to the same node, not affected if this cursor is reused.
+         * Cursors that are never reused may return themselves.
+         */
+        default Cursor copy() {
+            return this;
+        }
+
+        /**
+         * Copies the whole document into an immutable tree, like the one used with
+         * {@link ConfigFeature#COMPACT_TREE}. Changes made to this document later on
+         * won't affect the copy.
+         * <p>
+         * The returned cursor, and any cursor navigated to from it, is safe for any number
+         * of threads to use at once. That's not the case for W3C DOM, even when only reading.
+         *
+         * @return A read only cursor pointing to the same node in the copy. Cursors that
+         * don't know their document copy this node only, by way of {@link #dumpXml(Charset, Feature...)}.
+         */
+        default Cursor freeze() throws Ex {
+            return DefaultCursors.COMPACT.from(dumpXml(StandardCharsets.UTF_8));
+        }
+
+        void remove() throws Ex;
+
+        void removeChildren(Predicate<Cursor> predicate) throws Ex;
+
+        String text();
+
+        String describePath();
+
+        String name();
+
+        void removeAttr(String name) throws Ex;
+
+        Cursor text(String updatedText);
+
+        String dumpXml(Charset charset, Feature... features) throws Ex;
+
+        void dumpXml(OutputStream output, Charset charset, Feature... features) throws Ex;
+
+        /**
+         * Same as {@link #dumpXml(OutputStream, Charset, Feature...)}, but characters are handed
+         * to the writer without being encoded. The charset is written in the xml declaration and
+         * decides which characters are written as character references, so the writer should
+         * encode with the same charset. The writer is flushed, not closed.
+         */
+        default void dumpXml(Writer output, Charset charset, Feature... features) throws Ex {
+            try {
+                output.write(dumpXml(charset, features));
+                output.flush();
+            } catch (IOException ex) {
+                throw new Ex(this, "Technical difficulties", ex);
+            }
+        }
+
+        /**
+         * Dumps the node on the xml executor of the NX instance the cursor was created by,
+         * see {@link NX#registerXmlExecutor(XmlExecutor)}. A W3C DOM document must not be
+         * modified until the future has completed. The output stream is not closed.
+         * <p>
+         * Cursors not created by an NX instance dump on the calling thread.
+         */
+        default CompletableFuture<Void> dumpXmlAsync(OutputStream output, Charset charset, Feature... features) {
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+
+            try {
+                dumpXml(output, charset, features);
+                future.complete(null);
+            } catch (RuntimeException ex) {
+                future.completeExceptionally(ex);
+            }
+
+            return future;
+        }
+
+        Attribute attr(String name) throws Ambiguous, MissingAttribute;
+
+        Attribute optionalAttr(String name) throws Ambiguous;
+
+        /**
+         * Parses the text of the node in place, without going through {@link #text()} or
+         * boxing like {@code extract(Integer.class)}. Surrounding whitespace is ignored.
+         *
+         * @throws InvalidNumber if the text isn't an int
+         */
+        default int extractInt() throws Ex {
+            return (int) parseLong(this, text(), Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+        }
+
+        default long extractLong() throws Ex {
+            return parseLong(this, text(), Long.MIN_VALUE, Long.MAX_VALUE, "long");
+        }
+
+        default double extractDouble() throws Ex {
+            return parseDouble(this, text(), "double");
+        }
+
+        /**
+         * Same as {@link #extractInt()} for the value of an attribute
+         */
+        default int attrAsInt(String name) throws Ex {
+            return (int) parseLong(this, attr(name).text(), Integer.MIN_VALUE, Integer.MAX_VALUE, "int in attribute '" + name + "'");
+        }
+
+        default long attrAsLong(String name) throws Ex {
+            return parseLong(this, attr(name).text(), Long.MIN_VALUE, Long.MAX_VALUE, "long in attribute '" + name + "'");
+        }
+
+        default double attrAsDouble(String name) throws Ex {
+            return parseDouble(this, attr(name).text(), "double in attribute '" + name + "'");
+        }
+
+        /**
+         * @return {@link #extractInt()} of every matching child node in document order
+         */
+        default int[] extractCollectionAsIntArray(String needle) throws Ex {
+            return extractCollection(needle, Cursor::extractInt).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        default long[] extractCollectionAsLongArray(String needle) throws Ex {
+            return extractCollection(needle, Cursor::extractLong).stream().mapToLong(Long::longValue).toArray();
+        }
+
+        default double[] extractCollectionAsDoubleArray(String needle) throws Ex {
+            return extractCollection(needle, Cursor::extractDouble).stream().mapToDouble(Double::doubleValue).toArray();
+        }
+
+        /**
+         * This method will expect the xml to contain a single node that will be used
+         * as a prototype when inserting data from the collection.
+         * <p>
+         * I've found this to be useful when building soap requests with repeatable
+         * elements.
+         *
+         * @param prototypeName name of the node to be used as a prototype.
+         * @param input         collection to be inserted
+         * @param inserter      will be called once for every element in the collection
+         */
+        <R> void insertCollection(String prototypeName, Iterable<R> input, Inserter<R> inserter) throws Ex;
+
+        /**
+         * Update a single node
+         *
+         * @param payload  to be inserted into a node
+         * @param inserter that'll update the node based on the payload content
+         */
+        <R> void update(R payload, Inserter<R> inserter) throws Ex;
+
+        /**
+         * @param attributeName Name of the attribute
+         * @return True if the node has an attribute with the given name
+         */
+        boolean hasAttr(String attributeName);
+
+        boolean hasChildNode(String name);
+
+        /**
+         * @param predicate All child nodes will be passed to this predicate
+         * @return A cursor pointing to the only node matching the predicate
+         * @throws Ex If the predicate matches zero or more then one node
+         */
+        NX.Cursor require(Predicate<Cursor> predicate) throws Ex;
+
+    }
+
+    public interface Attribute {
+
+        /**
+         * @return The text value of the attribute
+         */
+        String text();
+
+        /**
+         * Map the text value of the attribute by applying the given function.
+         * <p>
+         * Warning: At some point I'll make this library Java 8 only and replace
+         * the Guava function with the Java 8 interface.
+         */
+        <R> R text(Function<String, R> func);
+
+        /**
+         * @param text the new attribute text
+         */
+        void text(String text);
+
+    }
+
+    private static class RealAttribute implements Attribute {
+
+        private final Node node;
+
+        public RealAttribute(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public <R> R text(Function<String, R> func) {
+            return func.apply(text());
+        }
+
+        @Override
+        public String text() {
+            return node.getTextContent();
+        }
+
+        @Override
+        public void text(String text) {
+            node.setTextContent(text);
+        }
+
+    }
+
+    private static class CompactAttribute implements Attribute {
+
+        private final String value;
+
+        CompactAttribute(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public <R> R text(Function<String, R> func) {
+            return func.apply(value);
+        }
+
+        @Override
+        public String text() {
+            return value;
+        }
+
+        @Override
+        public void text(String text) {
+            throw new UnsupportedOperationException("Can't update attribute of a read only cursor");
+        }
+
+    }
+
+    private static class NullAttribute implements Attribute {
+
+        @Override
+        public <R> R text(Function<String, R> func) {
+            return null;
+        }
+
+        @Override
+        public String text() {
+            return null;
+        }
+
+        @Override
+        public void text(String text) {
+        }
+
+    }
+
+
+    private class StreamedRecords implements Records {
+
+        private final InputStream stream;
+        private final String[] path;
+        private boolean consumed = false;
+
+        StreamedRecords(InputStream stream, String[] path) {
+            this.stream = stream;
+            this.path = path;
+        }
+
+        @Override
+        public <R> void extract(Extractor<R> extractor, Consumer<R> consumer) throws Ex {
+            iterate(cursor -> consumer.accept(cursor.extract(extractor)));
+        }
+
+        @Override
+        public <R> void extract(Class<R> type, Consumer<R> consumer) throws Ex {
+            iterate(cursor -> consumer.accept(cursor.extract(type)));
+        }
+
+        @Override
+        public void iterate(Iterator iterator) throws Ex {
+            if (consumed) {
+                throw new IllegalStateException("Records have already been read");
+            }
+
+            consumed = true;
+            XMLStreamReader reader = null;
+            DocumentBuilder docBuilder = null;
+
+            try {
+                docBuilder = borrowDocBuilder(null);
+                final List<String[]> namespaces = new ArrayList<>();
+                final int[] namespaceMarks = new int[path.length];
+                reader = inputFactory.createXMLStreamReader(stream);
+
+                int matched = 0;
+                int count = 0;
+
+                while (reader.hasNext()) {
+                    final int event = reader.next();
+
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        // Elements not on the path are skipped, so we're always at depth 'matched' here
+                        if (StaxDom.isNamed(reader, path[matched])) {
+                            if (matched == path.length - 1) {
+                                final Document document = docBuilder.newDocument();
+                                document.appendChild(StaxDom.readElement(reader, document, namespaces, ignoreWhitespace));
+
+                                iterator.on(new NodeCursor(document, new DomNames(childIndex), null, document.getDocumentElement(), count++));
+                            } else {
+                                namespaceMarks[matched] = namespaces.size();
+                                StaxDom.collectNamespaces(reader, namespaces);
+
+                                matched++;
+                            }
+                        } else {
+                            StaxDom.skipElement(reader);
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        matched--;
+                        namespaces.subList(namespaceMarks[matched], namespaces.size()).clear();
+                    }
+                }
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new Ex("Failed to stream xml records", ex);
+            } finally {
+                releaseDocBuilder(docBuilder);
+                closeQuietly(reader);
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        private void closeQuietly(XMLStreamReader reader) {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+
+    }
+
+
+    /**
+     * @param cursors creates a cursor for the matching child node at the given position
+     */
+    private static Stream<Cursor> stream(int count, IntFunction<Cursor> cursors, boolean splittable) {
+        return StreamSupport.stream(new ChildSpliterator(cursors, 0, count, splittable), false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> List<R> extractParallel(int count, IntFunction<Cursor> cursors, Extractor<R> extractor, ForkJoinPool pool) {
+        final Object[] results = new Object[count];
+        final int threshold = Math.max(1, count / (pool.getParallelism() * 4));
+
+        pool.invoke(new ExtractAction(cursors, extractor, results, 0, count, threshold));
+        return new ArrayList<>((List<R>) Arrays.asList(results));
+    }
+
+    /**
+     * Matching child nodes by position, split in halves. Positions are resolved before
+     * iterating so it's cheap to split.
+     */
+    private static class ChildSpliterator implements Spliterator<Cursor> {
+
+        private final IntFunction<Cursor> cursors;
+        private final boolean splittable;
+        private int position;
+        private final int end;
+
+        ChildSpliterator(IntFunction<Cursor> cursors, int position, int end, boolean splittable) {
+            this.cursors = cursors;
+            this.position = position;
+            this.end = end;
+            this.splittable = splittable;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Cursor> action) {
+            if (position < end) {
+                action.accept(cursors.apply(position++));
+                return true;
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Cursor> action) {
+            while (position < end) {
+                action.accept(cursors.apply(position++));
+            }
+        }
+
+        @Override
+        public Spliterator<Cursor> trySplit() {
+            final int middle = (position + end) >>> 1;
+
+            if (!splittable || middle <= position) {
+                return null;
+            }
+
+            final Spliterator<Cursor> prefix = new ChildSpliterator(cursors, position, middle, true);
+            position = middle;
+
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - position;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+
+    }
+
+    private XmlExecutor xmlExecutor() {
+        final XmlExecutor registered = xmlExecutor;
+        return registered != null ? registered : DefaultXmlExecutor.INSTANCE;
+    }
+
+    /**
+     * Used by the default methods of {@link Cursor} for cursors not created by an NX instance
+     */
+    private static final class DefaultCursors {
+
+        static final NX PLAIN = new NX();
+
+        static final NX COMPACT = new NX(EnumSet.of(ConfigFeature.COMPACT_TREE));
+
+    }
+
+    private static long parseLong(Cursor cursor, String text, long min, long max, String type) throws Ex {
+        if (text == null) {
+            throw new Ex(cursor, "Can't extract a number from a missing node");
+        }
+
+        try {
+            return Numbers.parseLong(text, 0, text.length(), min, max);
+        } catch (NumberFormatException ex) {
+            throw new InvalidNumber(cursor, type, ex);
+        }
+    }
+
+    private static double parseDouble(Cursor cursor, String text, String type) throws Ex {
+        if (text == null) {
+            throw new Ex(cursor, "Can't extract a number from a missing node");
+        }
+
+        try {
+            return Numbers.parseDouble(text, 0, text.length());
+        } catch (NumberFormatException ex) {
+            throw new InvalidNumber(cursor, type, ex);
+        }
+    }
+
+    /**
+     * Created the first time it's used
+     */
+    private static final class DefaultXmlExecutor {
+
+        static final XmlExecutor INSTANCE = XmlExecutor.defaults();
+
+    }
+
+    /**
+     * @param input closed if the task fails without running, may be null
+     */
+    private static <T> CompletableFuture<T> async(Executor executor, InputStream input, Supplier<T> work) {
+        final AsyncTask<T> task = new AsyncTask<>(input, work);
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            task.reject(ex);
+        }
+
+        return task.future;
+    }
+
+    /**
+     * Completes the future with the result of the work, unless it was rejected or cancelled while
+     * queued. The input is closed by the work, or by the task if the work never runs.
+     */
+    private static final class AsyncTask<T> implements Runnable {
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final InputStream input;
+        private final Supplier<T> work;
+
+        AsyncTask(InputStream input, Supplier<T> work) {
+            this.input = input;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                closeInput();
+                return;
+            }
+
+            try {
+                future.complete(work.get());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        }
+
+        void reject(RejectedExecutionException cause) {
+            future.completeExceptionally(new Overloaded(cause));
+            closeInput();
+        }
+
+        private void closeInput() {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Shared by all workers of a batch, each taking the next unparsed document until there are none left.
+     * Workers starting after that have nothing left to do.
+     */
+    private class BatchWorker<R> implements Runnable {
+
+        private final List<InputStream> documents;
+        private final ReadContext context;
+        private final Extractor<R> extractor;
+        private final BatchResult<R>[] results;
+        private final AtomicInteger next = new AtomicInteger();
+
+        // Counted down once for each document, whether it was extracted, failed or skipped
+        private final CountDownLatch done;
+
+        // Errors are not captured per document, they fail the whole batch
+        private volatile Error failure;
+
+        @SuppressWarnings("unchecked")
+        BatchWorker(List<InputStream> documents, ReadContext context, Extractor<R> extractor) {
+            this.documents = documents;
+            this.context = context;
+            this.extractor = extractor;
+            this.results = (BatchResult<R>[]) new BatchResult<?>[documents.size()];
+            this.done = new CountDownLatch(documents.size());
+        }
+
+        @Override
+        public void run() {
+            int index;
+            while ((index = next.getAndIncrement()) < results.length) {
+                try {
+                    if (failure == null) {
+                        results[index] = new BatchResult<>(extract(documents.get(index), context, extractor), null);
+                    } else {
+                        documents.get(index).close();
+                    }
+                } catch (RuntimeException ex) {
+                    results[index] = new BatchResult<>(null, ex);
+                } catch (IOException ignored) {
+                    // Skipped after the batch failed
+                } catch (Error error) {
+                    failure = error;
+                } finally {
+                    done.countDown();
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Extracts a range of matching child nodes, forking until the range is below the threshold.
+     */
+    private static class ExtractAction extends RecursiveAction {
+
+        private final IntFunction<Cursor> cursors;
+        private final Extractor<?> extractor;
+        private final Object[] results;
+        private final int start;
+        private final int end;
+        private final int threshold;
+
+        ExtractAction(IntFunction<Cursor> cursors, Extractor<?> extractor, Object[] results, int start, int end, int threshold) {
+            this.cursors = cursors;
+            this.extractor = extractor;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= threshold) {
+                for (int i = start; i < end; i++) {
+                    results[i] = cursors.apply(i).extract(extractor);
+                }
+            } else {
+                final int middle = (start + end) >>> 1;
+
+                invokeAll(new ExtractAction(cursors, extractor, results, start, middle, threshold),
+                        new ExtractAction(cursors, extractor, results, middle, end, threshold));
+            }
+        }
+
+    }
+
+    private <R> Extractor<R> extractorFor(Cursor cursor, Class<R> type) throws NoExtractor {
+        final Extractor<R> extractor = extractors.get(type);
+
+        if (extractor == null) {
+            throw new NoExtractor(cursor, type);
+        } else {
+            return extractor;
+        }
+    }
+
+
+    /**
+     * Implemented by the cursors of this class so exceptions can look up the settings
+     * of the NX instance they were created by.
+     */
+    private interface Owned {
+
+        NX owner();
+
+        /**
+         * Lightweight exceptions keep this instead of the cursor, which may be moved
+         * or handed to another thread before the message is read.
+         */
+        PathSnapshot snapshotPath();
+
+    }
+
+    /**
+     * Names and indexes from the document element down to a cursor, formatted
+     * the same way as {@link Cursor#describePath()}.
+     */
+    private static final class PathSnapshot {
+
+        private final String[] names;
+        private final int[] indexes;
+
+        PathSnapshot(String[] names, int[] indexes) {
+            this.names = names;
+            this.indexes = indexes;
+        }
+
+        PathSnapshot child(String name) {
+            final String[] childNames = Arrays.copyOf(names, names.length + 1);
+            childNames[names.length] = name;
+
+            return new PathSnapshot(childNames, Arrays.copyOf(indexes, indexes.length + 1));
+        }
+
+        String describe() {
+            StringBuilder builder = new StringBuilder();
+
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0) {
+                    builder.append(" >> ");
+                }
+
+                builder.append(names[i]);
+
+                if (indexes[i] > 0) {
+                    builder.append("[")
+                        .append(indexes[i])
+                        .append("]");
+                }
+            }
+
+            return builder.toString();
+        }
+
+    }
+
+    private class EmptyCursor implements Cursor, Owned {
+
+        private final Cursor lastKnownCursor;
+
+        EmptyCursor(Cursor lastKnownCursor) {
+            this.lastKnownCursor = lastKnownCursor;
+        }
+
+        @Override
+        public NX owner() {
+            return NX.this;
+        }
+
+        @Override
+        public Cursor to(String firstName, String... remainingNames) throws Ex {
+            return this;
+        }
+
+        @Override
+        public Cursor toOptional(String firstNeedle, String... reamainingNeedles) throws Ex {
+            return this;
+        }
+
+        @Override
+        public Cursor to(int position, String tagName) throws MissingNode {
+            return this;
+        }
+
+        @Override
+        public Cursor to(Path path) throws Ex {
+            return this;
+        }
+
+        @Override
+        public Cursor toOptional(Path path) throws Ex {
+            return this;
+        }
+
+        @Override
+        public int count(String tagName) {
+            return 0;
+        }
+
+        @Override
+        public void iterateCollection(String needle, Iterator extractor) throws Ex { /* ...*/ }
+
+        @Override
+        public void iterateCollectionReusingCursor(String needle, Iterator iterator) throws Ex { /* ...*/ }
+
+        @Override
+        public Cursor copy() {
+            return this;
+        }
+
+        @Override
+        public Cursor freeze() {
+            return new EmptyCursor(lastKnownCursor.freeze());
+        }
+
+        @Override
+        public <R> R extract(Extractor<R> extractor) throws Ex {
+            return null;
+        }
+
+        @Override
+        public <R> R extract(Class<R> type) throws Ex {
+            return null;
+        }
+
+        @Override
+        public <R> List<R> extractCollection(String needle, Class<R> type) throws Ex {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public <R> List<R> extractCollection(String needle, Extractor<R> extractor) throws Ex {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public <R> List<R> extractCollectionParallel(String needle, Extractor<R> extractor, ForkJoinPool pool) throws Ex {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public Stream<Cursor> stream(String needle) {
+            return Stream.empty();
+        }
+
+        @Override
+        public String text() {
+            return null;
+        }
+
+        @Override
+        public String name() {
+            return null;
+        }
+
+        @Override
+        public Cursor text(String updatedText) {
+            return this;
+        }
+
+        @Override
+        public String describePath() {
+            return lastKnownCursor.describePath() + " >> ???";
+        }
+
+        @Override
+        public PathSnapshot snapshotPath() {
+            final PathSnapshot known = lastKnownCursor instanceof Owned
+                    ? ((Owned) lastKnownCursor).snapshotPath()
+                    : new PathSnapshot(new String[] { lastKnownCursor.describePath() }, new int[1]);
+
+            return known.child("???");
+        }
+
+        @Override
+        public void removeAttr(String name) throws Ex {
+        }
+
+
+        @Override
+        public void setAttr(String name, String value) throws Ex {
+            throw new UnsupportedOperationException("Can't insert attribute on empty cursor");
+        }
+
+        @Override
+        public String dumpXml(Charset charset, Feature... features) throws Ex {
+            throw new UnsupportedOperationException("Can't dump empty cursor");
+        }
+
+        @Override
+        public void dumpXml(OutputStream output, Charset charset, Feature... features) throws Ex {
+            throw new UnsupportedOperationException("Can't dump empty cursor");
+        }
+
+        @Override
+        public void dumpXml(Writer output, Charset charset, Feature... features) throws Ex {
+            throw new UnsupportedOperationException("Can't dump empty cursor");
+        }
+
+        @Override
+        public CompletableFuture<Void> dumpXmlAsync(OutputStream output, Charset charset, Feature... features) {
+            return async(xmlExecutor(), null, () -> {
+                dumpXml(output, charset, features);
+                return null;
+            });
+        }
+
+        @Override
+        public Cursor append(String nodeName) throws Ex {
+            throw new UnsupportedOperationException("Can't insert child node under empty cursor");
+        }
+
+        @Override
+        public Cursor appendAfter(String nodeName, Predicate<Cursor> predicate) throws Ex {
+            throw new UnsupportedOperationException("Can't insert child node under empty cursor");
+        }
+
+        @Override
+        public Attribute attr(String name) {
+            return new NullAttribute();
+        }
+
+        @Override
+        public Attribute optionalAttr(String name) {
+            return new NullAttribute();
+        }
+
+        @Override
+        public int extractInt() throws Ex {
+            throw new Ex(this, "Can't extract a number from a missing node");
+        }
+
+        @Override
+        public long extractLong() throws Ex {
+            throw new Ex(this, "Can't extract a number from a missing node");
+        }
+
+        @Override
+        public double extractDouble() throws Ex {
+            throw new Ex(this, "Can't extract a number from a missing node");
+        }
+
+        @Override
+        public int attrAsInt(String name) throws Ex {
+            throw new Ex(this, "Can't extract a number from a missing node");
+        }
+
+        @Override
+        public long attrAsLong(String name) throws Ex {
+            throw new Ex(this, "Can't extract a number from a missing node");
+        }
+
+        @Override
+        public double attrAsDouble(String name) throws Ex {
+            throw new Ex(this, "Can't extract a number from a missing node");
+        }
+
+        @Override
+        public int[] extractCollectionAsIntArray(String needle) throws Ex {
+            return new int[0];
+        }
+
+        @Override
+        public long[] extractCollectionAsLongArray(String needle) throws Ex {
+            return new long[0];
+        }
+
+        @Override
+        public double[] extractCollectionAsDoubleArray(String needle) throws Ex {
+            return new double[0];
+        }
+
+        @Override
+        public <R> void insertCollection(String prototype, Iterable<R> people, Inserter<R> inserter) throws Ex {
+        }
+
+        @Override
+        public <R> void update(R payload, Inserter<R> inserter) {
+        }
+
+        @Override
+        public void remove() throws Ex {
+        }
+
+        @Override
+        public void removeChildren(Predicate<Cursor> predicate) throws Ex { }
+
+        @Override
+        public boolean hasAttr(String attributeName) {
+            return false;
+        }
+
+        @Override
+        public boolean hasChildNode(String name) {
+            return false;
+        }
+
+        @Override
+        public Cursor require(Predicate<Cursor> predicate) throws Ex {
+            throw new Ex(this, "Empty cursor, no child nodes");
+        }
+
+    }
+
+
+    private class NodeCursor implements Cursor, Owned {
+
+        // Only changed when the cursor is reused, see iterateCollectionReusingCursor
+        private Node node;
+        private int index;
+
+        private final NodeCursor parent;
+        private final Document document;
+
+        private final DomNames names;
+
+        // Returned by every optional lookup missing from this cursor, see missing()
+        private EmptyCursor missing;
+
+        /**
+         * @param names  shared by all cursors in the same document
+         * @param parent cursor we navigated from, null for the document element.
+         *               Only used to describe the path when it's needed.
+         */
+        NodeCursor(Document document, DomNames names, NodeCursor parent, Node node, int index) {
+            if (node == null) {
+                throw new IllegalArgumentException("Node can't be null");
+            }
+            if (index < 0) {
+                throw new IllegalArgumentException("Index must be greater or equal to zero");
+            }
+
+            this.document = document;
+            this.names = names;
+            this.parent = parent;
+            this.index = index;
+            this.node = node;
+        }
+
+        @Override
+        public NX owner() {
+            return NX.this;
+        }
+
+        /**
+         * Empty cursors are immutable, so racing threads creating one each is harmless
+         */
+        private EmptyCursor missing() {
+            EmptyCursor result = missing;
+            if (result == null) {
+                missing = result = new EmptyCursor(this);
+            }
+
+            return result;
+        }
+
+        @Override
+        public Cursor to(String firstName, String... remainingNames) throws Ex {
+            Cursor cursor = to(firstName);
+            for (String nextName : remainingNames) {
+                cursor = cursor.to(nextName);
+            }
+
+            return cursor;
+        }
+
+        @Override
+        public void setAttr(String name, String value) throws Ex {
+            ((Element) node).setAttribute(name, value);
+            names.attributesModified();
+        }
+
+        @Override
+        public Cursor append(String tagName) throws Ex {
+            Element element = document.createElement(tagName);
+            Node newNode = node.appendChild(element);
+            modified();
+
+            return new NodeCursor(document, names, this, newNode, 0);
+        }
+
+        @Override
+        public Cursor appendAfter(String tagName, Predicate<Cursor> predicate) throws Ex {
+            NodeCursor match = findNode(predicate);
+
+            if (match == null) {
+                return append(tagName);
+            } else {
+                Element element = document.createElement(tagName);
+                Node nextSibling = match.node.getNextSibling();
+                node.insertBefore(element, nextSibling);
+                modified();
+
+                return new NodeCursor(document, names, this, element, 0);
+            }
+        }
+
+        @Override
+        public Cursor toOptional(String firstNeedle, String... remainingNeedles) throws Ex {
+            final Optional<Node> found = findSingleNode(firstNeedle);
+            Cursor cursor = found.isPresent()
+                ? new NodeCursor(document, names, this, found.get(), 0)
+                : missing();
+
+            for (String remainingNeedle : remainingNeedles) {
+                cursor = cursor.toOptional(remainingNeedle);
+            }
+
+            return cursor;
+        }
+
+        @Override
+        public void removeAttr(String name) throws Ex {
+            node.getAttributes().removeNamedItem(name);
+            names.attributesModified();
+        }
+
+        private NodeCursor to(String tagName) throws Ex {
+            final Optional<Node> found = findSingleNode(tagName);
+
+            if (found.isPresent()) {
+                return new NodeCursor(document, names, this, found.get(), 0);
+            } else {
+                throw counted(new MissingNode(this, tagName, node.getChildNodes()));
+            }
+        }
+
+        @Override
+        public Cursor to(Path path) throws Ex {
+            NodeCursor cursor = this;
+            for (int step = 0; step < path.length(); step++) {
+                cursor = cursor.to(path, step, false);
+            }
+
+            return cursor;
+        }
+
+        @Override
+        public Cursor toOptional(Path path) throws Ex {
+            NodeCursor cursor = this;
+            for (int step = 0; step < path.length(); step++) {
+                final NodeCursor next = cursor.to(path, step, true);
+
+                if (next == null) {
+                    return cursor.missing();
+                }
+
+                cursor = next;
+            }
+
+            return cursor;
+        }
+
+        /**
+         * @return Cursor for a single step or null if the node is missing and optional
+         */
+        private NodeCursor to(Path path, int step, boolean optional) throws Ex {
+            final String tagName = path.name(step);
+            final int position = path.position(step);
+
+            if (position == Path.SINGLE) {
+                final Optional<Node> found = findSingleNode(tagName);
+
+                if (found.isPresent()) {
+                    return new NodeCursor(document, names, this, found.get(), 0);
+                } else if (optional) {
+                    return null;
+                } else {
+                    throw counted(new MissingNode(this, tagName, node.getChildNodes()));
+                }
+            } else {
+                final Node found = findNode(tagName, position);
+
+                if (found != null) {
+                    return new NodeCursor(document, names, this, found, position);
+                } else if (optional) {
+                    return null;
+                } else {
+                    throw counted(new MissingNode(this, tagName, position, node.getChildNodes()));
+                }
+            }
+        }
+
+        private Optional<Node> findSingleNode(String tagName) throws Ambiguous {
+            if (names.childIndexes() != null) {
+                final ChildIndex<Node> childIndex = childIndex();
+                final int needle = names.lookup(tagName);
+
+                if (childIndex.count(needle) > 1) {
+                    throw counted(new Ambiguous(this, tagName));
+                } else {
+                    return Optional.ofNullable(childIndex.get(needle, 0));
+                }
+            }
+
+            final DomNames.Coded children = names.children(node);
+            final int needle = names.lookup(tagName);
+            Node found = null;
+
+            for (int i = 0; i < children.length(); i++) {
+                if (children.isNamed(i, needle)) {
+                    if (found != null) {
+                        throw counted(new Ambiguous(this, tagName));
+                    } else {
+                        found = children.node(i);
+                    }
+                }
+            }
+
+            return Optional.ofNullable(found);
+        }
+
+        private ChildIndex<Node> childIndex() {
+            final ChildIndex.Cache<Node> childIndexes = names.childIndexes();
+
+            return childIndexes.get(node, (parentNode, childIndex) -> {
+                for (Node childNode = parentNode.getFirstChild(); childNode != null; childNode = childNode.getNextSibling()) {
+                    final String nodeName = childNode.getNodeName();
+                    final String localName = childNode.getLocalName();
+
+                    final int nameCode = childIndexes.names().code(nodeName);
+                    childIndex.add(nameCode, childNode);
+
+                    if (localName != null && localName != nodeName) {
+                        final int localNameCode = childIndexes.names().code(localName);
+
+                        if (localNameCode != nameCode) {
+                            childIndex.add(localNameCode, childNode);
+                        }
+                    }
+                }
+            });
+        }
+
+        /**
+         * Call after adding or removing nodes so child indexes are rebuilt.
+         */
+        private void modified() {
+            names.childrenModified();
+        }
+
+        /**
+         * Only used while iterating, as the iterator may modify the children. Everything
+         * else matches name codes, see {@link DomNames}.
+         */
+        private boolean isNamed(Node childNode, String needle) {
+            String nodeName = childNode.getNodeName();
+            String localName = childNode.getLocalName();
+
+            return (nodeName != null && nodeName.equalsIgnoreCase(needle))
+                    || (localName != null && localName != nodeName && localName.equalsIgnoreCase(needle));
+        }
+
+        @Override
+        public Cursor to(int position, String tagName) throws MissingNode {
+            final Node found = findNode(tagName, position);
+
+            if (found != null) {
+                return new NodeCursor(document, names, this, found, position);
+            } else {
+                throw counted(new MissingNode(this, tagName, position, node.getChildNodes()));
+            }
+        }
+
+        /**
+         * @return Child at the given position among the children with the given name or null
+         */
+        private Node findNode(String tagName, int position) {
+            if (names.childIndexes() != null) {
+                return childIndex().get(names.lookup(tagName), position);
+            }
+
+            final DomNames.Coded children = names.children(node);
+            final int needle = names.lookup(tagName);
+            int count = 0;
+
+            for (int i = 0; i < children.length(); i++) {
+                if (children.isNamed(i, needle)) {
+                    count++;
+
+                    if (count == position + 1) {
+                        return children.node(i);
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public int count(String tagName) {
+            if (names.childIndexes() != null) {
+                return childIndex().count(names.lookup(tagName));
+            }
+
+            final DomNames.Coded children = names.children(node);
+            final int needle = names.lookup(tagName);
+            int count = 0;
+
+            for (int i = 0; i < children.length(); i++) {
+                if (children.isNamed(i, needle)) {
+                    count++;
+                }
+            }
+
+            return count;
+        }
+
+        @Override
+        public void remove() throws Ex {
+            node.getParentNode().removeChild(node);
+            modified();
+        }
+
+        @Override
+        public void removeChildren(Predicate<Cursor> predicate) throws Ex {
+            NodeList childNodes = node.getChildNodes();
+            List<Cursor> toBeRemoved = new ArrayList<>();
+
+            for (int i = 0; i < childNodes.getLength(); i++) {
+                Node childNode = childNodes.item(i);
+                Cursor cursor = new NodeCursor(document, names, parent, childNode, i);
+
+                if (predicate.test(cursor)) {
+                    toBeRemoved.add(cursor);
+                }
+            }
+
+            for (Cursor cursor : toBeRemoved) {
+                cursor.remove();
+            }
+        }
+
+        @Override
+        public <R> R extract(Class<R> type) throws Ex {
+            final Extractor<R> extractor = extractorFor(this, type);
+            return extract(extractor);
+        }
+
+        @Override
+        public <R> List<R> extractCollection(String needle, Class<R> type) throws Ex {
+            final Extractor<R> extractor = extractorFor(this, type);
+            return extractCollection(needle, extractor);
+        }
+
+        @Override
+        public <R> R extract(Extractor<R> extractor) throws Ex {
+            return extractor.transform(this);
+        }
+
+
+        @Override
+        public <R> List<R> extractCollection(String needle, final Extractor<R> extractor) throws Ex {
+            final TracedOperation event = Events.extractCollection();
+            final List<R> result = new ArrayList<>();
+
+            iterateCollection(needle, cursor -> {
+                final R converted = cursor.extract(extractor);
+                result.add(converted);
+            });
+
+            event.end();
+            event.finish(this, 0, result.size());
+
+            return result;
+        }
+
+        @Override
+        public <R> List<R> extractCollectionParallel(String needle, Extractor<R> extractor, ForkJoinPool pool) throws Ex {
+            return freeze().extractCollectionParallel(needle, extractor, pool);
+        }
+
+        /**
+         * Not split, W3C DOM isn't safe to read from several threads.
+         */
+        @Override
+        public Stream<Cursor> stream(String needle) {
+            final DomNames.Coded coded = names.children(node);
+            final int code = names.lookup(needle);
+            final List<Node> children = new ArrayList<>();
+
+            for (int i = 0; i < coded.length(); i++) {
+                if (coded.isNamed(i, code)) {
+                    children.add(coded.node(i));
+                }
+            }
+
+            return NX.stream(children.size(), position -> new NodeCursor(document, names, this, children.get(position), position), false);
+        }
+
+        @Override
+        public void iterateCollection(String needle, Iterator iterator) throws Ex {
+            final NodeList childNodes = node.getChildNodes();
+
+            int count = 0;
+            for (int i = 0; i < childNodes.getLength(); i++) {
+                final Node childNode = childNodes.item(i);
+
+                if (isNamed(childNode, needle)) {
+                    final Cursor cursor = new NodeCursor(document, names, this, childNode, count++);
+                    iterator.on(cursor);
+                }
+            }
+        }
+
+        @Override
+        public void iterateCollectionReusingCursor(String needle, Iterator iterator) throws Ex {
+            NodeCursor cursor = null;
+            int count = 0;
+
+            Node childNode = node.getFirstChild();
+            while (childNode != null) {
+                // Look up the next sibling up front so the iterator can remove the current node
+                final Node nextSibling = childNode.getNextSibling();
+
+                if (isNamed(childNode, needle)) {
+                    if (cursor == null) {
+                        cursor = new NodeCursor(document, names, this, childNode, count++);
+                    } else {
+                        cursor.node = childNode;
+                        cursor.index = count++;
+                    }
+
+                    iterator.on(cursor);
+                }
+
+                childNode = nextSibling;
+            }
+        }
+
+        @Override
+        public Cursor copy() {
+            return new NodeCursor(document, names, parent, node, index);
+        }
+
+        @Override
+        public Cursor freeze() throws Ex {
+            final Map<Node, Integer> nodes = new IdentityHashMap<>();
+            for (NodeCursor cursor = this; cursor != null; cursor = cursor.parent) {
+                nodes.put(cursor.node, CompactTree.NONE);
+            }
+
+            final CompactTree tree = CompactTree.copyOf(document, childIndex, nodes);
+            return frozen(tree, nodes);
+        }
+
+        private CompactCursor frozen(CompactTree tree, Map<Node, Integer> nodes) throws Ex {
+            final int frozenNode = nodes.get(node);
+
+            if (frozenNode == CompactTree.NONE) {
+                throw new Ex(this, "Can't freeze a node that's no longer part of the document");
+            }
+
+            final CompactCursor frozenParent = parent != null ? parent.frozen(tree, nodes) : null;
+            return new CompactCursor(tree, frozenNode, frozenParent, index);
+        }
+
+
+        @Override
+        public <I> void insertCollection(String prototypeName, Iterable<I> inputCollection, Inserter<I> inserter) throws Ex {
+            final TracedOperation event = Events.insertCollection();
+            final Optional<Node> prototypeNode = findSingleNode(prototypeName);
+
+            if (prototypeNode.isPresent()) {
+                Node originalPrototype = prototypeNode.get();
+                Node prototype = originalPrototype.cloneNode(true);
+
+                int count = 0;
+                for (I input : inputCollection) {
+                    final Node inputNode = prototype.cloneNode(true);
+                    final Cursor inputCursor = new NodeCursor(document, names, this, inputNode, count++);
+                    inserter.insert(inputCursor, input);
+
+                    node.insertBefore(inputNode, originalPrototype);
+                    modified();
+                }
+
+                node.removeChild(originalPrototype);
+                modified();
+
+                event.end();
+                event.finish(this, 0, count);
+            } else {
+                throw counted(new MissingNode(this, "Expected a node named " + prototypeName + " to be used as a prototype"));
+            }
+        }
+
+        @Override
+        public <R> void update(R payload, Inserter<R> inserter) throws Ex {
+            inserter.insert(this, payload);
+        }
+
+        @Override
+        public Attribute attr(String needle) throws Ambiguous, MissingAttribute {
+            final Optional<Node> attribute = findAttribute(needle);
+
+            if (attribute.isPresent()) {
+                return new RealAttribute(attribute.get());
+            } else {
+                throw new MissingAttribute(this, needle);
+            }
+        }
+
+        @Override
+        public Attribute optionalAttr(String needle) throws Ambiguous {
+            final Optional<Node> attribute = findAttribute(needle);
+
+            if (attribute.isPresent()) {
+                return new RealAttribute(attribute.get());
+            } else {
+                return new NullAttribute();
+            }
+        }
+
+        @Override
+        public boolean hasAttr(String attributeName) {
+            return findAttribute(attributeName).isPresent();
+        }
+
+        @Override
+        public boolean hasChildNode(String name) {
+            return findSingleNode(name).isPresent();
+        }
+
+        @Override
+        public Cursor require(Predicate<Cursor> predicate) throws Ex {
+            Cursor match = findNode(predicate);
+
+            if (match == null) {
+                throw counted(new MissingNode(this, "predicate"));
+            } else {
+                return match;
+            }
+        }
+
+        private NodeCursor findNode(Predicate<Cursor> predicate) {
+            final NodeList childNodes = node.getChildNodes();
+            NodeCursor match = null;
+
+            int count = 0;
+            for (int i = 0; i < childNodes.getLength(); i++) {
+                final Node childNode = childNodes.item(i);
+                String name = childNode.getLocalName();
+
+                if (name == null) {
+                    name = childNode.getNodeName();
+                }
+
+                if (name != null) {
+                    final NodeCursor cursor = new NodeCursor(document, names, this, childNode, count++);
+
+                    if (predicate.test(cursor)) {
+                        if (match != null) {
+                            throw counted(new Ambiguous(this));
+                        }
+
+                        match = cursor;
+                    }
+                }
+            }
+
+            return match;
+        }
+
+        private Optional<Node> findAttribute(String needle) throws Ambiguous {
+            final DomNames.Coded attributes = names.attributes(node);
+            final int code = names.lookup(needle);
+
+            for (int i = 0; i < attributes.length(); i++) {
+                if (attributes.isNamed(i, code)) {
+                    return Optional.of(attributes.node(i));
+                }
+            }
+
+            return Optional.empty();
+        }
+
+        @Override
+        public int extractInt() throws Ex {
+            return (int) parseLong(node, 0, Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+        }
+
+        @Override
+        public long extractLong() throws Ex {
+            return parseLong(node, 0, Long.MIN_VALUE, Long.MAX_VALUE, "long");
+        }
+
+        @Override
+        public double extractDouble() throws Ex {
+            return parseDouble(node, 0);
+        }
+
+        @Override
+        public int attrAsInt(String name) throws Ex {
+            return (int) parseLongAttribute(name, Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+        }
+
+        @Override
+        public long attrAsLong(String name) throws Ex {
+            return parseLongAttribute(name, Long.MIN_VALUE, Long.MAX_VALUE, "long");
+        }
+
+        @Override
+        public double attrAsDouble(String name) throws Ex {
+            final String value = findAttribute(name).orElseThrow(() -> new MissingAttribute(this, name)).getNodeValue();
+
+            try {
+                return Numbers.parseDouble(value, 0, value.length());
+            } catch (NumberFormatException ex) {
+                throw new InvalidNumber(this, "double in attribute '" + name + "'", ex);
+            }
+        }
+
+        @Override
+        public int[] extractCollectionAsIntArray(String needle) throws Ex {
+            final int[] values = new int[count(needle)];
+
+            final DomNames.Coded children = names.children(node);
+            final int code = names.lookup(needle);
+
+            int position = 0;
+            for (int i = 0; i < children.length(); i++) {
+                if (children.isNamed(i, code)) {
+                    final Node childNode = children.node(i);
+                    values[position] = (int) parseLong(childNode, position++, Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+                }
+            }
+
+            return values;
+        }
+
+        @Override
+        public long[] extractCollectionAsLongArray(String needle) throws Ex {
+            final long[] values = new long[count(needle)];
+
+            final DomNames.Coded children = names.children(node);
+            final int code = names.lookup(needle);
+
+            int position = 0;
+            for (int i = 0; i < children.length(); i++) {
+                if (children.isNamed(i, code)) {
+                    final Node childNode = children.node(i);
+                    values[position] = parseLong(childNode, position++, Long.MIN_VALUE, Long.MAX_VALUE, "long");
+                }
+            }
+
+            return values;
+        }
+
+        @Override
+        public double[] extractCollectionAsDoubleArray(String needle) throws Ex {
+            final double[] values = new double[count(needle)];
+
+            final DomNames.Coded children = names.children(node);
+            final int code = names.lookup(needle);
+
+            int position = 0;
+            for (int i = 0; i < children.length(); i++) {
+                if (children.isNamed(i, code)) {
+                    final Node childNode = children.node(i);
+                    values[position] = parseDouble(childNode, position++);
+                }
+            }
+
+            return values;
+        }
+
+        /**
+         * @param position of the child node, only used when describing failures
+         */
+        private long parseLong(Node target, int position, long min, long max, String type) throws InvalidNumber {
+            final String text = characterData(target);
+
+            try {
+                return Numbers.parseLong(text, 0, text.length(), min, max);
+            } catch (NumberFormatException ex) {
+                throw new InvalidNumber(cursorFor(target, position), type, ex);
+            }
+        }
+
+        private double parseDouble(Node target, int position) throws InvalidNumber {
+            final String text = characterData(target);
+
+            try {
+                return Numbers.parseDouble(text, 0, text.length());
+            } catch (NumberFormatException ex) {
+                throw new InvalidNumber(cursorFor(target, position), "double", ex);
+            }
+        }
+
+        private long parseLongAttribute(String name, long min, long max, String type) throws Ex {
+            final String value = findAttribute(name).orElseThrow(() -> new MissingAttribute(this, name)).getNodeValue();
+
+            try {
+                return Numbers.parseLong(value, 0, value.length(), min, max);
+            } catch (NumberFormatException ex) {
+                throw new InvalidNumber(this, type + " in attribute '" + name + "'", ex);
+            }
+        }
+
+        private Cursor cursorFor(Node target, int position) {
+            return target == node ? this : new NodeCursor(document, names, this, target, position);
+        }
+
+        /**
+         * Xerces keeps the data of text nodes as strings, so there's nothing to
+         * copy unless the text is spread over several nodes.
+         */
+        private String characterData(Node target) {
+            final Node first = target.getFirstChild();
+
+            if (first != null && first.getNextSibling() == null
+                    && (first.getNodeType() == Node.TEXT_NODE || first.getNodeType() == Node.CDATA_SECTION_NODE)) {
+                return first.getNodeValue();
+            } else {
+                return target.getTextContent();
+            }
+        }
+
+        @Override
+        public String text() {
+            return node.getTextContent();
+        }
+
+        @Override
+        public String name() {
+            return node.getNodeName();
+        }
+
+        @Override
+        public String toString() {
+            return describePath();
+        }
+
+
+        /**
+         * The path is only computed when it's asked for, typically by exceptions.
+         */
+        @Override
+        public String describePath() {
+            StringBuilder builder = new StringBuilder();
+            appendPath(builder);
+
+            return builder.toString();
+        }
+
+        @Override
+        public PathSnapshot snapshotPath() {
+            int depth = 0;
+            for (NodeCursor cursor = this; cursor != null; cursor = cursor.parent) {
+                depth++;
+            }
+
+            final String[] names = new String[depth];
+            final int[] indexes = new int[depth];
+
+            NodeCursor cursor = this;
+            for (int i = depth - 1; i >= 0; i--, cursor = cursor.parent) {
+                names[i] = cursor.name();
+                indexes[i] = cursor.index;
+            }
+
+            return new PathSnapshot(names, indexes);
+        }
+
+        private void appendPath(StringBuilder builder) {
+            if (parent != null) {
+                parent.appendPath(builder);
+                builder.append(" >> ");
+            }
+
+            builder.append(name());
+
+            if (index > 0) {
+                builder.append("[")
+                    .append(index)
+                    .append("]");
+            }
+        }
+
+        @Override
+        public Cursor text(String updatedText) {
+            // Replaces all child nodes
+            node.setTextContent(updatedText);
+            modified();
+
+            return this;
+        }
+
+        @Override
+        public String dumpXml(Charset charset, Feature... features) throws Ex {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            dumpXml(output, charset, features);
+
+            return new String(output.toByteArray(), charset);
+        }
+
+        @Override
+        public void dumpXml(OutputStream output, Charset charset, Feature... features) throws Ex {
+            measureDump(this, output, measuredOutput -> dump(measuredOutput, charset, features));
+        }
+
+        @Override
+        public void dumpXml(Writer output, Charset charset, Feature... features) throws Ex {
+            measureDump(this, output, measuredOutput -> dump(measuredOutput, charset, features));
+        }
+
+        @Override
+        public CompletableFuture<Void> dumpXmlAsync(OutputStream output, Charset charset, Feature... features) {
+            return async(xmlExecutor(), null, () -> {
+                dumpXml(output, charset, features);
+                return null;
+            });
+        }
+
+        private void dump(OutputStream output, Charset charset, Feature... features) throws Ex {
+            if (nativeDump) {
+                serialize(new OutputStreamWriter(output, charset), charset, features);
+                return;
+            }
+
+            try {
+                final int mask = TransformerPools.mask(features);
+
+                // Don't hold on to a pooled transformer while blocked writing to the output
+                final Bytes buffer = virtualThreads && Threads.isVirtual() ? new Bytes() : null;
+                final Transformer transformer = transformers.borrow(charset, mask, document);
+
+                StreamResult result = new StreamResult(buffer != null ? buffer : output);
+                transformer.transform(new DOMSource(node), result);
+
+                transformers.release(transformer, charset, mask);
+
+                if (buffer != null) {
+                    buffer.writeTo(output);
+                }
+            } catch (Exception ex) {
+                throw new Ex(this, "Technical difficulties", ex);
+            }
+        }
+
+        private void dump(Writer output, Charset charset, Feature... features) throws Ex {
+            if (nativeDump) {
+                serialize(output, charset, features);
+                return;
+            }
+
+            try {
+                final int mask = TransformerPools.mask(features);
+
+                // Don't hold on to a pooled transformer while blocked writing to the output
+                final StringWriter buffer = virtualThreads && Threads.isVirtual() ? new StringWriter() : null;
+                final Transformer transformer = transformers.borrow(charset, mask, document);
+
+                StreamResult result = new StreamResult(buffer != null ? buffer : output);
+                transformer.transform(new DOMSource(node), result);
+
+                transformers.release(transformer, charset, mask);
+
+                if (buffer != null) {
+                    output.write(buffer.toString());
+                }
+
+                output.flush();
+            } catch (Exception ex) {
+                throw new Ex(this, "Technical difficulties", ex);
+            }
+        }
+
+        private void serialize(Writer output, Charset charset, Feature... features) throws Ex {
+            try {
+                final int mask = TransformerPools.mask(features);
+                final DocumentType doctype = document.getDoctype();
+                final XmlSerializer serializer = doctype != null
+                        ? new XmlSerializer(output, charset, mask, doctype.getPublicId(), doctype.getSystemId())
+                        : new XmlSerializer(output, charset, mask, null, null);
+
+                serializer.serialize(node);
+            } catch (Exception ex) {
+                throw new Ex(this, "Technical difficulties", ex);
+            }
+        }
+
+    }
+
+
+    /**
+     * Read only cursor backed by a {@link CompactTree}, see {@link ConfigFeature#COMPACT_TREE}
+     * and {@link Cursor#freeze()}. Safe for any number of threads to navigate at once, except
+     * for cursors passed to {@link #iterateCollectionReusingCursor(String, Iterator)}.
+     */
+    private class CompactCursor implements Cursor, Owned {
+
+        private final CompactTree tree;
+        private final CompactCursor parent;
+
+        // Only changed when the cursor is reused, see iterateCollectionReusingCursor
+        private int node;
+        private int index;
+
+        // Returned by every optional lookup missing from this cursor, see missing()
+        private EmptyCursor missing;
+
+        // Where navigation is recorded while learning projections, see touched()
+        private ProjectionLearner.Touched touched;
+
+        CompactCursor(CompactTree tree, int node, CompactCursor parent, int index) {
+            this.tree = tree;
+            this.node = node;
+            this.parent = parent;
+            this.index = index;
+        }
+
+        @Override
+        public NX owner() {
+            return NX.this;
+        }
+
+        /**
+         * Empty cursors are immutable, so racing threads creating one each is harmless
+         */
+        private EmptyCursor missing() {
+            EmptyCursor result = missing;
+            if (result == null) {
+                missing = result = new EmptyCursor(this);
+            }
+
+            return result;
+        }
+
+        /**
+         * Names of the children of the current node, only looked up if an exception message is read
+         */
+        private Supplier<Set<String>> childNames() {
+            final int current = node;
+            return () -> tree.childNames(current);
+        }
+
+        @Override
+        public Cursor to(String firstName, String... remainingNames) throws Ex {
+            CompactCursor cursor = to(firstName);
+            for (String nextName : remainingNames) {
+                cursor = cursor.to(nextName);
+            }
+
+            return cursor;
+        }
+
+        private CompactCursor to(String tagName) throws Ex {
+            touchChild(tagName);
+            final int found = findSingleNode(tagName);
+
+            if (found != CompactTree.NONE) {
+                return new CompactCursor(tree, found, this, 0);
+            } else {
+                checkProjected(tagName);
+                throw counted(new MissingNode(this, tagName, childNames()));
+            }
+        }
+
+        @Override
+        public Cursor toOptional(String firstNeedle, String... remainingNeedles) throws Ex {
+            touchChild(firstNeedle);
+            final int found = findSingleNode(firstNeedle);
+            Cursor cursor = found != CompactTree.NONE
+                    ? new CompactCursor(tree, found, this, 0)
+                    : missingChild(firstNeedle);
+
+            for (String remainingNeedle : remainingNeedles) {
+                cursor = cursor.toOptional(remainingNeedle);
+            }
+
+            return cursor;
+        }
+
+        @Override
+        public Cursor to(Path path) throws Ex {
+            CompactCursor cursor = this;
+            for (int step = 0; step < path.length(); step++) {
+                cursor = cursor.to(path, step, false);
+            }
+
+            return cursor;
+        }
+
+        @Override
+        public Cursor toOptional(Path path) throws Ex {
+            CompactCursor cursor = this;
+            for (int step = 0; step < path.length(); step++) {
+                final CompactCursor next = cursor.to(path, step, true);
+
+                if (next == null) {
+                    return cursor.missing();
+                }
+
+                cursor = next;
+            }
+
+            return cursor;
+        }
+
+        /**
+         * @return Cursor for a single step or null if the node is missing and optional
+         */
+        private CompactCursor to(Path path, int step, boolean optional) throws Ex {
+            final String tagName = path.name(step);
+            final int position = path.position(step);
+            touchChild(tagName);
+
+            final int found = position == Path.SINGLE
+                    ? findSingleNode(tree.lookup(path.folded(step)), tagName)
+                    : findNode(tree.lookup(path.folded(step)), position);
+
+            if (found != CompactTree.NONE) {
+                return new CompactCursor(tree, found, this, Math.max(position, 0));
+            }
+
+            checkProjected(tagName);
+
+            if (optional) {
+                return null;
+            } else if (position == Path.SINGLE) {
+                throw counted(new MissingNode(this, tagName, childNames()));
+            } else {
+                throw counted(new MissingNode(this, tagName, position, childNames()));
+            }
+        }
+
+        private int findSingleNode(String tagName) throws Ambiguous {
+            return findSingleNode(tree.lookup(tagName), tagName);
+        }
+
+        private int findSingleNode(int needle, String tagName) throws Ambiguous {
+            final ChildIndex<Integer> childIndex = tree.childIndex(node);
+
+            if (childIndex != null) {
+                if (childIndex.count(needle) > 1) {
+                    throw counted(new Ambiguous(this, tagName));
+                } else {
+                    final Integer found = childIndex.get(needle, 0);
+                    return found != null ? found : CompactTree.NONE;
+                }
+            }
+
+            int found = CompactTree.NONE;
+
+            for (int child = tree.firstChild(node); child != CompactTree.NONE; child = tree.nextSibling(child)) {
+                if (tree.isNamed(child, needle)) {
+                    if (found != CompactTree.NONE) {
+                        throw counted(new Ambiguous(this, tagName));
+                    } else {
+                        found = child;
+                    }
+                }
+            }
+
+            return found;
+        }
+
+        @Override
+        public Cursor to(int position, String tagName) throws MissingNode {
+            touchChild(tagName);
+            final int found = findNode(tree.lookup(tagName), position);
+
+            if (found != CompactTree.NONE) {
+                return new CompactCursor(tree, found, this, position);
+            } else {
+                checkProjected(tagName);
+                throw counted(new MissingNode(this, tagName, position, childNames()));
+            }
+        }
+
+        /**
+         * @return Child at the given position among the children with the given name or NONE
+         */
+        private int findNode(int needle, int position) {
+            final ChildIndex<Integer> childIndex = tree.childIndex(node);
+
+            if (childIndex != null) {
+                final Integer found = childIndex.get(needle, position);
+                return found != null ? found : CompactTree.NONE;
+            }
+
+            int count = 0;
+
+            for (int child = tree.firstChild(node); child != CompactTree.NONE; child = tree.nextSibling(child)) {
+                if (tree.isNamed(child, needle)) {
+                    count++;
+
+                    if (count == position + 1) {
+                        return child;
+                    }
+                }
+            }
+
+            return CompactTree.NONE;
+        }
+
+        @Override
+        public int count(String tagName) {
+            touchChild(tagName);
+            final int needle = tree.lookup(tagName);
+            final ChildIndex<Integer> childIndex = tree.childIndex(node);
+
+            int count = 0;
+
+            if (childIndex != null) {
+                count = childIndex.count(needle);
+            } else {
+                for (int child = tree.firstChild(node); child != CompactTree.NONE; child = tree.nextSibling(child)) {
+                    if (tree.isNamed(child, needle)) {
+                        count++;
+                    }
+                }
+            }
+
+            if (count == 0) {
+                checkProjected(tagName);
+            }
+
+            return count;
+        }
+
+        @Override
+        public <R> R extract(Extractor<R> extractor) throws Ex {
+            return extractor.transform(this);
+        }
+
+        @Override
+        public <R> R extract(Class<R> type) throws Ex {
+            return extract(extractorFor(this, type));
+        }
+
+        @Override
+        public <R> List<R> extractCollection(String needle, Extractor<R> extractor) throws Ex {
+            final TracedOperation event = Events.extractCollection();
+            final List<R> result = new ArrayList<>();
+            iterateCollection(needle, cursor -> result.add(cursor.extract(extractor)));
+
+            event.end();
+            event.finish(this, 0, result.size());
+
+            return result;
+        }
+
+        @Override
+        public <R> List<R> extractCollection(String needle, Class<R> type) throws Ex {
+            return extractCollection(needle, extractorFor(this, type));
+        }
+
+        @Override
+        public <R> List<R> extractCollectionParallel(String needle, Extractor<R> extractor, ForkJoinPool pool) throws Ex {
+            final TracedOperation event = Events.extractCollection();
+            final int[] children = children(needle);
+            final List<R> result = extractParallel(children.length, position -> new CompactCursor(tree, children[position], this, position), extractor, pool);
+
+            event.end();
+            event.finish(this, 0, result.size());
+
+            return result;
+        }
+
+        @Override
+        public Stream<Cursor> stream(String needle) {
+            final int[] children = children(needle);
+            return NX.stream(children.length, position -> new CompactCursor(tree, children[position], this, position), true);
+        }
+
+        private int[] children(String needle) {
+            touchChild(needle);
+            final int code = tree.lookup(needle);
+
+            int count = 0;
+            int[] children = new int[16];
+
+            for (int child = tree.firstChild(node); child != CompactTree.NONE; child = tree.nextSibling(child)) {
+                if (tree.isNamed(child, code)) {
+                    if (count == children.length) {
+                        children = Arrays.copyOf(children, count * 2);
+                    }
+
+                    children[count++] = child;
+                }
+            }
+
+            if (count == 0) {
+                checkProjected(needle);
+            }
+
+            return Arrays.copyOf(children, count);
+        }
+
+        @Override
+        public void iterateCollection(String needle, Iterator iterator) throws Ex {
+            touchChild(needle);
+            int count = 0;
+
+            final int code = tree.lookup(needle);
+
+            for (int child = tree.firstChild(node); child != CompactTree.NONE; child = tree.nextSibling(child)) {
+                if (tree.isNamed(child, code)) {
+                    iterator.on(new CompactCursor(tree, child, this, count++));
+                }
+            }
+
+            if (count == 0) {
+                checkProjected(needle);
+            }
+        }
+
+        @Override
+        public void iterateCollectionReusingCursor(String needle, Iterator iterator) throws Ex {
+            touchChild(needle);
+            CompactCursor cursor = null;
+            int count = 0;
+
+            final int code = tree.lookup(needle);
+
+            for (int child = tree.firstChild(node); child != CompactTree.NONE; child = tree.nextSibling(child)) {
+                if (tree.isNamed(child, code)) {
+                    if (cursor == null) {
+                        cursor = new CompactCursor(tree, child, this, count++);
+                    } else {
+                        cursor.node = child;
+                        cursor.index = count++;
+                    }
+
+                    iterator.on(cursor);
+                }
+            }
+
+            if (count == 0) {
+                checkProjected(needle);
+            }
+        }
+
+        @Override
+        public Cursor copy() {
+            return new CompactCursor(tree, node, parent, index);
+        }
+
+        /**
+         * Already read only, but copied in case this cursor is being reused.
+         */
+        @Override
+        public Cursor freeze() {
+            return copy();
+        }
 
-        <R> List<R> extractCollection(String needle, Extractor<R> extractor) throws Ex;
+        @Override
+        public Attribute attr(String name) throws Ambiguous, MissingAttribute {
+            touchAttribute(name);
+            final int attribute = tree.findAttribute(node, tree.lookup(name));
 
-        <R> List<R> extractCollection(String needle, Class<R> type) throws Ex;
+            if (attribute != CompactTree.NONE) {
+                return new CompactAttribute(tree.attributeValue(attribute));
+            } else {
+                checkProjectedAttribute(name);
+                throw new MissingAttribute(this, name);
+            }
+        }
 
-        void iterateCollection(String needle, Iterator extractor) throws Ex;
+        @Override
+        public Attribute optionalAttr(String name) throws Ambiguous {
+            touchAttribute(name);
+            final int attribute = tree.findAttribute(node, tree.lookup(name));
 
-        void remove() throws Ex;
+            if (attribute != CompactTree.NONE) {
+                return new CompactAttribute(tree.attributeValue(attribute));
+            } else {
+                checkProjectedAttribute(name);
+                return new NullAttribute();
+            }
+        }
 
-        void removeChildren(Predicate<Cursor> predicate) throws Ex;
+        @Override
+        public boolean hasAttr(String attributeName) {
+            touchAttribute(attributeName);
+            if (tree.findAttribute(node, tree.lookup(attributeName)) != CompactTree.NONE) {
+                return true;
+            }
 
-        String text();
+            checkProjectedAttribute(attributeName);
+            return false;
+        }
 
-        String describePath();
+        @Override
+        public int extractInt() throws Ex {
+            return (int) parseLong(node, 0, Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+        }
 
-        String name();
+        @Override
+        public long extractLong() throws Ex {
+            return parseLong(node, 0, Long.MIN_VALUE, Long.MAX_VALUE, "long");
+        }
 
-        void removeAttr(String name) throws Ex;
+        @Override
+        public double extractDouble() throws Ex {
+            return parseDouble(node, 0);
+        }
 
-        Cursor text(String updatedText);
+        @Override
+        public int attrAsInt(String name) throws Ex {
+            return (int) parseLongAttribute(name, Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+        }
 
-        String dumpXml(Charset charset, Feature... features) throws Ex;
+        @Override
+        public long attrAsLong(String name) throws Ex {
+            return parseLongAttribute(name, Long.MIN_VALUE, Long.MAX_VALUE, "long");
+        }
 
-        void dumpXml(OutputStream output, Charset charset, Feature... features) throws Ex;
+        @Override
+        public double attrAsDouble(String name) throws Ex {
+            final int attribute = requireAttribute(name);
 
-        Attribute attr(String name) throws Ambiguous, MissingAttribute;
+            try {
+                return tree.parseDoubleAttribute(attribute);
+            } catch (NumberFormatException ex) {
+                throw new InvalidNumber(this, "double in attribute '" + name + "'", ex);
+            }
+        }
 
-        Attribute optionalAttr(String name) throws Ambiguous;
+        @Override
+        public int[] extractCollectionAsIntArray(String needle) throws Ex {
+            final int[] children = children(needle);
+            final int[] values = new int[children.length];
 
-        /**
-         * This method will expect the xml to contain a single node that will be used
-         * as a prototype when inserting data from the collection.
-         * <p>
-         * I've found this to be useful when building soap requests with repeatable
-         * elements.
-         *
-         * @param prototypeName name of the node to be used as a prototype.
-         * @param input         collection to be inserted
-         * @param inserter      will be called once for every element in the collection
-         */
-        <R> void insertCollection(String prototypeName, Iterable<R> input, Inserter<R> inserter) throws Ex;
+            for (int position = 0; position < children.length; position++) {
+                values[position] = (int) parseLong(children[position], position, Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+            }
 
-        /**
-         * Update a single node
-         *
-         * @param payload  to be inserted into a node
-         * @param inserter that'll update the node based on the payload content
-         */
-        <R> void update(R payload, Inserter<R> inserter) throws Ex;
+            return values;
+        }
 
-        /**
-         * @param attributeName Name of the attribute
-         * @return True if the node has an attribute with the given name
-         */
-        boolean hasAttr(String attributeName);
+        @Override
+        public long[] extractCollectionAsLongArray(String needle) throws Ex {
+            final int[] children = children(needle);
+            final long[] values = new long[children.length];
 
-        boolean hasChildNode(String name);
+            for (int position = 0; position < children.length; position++) {
+                values[position] = parseLong(children[position], position, Long.MIN_VALUE, Long.MAX_VALUE, "long");
+            }
 
-        /**
-         * @param predicate All child nodes will be passed to this predicate
-         * @return A cursor pointing to the only node matching the predicate
-         * @throws Ex If the predicate matches zero or more then one node
-         */
-        NX.Cursor require(Predicate<Cursor> predicate) throws Ex;
+            return values;
+        }
 
-    }
+        @Override
+        public double[] extractCollectionAsDoubleArray(String needle) throws Ex {
+            final int[] children = children(needle);
+            final double[] values = new double[children.length];
 
-    public interface Attribute {
+            for (int position = 0; position < children.length; position++) {
+                values[position] = parseDouble(children[position], position);
+            }
 
-        /**
-         * @return The text value of the attribute
-         */
-        String text();
+            return values;
+        }
 
         /**
-         * Map the text value of the attribute by applying the given function.
-         * <p>
-         * Warning: At some point I'll make this library Java 8 only and replace
-         * the Guava function with the Java 8 interface.
+         * @param position of the child node, only used when describing failures
          */
-        <R> R text(Function<String, R> func);
+        private long parseLong(int target, int position, long min, long max, String type) throws Ex {
+            touchText(target);
+            checkProjectedText(target, position);
 
-        /**
-         * @param text the new attribute text
-         */
-        void text(String text);
+            try {
+                return tree.parseLong(target, min, max);
+            } catch (NumberFormatException ex) {
+                throw new InvalidNumber(cursorFor(target, position), type, ex);
+            }
+        }
 
-    }
+        private double parseDouble(int target, int position) throws Ex {
+            touchText(target);
+            checkProjectedText(target, position);
 
-    private static class RealAttribute implements Attribute {
+            try {
+                return tree.parseDouble(target);
+            } catch (NumberFormatException ex) {
+                throw new InvalidNumber(cursorFor(target, position), "double", ex);
+            }
+        }
 
-        private final Node node;
+        private long parseLongAttribute(String name, long min, long max, String type) throws Ex {
+            final int attribute = requireAttribute(name);
 
-        public RealAttribute(Node node) {
-            this.node = node;
+            try {
+                return tree.parseLongAttribute(attribute, min, max);
+            } catch (NumberFormatException ex) {
+                throw new InvalidNumber(this, type + " in attribute '" + name + "'", ex);
+            }
         }
 
-        @Override
-        public <R> R text(Function<String, R> func) {
-            return func.apply(text());
-        }
+        private int requireAttribute(String name) throws MissingAttribute {
+            touchAttribute(name);
+            final int attribute = tree.findAttribute(node, tree.lookup(name));
 
-        @Override
-        public String text() {
-            return node.getTextContent();
-        }
+            if (attribute == CompactTree.NONE) {
+                checkProjectedAttribute(name);
+                throw new MissingAttribute(this, name);
+            }
 
-        @Override
-        public void text(String text) {
-            node.setTextContent(text);
+            return attribute;
         }
 
-    }
-
-    private static class NullAttribute implements Attribute {
+        /**
+         * Misses are reported as usual, unless the child is left out by the projection the tree was built from
+         */
+        private void checkProjected(String needle) throws OutsideProjection {
+            final ProjectionFilter.Step[] steps = tree.skeleton(node);
 
-        @Override
-        public <R> R text(Function<String, R> func) {
-            return null;
+            if (steps != null && !ProjectionFilter.Step.allowsChild(steps, needle)) {
+                throw new OutsideProjection(this, "'" + needle + "'", tree.projection());
+            }
         }
 
-        @Override
-        public String text() {
-            return null;
-        }
+        private void checkProjectedAttribute(String name) throws OutsideProjection {
+            final ProjectionFilter.Step[] steps = tree.skeleton(node);
 
-        @Override
-        public void text(String text) {
+            if (steps != null && !tree.projection().root.allowsAttribute(steps, name)) {
+                throw new OutsideProjection(this, "Attribute '" + name + "'", tree.projection());
+            }
         }
 
-    }
+        /**
+         * Elements on the way to projected elements are built without their text
+         */
+        private void checkProjectedText(int target, int position) throws OutsideProjection {
+            if (tree.skeleton(target) != null) {
+                throw new OutsideProjection(cursorFor(target, position), "Text", tree.projection());
+            }
+        }
 
+        private Cursor missingChild(String needle) throws OutsideProjection {
+            checkProjected(needle);
+            return missing();
+        }
 
-    private class EmptyCursor implements Cursor {
+        /**
+         * @return Null unless navigation of the tree is recorded, see {@link #learnProjections(int)}
+         */
+        private ProjectionLearner.Touched touched() {
+            if (tree.touched() == null) {
+                return null;
+            }
 
-        private final NodeCursor lastKnownCursor;
+            // Reused cursors only move between children with the same name, so they share the result
+            ProjectionLearner.Touched result = touched;
+            if (result == null) {
+                touched = result = ProjectionLearner.touched(tree, node);
+            }
 
-        EmptyCursor(NodeCursor lastKnownCursor) {
-            this.lastKnownCursor = lastKnownCursor;
+            return result;
         }
 
-        @Override
-        public Cursor to(String firstName, String... remainingNames) throws Ex {
-            return this;
+        private void touchChild(String needle) {
+            final ProjectionLearner.Touched current = touched();
+            if (current != null) {
+                current.child(needle);
+            }
         }
 
-        @Override
-        public Cursor toOptional(String firstNeedle, String... reamainingNeedles) throws Ex {
-            return this;
+        private void touchAttribute(String name) {
+            final ProjectionLearner.Touched current = touched();
+            if (current != null) {
+                current.attribute(name);
+            }
         }
 
-        @Override
-        public Cursor to(int position, String tagName) throws MissingNode {
-            return this;
+        /**
+         * @param target this node or one of its child elements
+         */
+        private void touchText(int target) {
+            final ProjectionLearner.Touched current = touched();
+            if (current != null) {
+                (target == node ? current : current.child(tree.localName(target))).read();
+            }
         }
 
-        @Override
-        public int count(String tagName) {
-            return 0;
+        private Cursor cursorFor(int target, int position) {
+            return target == node ? this : new CompactCursor(tree, target, this, position);
         }
 
         @Override
-        public void iterateCollection(String needle, Iterator extractor) throws Ex { /* ...*/ }
+        public boolean hasChildNode(String name) {
+            touchChild(name);
+            if (findSingleNode(name) != CompactTree.NONE) {
+                return true;
+            }
 
-        @Override
-        public <R> R extract(Extractor<R> extractor) throws Ex {
-            return null;
+            checkProjected(name);
+            return false;
         }
 
         @Override
-        public <R> R extract(Class<R> type) throws Ex {
-            return null;
-        }
+        public Cursor require(Predicate<Cursor> predicate) throws Ex {
+            // Predicates may look at anything below the children
+            touchText(node);
 
-        @Override
-        public <R> List<R> extractCollection(String needle, Class<R> type) throws Ex {
-            return new ArrayList<>();
+            // Children left out by the projection might have matched as well
+            if (tree.skeleton(node) != null) {
+                throw new OutsideProjection(this, "Children matching a predicate", tree.projection());
+            }
+
+            CompactCursor match = null;
+
+            int count = 0;
+            for (int child = tree.firstChild(node); child != CompactTree.NONE; child = tree.nextSibling(child)) {
+                final CompactCursor cursor = new CompactCursor(tree, child, this, count++);
+
+                if (predicate.test(cursor)) {
+                    if (match != null) {
+                        throw counted(new Ambiguous(this));
+                    }
+
+                    match = cursor;
+                }
+            }
+
+            if (match == null) {
+                throw counted(new MissingNode(this, "predicate"));
+            } else {
+                return match;
+            }
         }
 
         @Override
-        public <R> List<R> extractCollection(String needle, Extractor<R> extractor) throws Ex {
-            return new ArrayList<>();
+        public <R> void update(R payload, Inserter<R> inserter) throws Ex {
+            inserter.insert(this, payload);
         }
 
         @Override
         public String text() {
-            return null;
+            touchText(node);
+            checkProjectedText(node, index);
+            return tree.text(node);
         }
 
         @Override
         public String name() {
-            return null;
+            return tree.name(node);
         }
 
         @Override
-        public Cursor text(String updatedText) {
-            return this;
+        public String toString() {
+            return describePath();
         }
 
         @Override
         public String describePath() {
-            return lastKnownCursor.describePath() + " >> ???";
+            StringBuilder builder = new StringBuilder();
+            appendPath(builder);
+
+            return builder.toString();
         }
 
         @Override
-        public void removeAttr(String name) throws Ex {
+        public PathSnapshot snapshotPath() {
+            int depth = 0;
+            for (CompactCursor cursor = this; cursor != null; cursor = cursor.parent) {
+                depth++;
+            }
+
+            final String[] names = new String[depth];
+            final int[] indexes = new int[depth];
+
+            CompactCursor cursor = this;
+            for (int i = depth - 1; i >= 0; i--, cursor = cursor.parent) {
+                names[i] = cursor.name();
+                indexes[i] = cursor.index;
+            }
+
+            return new PathSnapshot(names, indexes);
         }
 
+        private void appendPath(StringBuilder builder) {
+            if (parent != null) {
+                parent.appendPath(builder);
+                builder.append(" >> ");
+            }
 
-        @Override
-        public void setAttr(String name, String value) throws Ex {
-            throw new UnsupportedOperationException("Can't insert attribute on empty cursor");
+            builder.append(name());
+
+            if (index > 0) {
+                builder.append("[")
+                    .append(index)
+                    .append("]");
+            }
         }
 
         @Override
         public String dumpXml(Charset charset, Feature... features) throws Ex {
-            throw new UnsupportedOperationException("Can't dump empty cursor");
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            dumpXml(output, charset, features);
+
+            return new String(output.toByteArray(), charset);
         }
 
         @Override
         public void dumpXml(OutputStream output, Charset charset, Feature... features) throws Ex {
-            throw new UnsupportedOperationException("Can't dump empty cursor");
+            measureDump(this, output, measuredOutput -> dump(measuredOutput, charset, features));
         }
 
         @Override
-        public Cursor append(String nodeName) throws Ex {
-            throw new UnsupportedOperationException("Can't insert child node under empty cursor");
+        public void dumpXml(Writer output, Charset charset, Feature... features) throws Ex {
+            measureDump(this, output, measuredOutput -> dump(measuredOutput, charset, features));
         }
 
         @Override
-        public Cursor appendAfter(String nodeName, Predicate<Cursor> predicate) throws Ex {
-            throw new UnsupportedOperationException("Can't insert child node under empty cursor");
+        public CompletableFuture<Void> dumpXmlAsync(OutputStream output, Charset charset, Feature... features) {
+            return async(xmlExecutor(), null, () -> {
+                dumpXml(output, charset, features);
+                return null;
+            });
         }
 
-        @Override
-        public Attribute attr(String name) {
-            return new NullAttribute();
+        private void dump(OutputStream output, Charset charset, Feature... features) throws Ex {
+            dump(new OutputStreamWriter(output, charset), charset, features);
+        }
+
+        private void dump(Writer output, Charset charset, Feature... features) throws Ex {
+            touchText(node);
+            checkProjectedText(node, index);
+
+            try {
+                final int mask = TransformerPools.mask(features);
+                tree.serialize(node, new XmlSerializer(output, charset, mask, tree.doctypePublic(), tree.doctypeSystem()));
+            } catch (Exception ex) {
+                throw new Ex(this, "Technical difficulties", ex);
+            }
         }
 
         @Override
-        public Attribute optionalAttr(String name) {
-            return new NullAttribute();
+        public Cursor append(String nodeName) throws Ex {
+            throw new UnsupportedOperationException("Can't insert child node into a read only cursor");
         }
 
         @Override
-        public <R> void insertCollection(String prototype, Iterable<R> people, Inserter<R> inserter) throws Ex {
+        public Cursor appendAfter(String nodeName, Predicate<Cursor> predicate) throws Ex {
+            throw new UnsupportedOperationException("Can't insert child node into a read only cursor");
         }
 
         @Override
-        public <R> void update(R payload, Inserter<R> inserter) {
+        public void setAttr(String name, String value) throws Ex {
+            throw new UnsupportedOperationException("Can't insert attribute on a read only cursor");
         }
 
         @Override
-        public void remove() throws Ex {
+        public void removeAttr(String name) throws Ex {
+            throw new UnsupportedOperationException("Can't remove attribute from a read only cursor");
         }
 
         @Override
-        public void removeChildren(Predicate<Cursor> predicate) throws Ex { }
+        public Cursor text(String updatedText) {
+            throw new UnsupportedOperationException("Can't update text of a read only cursor");
+        }
 
         @Override
-        public boolean hasAttr(String attributeName) {
-            return false;
+        public void remove() throws Ex {
+            throw new UnsupportedOperationException("Can't remove a read only cursor");
         }
 
         @Override
-        public boolean hasChildNode(String name) {
-            return false;
+        public void removeChildren(Predicate<Cursor> predicate) throws Ex {
+            throw new UnsupportedOperationException("Can't remove child nodes from a read only cursor");
         }
 
         @Override
-        public Cursor require(Predicate<Cursor> predicate) throws Ex {
-            throw new Ex(this, "Empty cursor, no child nodes");
+        public <R> void insertCollection(String prototypeName, Iterable<R> input, Inserter<R> inserter) throws Ex {
+            throw new UnsupportedOperationException("Can't insert collection into a read only cursor");
         }
 
     }
 
 
-    private class NodeCursor implements Cursor {
+    public static class Ex extends RuntimeException {
 
-        private final Node node;
-        private final List<NodeCursor> ancestors;
-        private final int index;
-        private final Document document;
+        // Only kept by lightweight exceptions, see ConfigFeature.LIGHTWEIGHT_EXCEPTIONS
+        private final PathSnapshot path;
+        private final Supplier<String> details;
+        private volatile String message;
 
-        NodeCursor(Document document, Node node) {
-            this(document, new ArrayList<>(), node, 0);
+        Ex(Cursor cursor, String message) {
+            this(cursor, () -> message, null);
         }
 
-        NodeCursor(Document document, List<NodeCursor> ancestors, Node node, int index) {
-            if (ancestors == null) {
-                throw new IllegalArgumentException("Ancestors can't be null");
-            }
-            if (node == null) {
-                throw new IllegalArgumentException("Node can't be null");
-            }
-            if (index < 0) {
-                throw new IllegalArgumentException("Index must be greater or equal to zero");
-            }
+        Ex(Cursor cursor, String message, Throwable cause) {
+            this(cursor, () -> message, cause);
+        }
 
-            this.document = document;
-            this.ancestors = ancestors;
-            this.index = index;
-            this.node = node;
+        /**
+         * @param details only invoked once the message is needed for lightweight exceptions,
+         *                possibly from another thread, so it must not read the cursor or its document
+         */
+        Ex(Cursor cursor, Supplier<String> details, Throwable cause) {
+            this(cursor, details, cause, isLightweight(cursor));
         }
 
-        @Override
-        public Cursor to(String firstName, String... remainingNames) throws Ex {
-            Cursor cursor = to(firstName);
-            for (String nextName : remainingNames) {
-                cursor = cursor.to(nextName);
-            }
+        private Ex(Cursor cursor, Supplier<String> details, Throwable cause, boolean lightweight) {
+            super(lightweight ? null : cursor.describePath() + " -- " + details.get(), cause, true, !lightweight);
+            this.path = lightweight ? ((Owned) cursor).snapshotPath() : null;
+            this.details = lightweight ? details : null;
+        }
 
-            return cursor;
+        Ex(String message, Throwable cause) {
+            super(message, cause);
+            this.path = null;
+            this.details = null;
         }
 
-        @Override
-        public void setAttr(String name, String value) throws Ex {
-            ((Element) node).setAttribute(name, value);
+        private static boolean isLightweight(Cursor cursor) {
+            return cursor instanceof Owned && ((Owned) cursor).owner().lightweightExceptions;
         }
 
         @Override
-        public Cursor append(String tagName) throws Ex {
-            Element element = document.createElement(tagName);
-            Node newNode = node.appendChild(element);
+        public String getMessage() {
+            if (details == null) {
+                return super.getMessage();
+            }
 
-            List<NodeCursor> ancestors = new ArrayList<>(this.ancestors);
-            ancestors.add(this);
+            // Details only read immutable data, so racing threads build the same message
+            String result = message;
+            if (result == null) {
+                message = result = path.describe() + " -- " + details.get();
+            }
 
-            return new NodeCursor(document, ancestors, newNode, 0);
+            return result;
         }
 
-        @Override
-        public Cursor appendAfter(String tagName, Predicate<Cursor> predicate) throws Ex {
-            NodeCursor match = findNode(predicate);
+    }
 
-            if (match == null) {
-                return append(tagName);
-            } else {
-                Element element = document.createElement(tagName);
-                Node nextSibling = match.node.getNextSibling();
-                node.insertBefore(element, nextSibling);
+    public static class NoExtractor extends Ex {
 
-                List<NodeCursor> ancestors = new ArrayList<>(this.ancestors);
-                ancestors.add(this);
+        NoExtractor(Cursor cursor, Class<?> type) {
+            super(cursor, "No extractor for: " + type.getName());
+        }
 
-                return new NodeCursor(document, ancestors, element, 0);
-            }
+    }
+
+    public static class InvalidNumber extends Ex {
+
+        InvalidNumber(Cursor cursor, String type, NumberFormatException cause) {
+            super(cursor, "Expected " + type + " - " + cause.getMessage(), cause);
         }
 
-        @Override
-        public Cursor toOptional(String firstNeedle, String... remainingNeedles) throws Ex {
-            Optional<Node> result = findSingleNode(firstNeedle);
-            Cursor cursor = result.isPresent()
-                ? to(firstNeedle)
-                : new EmptyCursor(this);
+    }
 
-            for (String remainingNeedle : remainingNeedles) {
-                cursor = cursor.toOptional(remainingNeedle);
-            }
+    public static class MissingAttribute extends Ex {
 
-            return cursor;
+        MissingAttribute(Cursor cursor, String attributeName) {
+            super(cursor, "Unable to find attribute named '" + attributeName + "'");
         }
 
-        @Override
-        public void removeAttr(String name) throws Ex {
-            node.getAttributes().removeNamedItem(name);
+    }
+
+    public static class MissingNode extends Ex {
+
+
+        MissingNode(Cursor cursor, String needle, int position, NodeList childNodes) {
+            this(cursor, needle, position, names(childNodes));
         }
 
-        private NodeCursor to(String tagName) throws Ex {
-            final Optional<Node> found = findSingleNode(tagName);
+        MissingNode(Cursor cursor, String needle, NodeList childNodes) {
+            this(cursor, needle, names(childNodes));
+        }
 
-            if (found.isPresent()) {
-                final List<NodeCursor> newAncestorList = newAncestorList();
-                return new NodeCursor(document, newAncestorList, found.get(), 0);
-            } else {
-                throw new MissingNode(this, tagName, node.getChildNodes());
-            }
+        private MissingNode(Cursor cursor, String needle, int position, String[] childNames) {
+            super(cursor, () -> "Unable to find '" + needle + "' with index " + position + " - Did you mean: " + summarize(childNames) + "?", null);
         }
 
-        private Optional<Node> findSingleNode(String tagName) throws Ambiguous {
-            Node found = null;
+        private MissingNode(Cursor cursor, String needle, String[] childNames) {
+            super(cursor, () -> "Unable to find '" + needle + "' - Did you mean: " + summarize(childNames) + "?", null);
+        }
 
-            final NodeList childNodes = node.getChildNodes();
-            for (int i = 0; i < childNodes.getLength(); i++) {
-                final Node childNode = childNodes.item(i);
+        MissingNode(Cursor cursor, String needle, int position, Supplier<Set<String>> childNames) {
+            super(cursor, () -> "Unable to find '" + needle + "' with index " + position + " - Did you mean: " + summarize(childNames.get()) + "?", null);
+        }
 
-                if (isNamed(childNode, tagName)) {
-                    if (found != null) {
-                        throw new Ambiguous(this, tagName);
-                    } else {
-                        found = childNode;
-                    }
-                }
-            }
+        MissingNode(Cursor cursor, String needle, Supplier<Set<String>> childNames) {
+            super(cursor, () -> "Unable to find '" + needle + "' - Did you mean: " + summarize(childNames.get()) + "?", null);
+        }
 
-            return Optional.ofNullable(found);
+        MissingNode(Cursor cursor, String needle) {
+            super(cursor, "Unable to find '" + needle + "'");
         }
 
-        private boolean isNamed(Node childNode, String needle) {
-            String nodeName = childNode.getNodeName();
-            String localName = childNode.getLocalName();
+        /**
+         * Read while the document is still owned by the throwing thread, the live
+         * node list may have changed or moved on to another thread by the time
+         * the message is built.
+         */
+        private static String[] names(NodeList childNodes) {
+            final String[] names = new String[childNodes.getLength()];
+            for (int i = 0; i < names.length; i++) {
+                final Node item = childNodes.item(i);
+                final String name = item.getLocalName();
+
+                names[i] = name != null ? name : item.getNodeName();
+            }
 
-            return (nodeName != null && nodeName.equalsIgnoreCase(needle)) || (localName != null && localName.equalsIgnoreCase(needle));
+            return names;
         }
 
-        @Override
-        public Cursor to(int position, String tagName) throws MissingNode {
-            int count = 0;
-            final NodeList childNodes = node.getChildNodes();
-            for (int i = 0; i < childNodes.getLength(); i++) {
-                final Node childNode = childNodes.item(i);
+        private static String summarize(String[] childNames) {
+            return summarize(new TreeSet<>(Arrays.asList(childNames)));
+        }
 
-                if (isNamed(childNode, tagName)) {
-                    count++;
+        private static String summarize(Set<String> names) {
+            StringJoiner joiner = new StringJoiner(", ");
 
-                    if (count == position + 1) {
-                        final List<NodeCursor> newAncestorList = newAncestorList();
-                        return new NodeCursor(document, newAncestorList, childNode, position);
-                    }
+            for (String name : names) {
+                if (name != null) {
+                    joiner.add(name);
                 }
             }
 
-            throw new MissingNode(this, tagName, position, childNodes);
+            return joiner.toString();
         }
+    }
 
-        private List<NodeCursor> newAncestorList() {
-            final List<NodeCursor> newAncestorList = new ArrayList<>(ancestors);
-            newAncestorList.add(this);
+    public static class OutsideProjection extends Ex {
 
-            return newAncestorList;
+        OutsideProjection(Cursor cursor, String what, Projection projection) {
+            super(cursor, () -> what + " is outside the projection " + projection, null);
         }
 
-        @Override
-        public int count(String tagName) {
-            int count = 0;
-            final NodeList childNodes = node.getChildNodes();
-            for (int i = 0; i < childNodes.getLength(); i++) {
-                final Node childNode = childNodes.item(i);
+    }
 
-                if (isNamed(childNode, tagName)) {
-                    count++;
-                }
-            }
+    public static class Overloaded extends Ex {
 
-            return count;
+        Overloaded(RejectedExecutionException cause) {
+            super("Rejected by the executor - " + cause.getMessage(), cause);
         }
 
-        @Override
-        public void remove() throws Ex {
-            node.getParentNode().removeChild(node);
+    }
+
+    public static class Ambiguous extends Ex {
+        Ambiguous(Cursor cursor, String needle) {
+            super(cursor, "Expected to find a single instance of " + needle);
         }
 
-        @Override
-        public void removeChildren(Predicate<Cursor> predicate) throws Ex {
-            NodeList childNodes = node.getChildNodes();
-            List<Cursor> toBeRemoved = new ArrayList<>();
+        Ambiguous(Cursor cursor) {
+            super(cursor, "Predicate matched more then one child node");
+        }
+    }
 
-            for (int i = 0; i < childNodes.getLength(); i++) {
-                Node childNode = childNodes.item(i);
-                Cursor cursor = new NodeCursor(document, ancestors, childNode, i);
+    public enum Feature {
 
-                if (predicate.test(cursor)) {
-                    toBeRemoved.add(cursor);
-                }
+        DUMP_INDENTED_XML {
+            @Override
+            void applyTo(Transformer transformer, Document document) {
+                transformer.setOutputProperty(INDENT, "yes");
+                transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
             }
+        },
 
-            for (Cursor cursor : toBeRemoved) {
-                cursor.remove();
+        DUMP_WITHOUT_XML_DECLARATION {
+            @Override
+            void applyTo(Transformer transformer, Document document) {
+                transformer.setOutputProperty(OMIT_XML_DECLARATION, "yes");
             }
-        }
+        },
 
-        @Override
-        public <R> R extract(Class<R> type) throws Ex {
-            final Extractor<R> extractor = extractorFor(type);
-            return extract(extractor);
-        }
+        RETAIN_DTD {
+            @Override
+            boolean isDocumentSpecific() {
+                return true;
+            }
 
-        @Override
-        public <R> List<R> extractCollection(String needle, Class<R> type) throws Ex {
-            final Extractor<R> extractor = extractorFor(type);
-            return extractCollection(needle, extractor);
-        }
+            @Override
+            void applyTo(Transformer t, Document document) {
+                DocumentType documentType = document.getDoctype();
+                if (documentType != null) {
+                    if (documentType.getSystemId() != null) {
+                        t.setOutputProperty(OutputKeys.DOCTYPE_SYSTEM, documentType.getSystemId());
+                    }
+                    if (documentType.getPublicId() != null) {
+                        t.setOutputProperty(OutputKeys.DOCTYPE_PUBLIC, documentType.getPublicId());
+                    }
+                }
+            }
+        };
 
-        @SuppressWarnings("unchecked")
-        private <R> Extractor<R> extractorFor(Class<R> type) throws NoExtractor {
-            final Extractor<R> extractor = (Extractor<R>) extractors.get(type);
+        abstract void applyTo(Transformer t, Document document);
 
-            if (extractor == null) {
-                throw new NoExtractor(this, type);
-            } else {
-                return extractor;
-            }
+        /**
+         * Features depending on the document can't be applied up front to pooled transformers.
+         */
+        boolean isDocumentSpecific() {
+            return false;
         }
 
-        @Override
-        public <R> R extract(Extractor<R> extractor) throws Ex {
-            return extractor.transform(this);
-        }
+    }
 
+    /**
+     * Paths of the nodes to build when parsing, see {@link NX#projection(String...)}.
+     * Compiled once and safe to share between threads.
+     */
+    public static final class Projection {
 
-        @Override
-        public <R> List<R> extractCollection(String needle, final Extractor<R> extractor) throws Ex {
-            final List<R> result = new ArrayList<>();
+        private final List<String> paths;
+        final ProjectionFilter.Step root;
 
-            iterateCollection(needle, cursor -> {
-                final R converted = cursor.extract(extractor);
-                result.add(converted);
-            });
+        private Projection(List<String> paths) {
+            this.paths = Collections.unmodifiableList(paths);
+            this.root = ProjectionFilter.Step.compile(paths);
+        }
 
-            return result;
+        public List<String> paths() {
+            return paths;
         }
 
         @Override
-        public void iterateCollection(String needle, Iterator iterator) throws Ex {
-            final NodeList childNodes = node.getChildNodes();
+        public String toString() {
+            return paths.toString();
+        }
 
-            int count = 0;
-            for (int i = 0; i < childNodes.getLength(); i++) {
-                final Node childNode = childNodes.item(i);
+    }
 
-                if (isNamed(childNode, needle)) {
-                    final List<NodeCursor> newAncestorList = newAncestorList();
-                    final Cursor cursor = new NodeCursor(document, newAncestorList, childNode, count++);
-                    iterator.on(cursor);
-                }
-            }
-        }
+    /**
+     * Navigation steps compiled once and reused, typically kept in a static field.
+     * Names are case folded up front, so each step is a single lookup among the names of the document.
+     *
+     * <pre>
+     * private static final NX.Path ORDER = NX.path("Envelope", "Body", "GetOrderResponse").to(0, "Order");
+     * </pre>
+     */
+    public static final class Path {
 
+        static final int SINGLE = -1;
 
-        @Override
-        public <I> void insertCollection(String prototypeName, Iterable<I> inputCollection, Inserter<I> inserter) throws Ex {
-            final Optional<Node> prototypeNode = findSingleNode(prototypeName);
+        private final String[] names;
 
-            if (prototypeNode.isPresent()) {
-                Node originalPrototype = prototypeNode.get();
-                Node prototype = originalPrototype.cloneNode(true);
+        // Case folded up front, so looking them up in a document is a single hash lookup
+        private final String[] folded;
 
-                int count = 0;
-                for (I input : inputCollection) {
-                    final Node inputNode = prototype.cloneNode(true);
-                    final Cursor inputCursor = new NodeCursor(document, newAncestorList(), inputNode, count++);
-                    inserter.insert(inputCursor, input);
+        // SINGLE unless the step picks a node by position
+        private final int[] positions;
 
-                    node.insertBefore(inputNode, originalPrototype);
+        private Path(String[] names, int[] positions) {
+            this.names = names;
+            this.positions = positions;
+            this.folded = new String[names.length];
+
+            for (int i = 0; i < names.length; i++) {
+                if (names[i] == null) {
+                    throw new IllegalArgumentException("Path names can't be null");
                 }
 
-                node.removeChild(originalPrototype);
-            } else {
-                throw new MissingNode(this, "Expected a node named " + prototypeName + " to be used as a prototype");
+                folded[i] = NamePool.fold(names[i]);
             }
         }
 
-        @Override
-        public <R> void update(R payload, Inserter<R> inserter) throws Ex {
-            inserter.insert(this, payload);
+        /**
+         * @return New path continuing to the only child with the given name
+         */
+        public Path to(String name) {
+            return append(SINGLE, name);
         }
 
-        @Override
-        public Attribute attr(String needle) throws Ambiguous, MissingAttribute {
-            final Optional<Node> attribute = findAttribute(needle);
-
-            if (attribute.isPresent()) {
-                return new RealAttribute(attribute.get());
-            } else {
-                throw new MissingAttribute(this, needle);
+        /**
+         * @return New path continuing to the child at the given position among children with the given name
+         */
+        public Path to(int position, String name) {
+            if (position < 0) {
+                throw new IllegalArgumentException("Position can't be negative: " + position);
             }
+
+            return append(position, name);
         }
 
-        @Override
-        public Attribute optionalAttr(String needle) throws Ambiguous {
-            final Optional<Node> attribute = findAttribute(needle);
+        private Path append(int position, String name) {
+            final String[] appendedNames = Arrays.copyOf(names, names.length + 1);
+            final int[] appendedPositions = Arrays.copyOf(positions, positions.length + 1);
 
-            if (attribute.isPresent()) {
-                return new RealAttribute(attribute.get());
-            } else {
-                return new NullAttribute();
-            }
+            appendedNames[names.length] = name;
+            appendedPositions[positions.length] = position;
+
+            return new Path(appendedNames, appendedPositions);
         }
 
-        @Override
-        public boolean hasAttr(String attributeName) {
-            return findAttribute(attributeName).isPresent();
+        int length() {
+            return names.length;
         }
 
-        @Override
-        public boolean hasChildNode(String name) {
-            return findSingleNode(name).isPresent();
+        String name(int step) {
+            return names[step];
+        }
+
+        String folded(int step) {
+            return folded[step];
+        }
+
+        int position(int step) {
+            return positions[step];
         }
 
         @Override
-        public Cursor require(Predicate<Cursor> predicate) throws Ex {
-            Cursor match = findNode(predicate);
+        public String toString() {
+            final StringJoiner joiner = new StringJoiner(" >> ");
 
-            if (match == null) {
-                throw new MissingNode(this, "predicate");
-            } else {
-                return match;
+            for (int i = 0; i < names.length; i++) {
+                joiner.add(positions[i] == SINGLE ? names[i] : names[i] + "[" + positions[i] + "]");
             }
+
+            return joiner.toString();
         }
 
-        private NodeCursor findNode(Predicate<Cursor> predicate) {
-            final NodeList childNodes = node.getChildNodes();
-            NodeCursor match = null;
+    }
 
-            int count = 0;
-            for (int i = 0; i < childNodes.getLength(); i++) {
-                final Node childNode = childNodes.item(i);
-                String name = childNode.getLocalName();
+    /**
+     * Bounded executor for asynchronous parsing, extraction and dumping, see
+     * {@link NX#registerXmlExecutor(XmlExecutor)}. Threads are daemons and stop when idle.
+     * Once the queue is full new tasks are handled according to the rejection policy.
+     */
+    public static final class XmlExecutor implements Executor, AutoCloseable {
 
-                if (name == null) {
-                    name = childNode.getNodeName();
-                }
+        public enum RejectionPolicy {
 
-                if (name != null) {
-                    final List<NodeCursor> newAncestorList = newAncestorList();
-                    final NodeCursor cursor = new NodeCursor(document, newAncestorList, childNode, count++);
+            /**
+             * Fail the new task with {@link Overloaded}
+             */
+            FAIL,
 
-                    if (predicate.test(cursor)) {
-                        if (match != null) {
-                            throw new Ambiguous(this);
-                        }
+            /**
+             * Run the new task in the submitting thread, slowing down the producer
+             */
+            CALLER_RUNS,
 
-                        match = cursor;
-                    }
-                }
-            }
+            /**
+             * Fail the oldest queued task with {@link Overloaded} to make room for the new one
+             */
+            DISCARD_OLDEST
 
-            return match;
         }
 
-        private Optional<Node> findAttribute(String needle) throws Ambiguous {
-            NamedNodeMap attributes = node.getAttributes();
+        private static final AtomicInteger threadCount = new AtomicInteger();
 
-            for (int i = 0; i < attributes.getLength(); i++) {
-                final Node attribute = attributes.item(i);
+        private final ThreadPoolExecutor pool;
 
-                if (isNamed(attribute, needle)) {
-                    return Optional.of(attribute);
-                }
+        public XmlExecutor(int threads, int queueCapacity, RejectionPolicy policy) {
+            if (threads < 1 || queueCapacity < 1) {
+                throw new IllegalArgumentException("Threads and queue capacity must be greater then zero");
+            }
+            if (policy == null) {
+                throw new IllegalArgumentException("Rejection policy can't be null");
             }
 
-            return Optional.empty();
-        }
+            pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), XmlExecutor::newThread, handler(policy));
 
-        @Override
-        public String text() {
-            return node.getTextContent();
+            pool.allowCoreThreadTimeOut(true);
         }
 
-        @Override
-        public String name() {
-            return node.getNodeName();
+        static XmlExecutor defaults() {
+            final int threads = Runtime.getRuntime().availableProcessors();
+            return new XmlExecutor(threads, threads * 64, RejectionPolicy.FAIL);
         }
 
         @Override
-        public String toString() {
-            return describePath();
+        public void execute(Runnable command) {
+            pool.execute(command);
         }
 
+        /**
+         * @return Number of tasks waiting for a thread
+         */
+        public int queued() {
+            return pool.getQueue().size();
+        }
 
+        /**
+         * Queued tasks are still completed, new tasks are rejected.
+         */
         @Override
-        public String describePath() {
-            StringBuilder builder = new StringBuilder();
+        public void close() {
+            pool.shutdown();
+        }
 
-            for (NodeCursor ancestor : ancestors) {
-                builder.append(ancestor.name());
+        private static Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "nmxmlp-xml-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
 
-                if (ancestor.index > 0) {
-                    builder.append("[")
-                        .append(ancestor.index)
-                        .append("]");
+            return thread;
+        }
+
+        private static RejectedExecutionHandler handler(RejectionPolicy policy) {
+            return (task, pool) -> {
+                if (pool.isShutdown()) {
+                    throw new RejectedExecutionException("Executor has been closed");
                 }
 
-                builder.append(" >> ");
-            }
+                switch (policy) {
+                    case CALLER_RUNS:
+                        task.run();
+                        break;
 
-            builder.append(name());
+                    case DISCARD_OLDEST:
+                        final Runnable oldest = pool.getQueue().poll();
+                        if (oldest instanceof AsyncTask) {
+                            ((AsyncTask<?>) oldest).reject(new RejectedExecutionException("Discarded to make room for a newer task"));
+                        }
 
-            if (index > 0) {
-                builder.append("[")
-                    .append(index)
-                    .append("]");
-            }
+                        pool.execute(task);
+                        break;
 
-            return builder.toString();
+                    default:
+                        throw new RejectedExecutionException("Too many queued tasks");
+                }
+            };
         }
 
-        @Override
-        public Cursor text(String updatedText) {
-            node.setTextContent(updatedText);
-            return this;
-        }
+    }
 
-        @Override
-        public String dumpXml(Charset charset, Feature... features) throws Ex {
-            ByteArrayOutputStream output = new ByteArrayOutputStream();
-            dumpXml(output, charset, features);
+    /**
+     * Measurements reported by an {@link NX} instance, see {@link NX#registerMetrics(Metrics)}.
+     * Methods are called by the thread doing the work, so implementations must be thread safe
+     * and should be cheap. All methods do nothing by default.
+     * <p>
+     * Records read with {@link NX#stream(InputStream, String, String...)} aren't reported.
+     */
+    public interface Metrics {
 
-            return new String(output.toByteArray(), charset);
-        }
+        Metrics NONE = new Metrics() { };
 
-        @Override
-        public void dumpXml(OutputStream output, Charset charset, Feature... features) throws Ex {
-            try {
-                Transformer transformer = transformerFactory.newTransformer();
-                transformer.setOutputProperty(OutputKeys.ENCODING, charset.name());
+        /**
+         * @param bytes read from the stream, the platform encoding is used for strings
+         * @param nanos spent parsing
+         * @param nodes in the document, not counting attributes
+         */
+        default void parsed(long bytes, long nanos, int nodes) { }
 
-                for (Feature feature : features) {
-                    feature.applyTo(transformer, document);
-                }
+        /**
+         * @param bytes written to the output, characters when dumping to a writer
+         * @param nanos spent dumping
+         */
+        default void dumped(long bytes, long nanos) { }
 
-                StreamResult result = new StreamResult(output);
-                transformer.transform(new DOMSource(node), result);
-            } catch (Exception ex) {
-                throw new Ex(this, "Technical difficulties", ex);
-            }
-        }
+        /**
+         * Called whenever {@link MissingNode} is thrown, not when optional navigation misses.
+         */
+        default void missingNode() { }
+
+        /**
+         * Called whenever {@link Ambiguous} is thrown.
+         */
+        default void ambiguous() { }
 
     }
 
+    /**
+     * Metrics recorded in histograms, ready to be scraped by whatever monitoring you're using.
+     */
+    public static final class HistogramMetrics implements Metrics {
 
-    public static class Ex extends RuntimeException {
+        private final Histogram parsedBytes = new Histogram();
+        private final Histogram parseNanos = new Histogram();
+        private final Histogram parsedNodes = new Histogram();
+        private final Histogram dumpedBytes = new Histogram();
+        private final Histogram dumpNanos = new Histogram();
+        private final LongAdder missingNodes = new LongAdder();
+        private final LongAdder ambiguous = new LongAdder();
 
-        Ex(Cursor cursor, String message) {
-            super(cursor.describePath() + " -- " + message);
+        @Override
+        public void parsed(long bytes, long nanos, int nodes) {
+            parsedBytes.record(bytes);
+            parseNanos.record(nanos);
+            parsedNodes.record(nodes);
         }
 
-        Ex(Cursor cursor, String message, Throwable cause) {
-            super(cursor.describePath() + " -- " + message, cause);
+        @Override
+        public void dumped(long bytes, long nanos) {
+            dumpedBytes.record(bytes);
+            dumpNanos.record(nanos);
         }
 
-        Ex(String message, Throwable cause) {
-            super(message, cause);
+        @Override
+        public void missingNode() {
+            missingNodes.increment();
         }
 
-    }
+        @Override
+        public void ambiguous() {
+            ambiguous.increment();
+        }
 
-    public static class NoExtractor extends Ex {
+        public Histogram parsedBytes() {
+            return parsedBytes;
+        }
 
-        NoExtractor(Cursor cursor, Class<?> type) {
-            super(cursor, "No extractor for: " + type.getName());
+        public Histogram parseNanos() {
+            return parseNanos;
         }
 
-    }
+        public Histogram parsedNodes() {
+            return parsedNodes;
+        }
 
-    public static class MissingAttribute extends Ex {
+        public Histogram dumpedBytes() {
+            return dumpedBytes;
+        }
 
-        MissingAttribute(Cursor cursor, String attributeName) {
-            super(cursor, "Unable to find attribute named '" + attributeName + "'");
+        public Histogram dumpNanos() {
+            return dumpNanos;
         }
 
-    }
+        public long missingNodeCount() {
+            return missingNodes.sum();
+        }
 
-    public static class MissingNode extends Ex {
+        public long ambiguousCount() {
+            return ambiguous.sum();
+        }
 
+    }
 
-        MissingNode(Cursor cursor, String needle, int position, NodeList childNodes) {
-            super(cursor, "Unable to find '" + needle + "' with index " + position + " - Did you mean: " + summarize(childNodes) + "?");
-        }
+    /**
+     * Lock free histogram with a bucket per power of two, so percentiles are only accurate
+     * within a factor of two. Values are never dropped or decayed.
+     * <p>
+     * Reading while values are being recorded is safe, but the count, sum and buckets
+     * might not agree on exactly how many values have been recorded.
+     */
+    public static final class Histogram {
 
-        MissingNode(Cursor cursor, String needle, NodeList childNodes) {
-            super(cursor, "Unable to find '" + needle + "' - Did you mean: " + summarize(childNodes) + "?");
-        }
+        /**
+         * Bucket 0 holds zero (and negative values), bucket n holds values from 2^(n-1) to 2^n - 1.
+         */
+        public static final int BUCKETS = 64;
 
-        MissingNode(Cursor cursor, String needle) {
-            super(cursor, "Unable to find '" + needle + "'");
-        }
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
 
-        private static String summarize(NodeList childNodes) {
-            final Set<String> names = new TreeSet<>();
-            for (int i = 0; i < childNodes.getLength(); i++) {
-                final Node item = childNodes.item(i);
-                String name = item.getLocalName();
+        public void record(long value) {
+            final long recorded = Math.max(value, 0);
 
-                if (name == null) {
-                    name = item.getNodeName();
-                }
+            buckets.incrementAndGet(bucket(recorded));
+            count.increment();
+            sum.add(recorded);
 
-                if (name != null) {
-                    names.add(name);
-                }
+            long currentMax = max.get();
+            while (recorded > currentMax && !max.compareAndSet(currentMax, recorded)) {
+                currentMax = max.get();
             }
+        }
 
-            StringJoiner joiner = new StringJoiner(", ");
+        public long count() {
+            return count.sum();
+        }
 
-            for (String name : names) {
-                if (name != null) {
-                    joiner.add(name);
-                }
-            }
+        public long sum() {
+            return sum.sum();
+        }
 
-            return joiner.toString();
+        public long max() {
+            return max.get();
         }
-    }
 
-    public static class Ambiguous extends Ex {
-        Ambiguous(Cursor cursor, String needle) {
-            super(cursor, "Expected to find a single instance of " + needle);
+        public double mean() {
+            final long count = count();
+            return count > 0 ? (double) sum() / count : 0;
         }
 
-        Ambiguous(Cursor cursor) {
-            super(cursor, "Predicate matched more then one child node");
+        /**
+         * @param bucket from 0 to BUCKETS - 1
+         * @return Number of values recorded in the bucket
+         */
+        public long bucketCount(int bucket) {
+            return buckets.get(bucket);
         }
-    }
 
-    public enum Feature {
+        /**
+         * @return Largest value going into the bucket
+         */
+        public static long bucketUpperBound(int bucket) {
+            return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
 
-        DUMP_INDENTED_XML {
-            @Override
-            void applyTo(Transformer transformer, Document document) {
-                transformer.setOutputProperty(INDENT, "yes");
-                transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+        /**
+         * @param quantile from 0 to 1, 0.99 for the 99th percentile
+         * @return Upper bound of the bucket holding the percentile, but never more than max
+         */
+        public long percentile(double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("Quantile must be between 0 and 1, not " + quantile);
             }
-        },
 
-        DUMP_WITHOUT_XML_DECLARATION {
-            @Override
-            void applyTo(Transformer transformer, Document document) {
-                transformer.setOutputProperty(OMIT_XML_DECLARATION, "yes");
+            long total = 0;
+            final long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
             }
-        },
 
-        RETAIN_DTD {
-            @Override
-            void applyTo(Transformer t, Document document) {
-                DocumentType documentType = document.getDoctype();
-                if (documentType != null) {
-                    if (documentType.getSystemId() != null) {
-                        t.setOutputProperty(OutputKeys.DOCTYPE_SYSTEM, documentType.getSystemId());
-                    }
-                    if (documentType.getPublicId() != null) {
-                        t.setOutputProperty(OutputKeys.DOCTYPE_PUBLIC, documentType.getPublicId());
-                    }
+            final long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+
+                if (seen >= rank && seen > 0) {
+                    return Math.min(bucketUpperBound(i), max());
                 }
             }
-        };
 
-        abstract void applyTo(Transformer t, Document document);
+            return 0;
+        }
+
+        private static int bucket(long value) {
+            return 64 - Long.numberOfLeadingZeros(value);
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count() + ", mean=" + mean() + ", p50=" + percentile(0.5) + ", p99=" + percentile(0.99) + ", max=" + max();
+        }
 
     }
 
@@ -1078,7 +4367,54 @@ public class NX {
 
         IGNORE_WHITESPACE,
 
-        VALIDATING
+        VALIDATING,
+
+        /**
+         * Parse documents into a compact, read only tree instead of W3C DOM.
+         * Uses a fraction of the memory, but cursors can't modify the document.
+         * Any number of threads can navigate the same document at once.
+         */
+        COMPACT_TREE,
+
+        /**
+         * Index child nodes by name the first time a node is queried, making to, count and
+         * hasChildNode constant time for nodes with lots of children. Indexes are rebuilt
+         * after the document has been modified.
+         */
+        CHILD_INDEX,
+
+        /**
+         * Dump xml using a built in streaming serializer instead of javax.xml.transform.
+         * Produces the same bytes as the transformer bundled with Java 17. The transformers
+         * of other versions differ in a few places:
+         * <ul>
+         *     <li>Java 8 doesn't indent mixed content or whitespace only text, where Java 9 and
+         *     later write lines holding nothing but indentation.</li>
+         *     <li>Java 8 ignores xml:space and Java 11 puts CDATA sections on lines of their own
+         *     when indenting.</li>
+         *     <li>Java 21 writes supplementary characters as is in UTF-16 output and inside CDATA
+         *     sections, where Java 17 writes character references. It also writes references
+         *     for ISO-8859-1 characters like é in UTF-16BE output.</li>
+         * </ul>
+         */
+        NATIVE_DUMP,
+
+        /**
+         * Skip filling in stack traces for exceptions thrown by cursors, and only build
+         * their messages, including the "Did you mean" suggestions, the first time
+         * getMessage is called. Useful when missing nodes are expected and handled.
+         * The path and child names are captured when the exception is thrown, so the
+         * message is safe to read from any thread and describes the document as it was then.
+         */
+        LIGHTWEIGHT_EXCEPTIONS,
+
+        /**
+         * When called from a virtual thread, documents are read into memory before a pooled
+         * parser is borrowed, and dumped to memory before being written to the output stream.
+         * Pooled parsers and transformers are then never held while blocked on I/O. Takes
+         * effect on Java 21 and newer, through the multi release jar.
+         */
+        VIRTUAL_THREADS
 
     }
 
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps names to integer codes, ignoring case. Two names get the same code if and only if
+ * they're equal according to {@link String#equalsIgnoreCase(String)}, so matching a name
+ * becomes a single int comparison once the needle has been resolved.
+ * <p>
+ * Each document has its own pool holding the names found in it, so names read from
+ * untrusted input never outlive the document. Needles are only looked up, never added.
+ */
+final class NamePool {
+
+    static final int UNKNOWN = -1;
+
+    // Both case folded names and the spelling they were first seen with
+    private final ConcurrentMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextCode = new AtomicInteger();
+
+    /**
+     * @return Code for the name, adding it to the pool if it hasn't been seen before
+     */
+    int code(String name) {
+        final Integer code = codes.get(name);
+        if (code != null) {
+            return code;
+        }
+
+        final String folded = fold(name);
+        final int foldedCode = codes.computeIfAbsent(folded, key -> nextCode.getAndIncrement());
+
+        if (!folded.equals(name)) {
+            codes.putIfAbsent(name, foldedCode);
+        }
+
+        return foldedCode;
+    }
+
+    /**
+     * @return Code for the name or UNKNOWN if no name like it has been added to the pool
+     */
+    int lookup(String name) {
+        Integer code = codes.get(name);
+        if (code == null) {
+            code = codes.get(fold(name));
+        }
+
+        return code != null ? code : UNKNOWN;
+    }
+
+    /**
+     * Same folding as equalsIgnoreCase, character by character.
+     */
+    static String fold(String name) {
+        final int length = name.length();
+
+        for (int i = 0; i < length; i++) {
+            final char c = name.charAt(i);
+
+            if (fold(c) != c) {
+                final char[] folded = name.toCharArray();
+                for (int j = i; j < length; j++) {
+                    folded[j] = fold(folded[j]);
+                }
+
+                return new String(folded);
+            }
+        }
+
+        return name;
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+}
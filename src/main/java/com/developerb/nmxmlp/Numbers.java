@@ -0,0 +1,185 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+/**
+ * Parses numbers straight from character data, without creating strings or boxing.
+ * Surrounding xml whitespace is ignored.
+ * <p>
+ * Doubles with at most 15 significant digits and a small exponent are calculated
+ * exactly from the digits, anything else is left to {@link Double#parseDouble(String)}.
+ */
+final class Numbers {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Largest mantissa where every smaller integer can be represented by a double
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private Numbers() {
+    }
+
+    /**
+     * @throws NumberFormatException if the text isn't an integer between min and max
+     */
+    static long parseLong(CharSequence text, int start, int end, long min, long max) {
+        while (start < end && isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+
+        int index = start;
+        boolean negative = false;
+
+        if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+            negative = text.charAt(index) == '-';
+            index++;
+        }
+
+        if (index == end) {
+            throw invalid(text, start, end);
+        }
+
+        // Accumulated as a negative number, like Long.parseLong, to reach Long.MIN_VALUE
+        final long limit = negative ? min : -max;
+        final long multiplyLimit = limit / 10;
+        long result = 0;
+
+        for (; index < end; index++) {
+            final int digit = text.charAt(index) - '0';
+
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                throw invalid(text, start, end);
+            }
+
+            result *= 10;
+
+            if (result < limit + digit) {
+                throw invalid(text, start, end);
+            }
+
+            result -= digit;
+        }
+
+        return negative ? result : -result;
+    }
+
+    /**
+     * @throws NumberFormatException if the text isn't a number
+     */
+    static double parseDouble(CharSequence text, int start, int end) {
+        while (start < end && isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+
+        int index = start;
+        boolean negative = false;
+
+        if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+            negative = text.charAt(index) == '-';
+            index++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean fraction = false;
+
+        for (; index < end; index++) {
+            final char c = text.charAt(index);
+
+            if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c >= '0' && c <= '9') {
+                digits++;
+
+                if (mantissa != 0 || c != '0') {
+                    mantissa = mantissa * 10 + (c - '0');
+                    significantDigits++;
+                }
+
+                if (fraction) {
+                    exponent--;
+                }
+
+                if (significantDigits > 15) {
+                    return fallback(text, start, end);
+                }
+            } else {
+                break;
+            }
+        }
+
+        if (index < end && digits > 0 && (text.charAt(index) == 'e' || text.charAt(index) == 'E')) {
+            index++;
+
+            boolean negativeExponent = false;
+            if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+                negativeExponent = text.charAt(index) == '-';
+                index++;
+            }
+
+            int explicit = 0;
+            int exponentDigits = 0;
+
+            for (; index < end && exponentDigits < 4; index++, exponentDigits++) {
+                final int digit = text.charAt(index) - '0';
+
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+
+                explicit = explicit * 10 + digit;
+            }
+
+            if (exponentDigits == 0) {
+                return fallback(text, start, end);
+            }
+
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+
+        if (index != end || digits == 0 || mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+            return fallback(text, start, end);
+        }
+
+        // Both the mantissa and the power of ten are exact, so there's only a single rounding
+        final double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+    private static double fallback(CharSequence text, int start, int end) {
+        return Double.parseDouble(text.subSequence(start, end).toString());
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static NumberFormatException invalid(CharSequence text, int start, int end) {
+        return new NumberFormatException("For input string: \"" + text.subSequence(start, end) + "\"");
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock free pool of expensive objects like document builders.
+ * Borrowing never blocks, a new instance is created when the pool is empty
+ * and instances released into a full pool are simply dropped.
+ * <p>
+ * Idle instances live in a fixed number of slots shared by all threads rather than
+ * per thread caches, so a large number of virtual threads doesn't multiply them.
+ */
+final class Pool<T> {
+
+    static final int DEFAULT_CAPACITY = Runtime.getRuntime().availableProcessors() * 2;
+
+    interface Factory<T> {
+
+        T create() throws Exception;
+
+    }
+
+    private final AtomicReferenceArray<T> idle;
+    private final Factory<T> factory;
+
+    Pool(int capacity, Factory<T> factory) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be greater then zero");
+        }
+
+        this.idle = new AtomicReferenceArray<>(capacity);
+        this.factory = factory;
+    }
+
+    T borrow() throws Exception {
+        final int capacity = idle.length();
+        final int start = ThreadLocalRandom.current().nextInt(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+            final int slot = (start + i) % capacity;
+
+            if (idle.get(slot) != null) {
+                final T instance = idle.getAndSet(slot, null);
+                if (instance != null) {
+                    return instance;
+                }
+            }
+        }
+
+        return factory.create();
+    }
+
+    /**
+     * The caller is responsible for resetting the instance before it's handed back.
+     */
+    void release(T instance) {
+        final int capacity = idle.length();
+        final int start = ThreadLocalRandom.current().nextInt(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+            if (idle.compareAndSet((start + i) % capacity, null, instance)) {
+                return;
+            }
+        }
+    }
+
+}
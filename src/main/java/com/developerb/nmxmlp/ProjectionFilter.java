@@ -0,0 +1,363 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ext.DefaultHandler2;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Passes on the parts of a document within a projection to a compact tree builder,
+ * see {@link NX.Projection}. Subtrees outside the projection are read by the parser,
+ * but never reach the builder.
+ * <p>
+ * Projected elements are built with all their descendants and attributes. Elements on
+ * the way to them are only built with the children and attributes in the projection,
+ * namespace declarations and nothing else.
+ * <p>
+ * The projection is picked once the name of the document element is known, documents
+ * without a projection are passed on in full.
+ */
+final class ProjectionFilter extends DefaultHandler2 {
+
+    private final CompactTree.Builder builder;
+    private final Function<String, NX.Projection> projections;
+
+    // Known once the document element has been reached
+    private String rootName;
+    private NX.Projection projection;
+    private Step root;
+
+    // Elements on the way to projected elements, innermost first
+    private final Deque<Step[]> open = new ArrayDeque<>();
+    private final Map<Integer, Step[]> skeleton = new HashMap<>();
+
+    // Depth within a subtree that is skipped or built in full
+    private int skipped = 0;
+    private int whole = 0;
+
+    /**
+     * @param projections by local name of the document element, returning null to build the whole document
+     */
+    ProjectionFilter(CompactTree.Builder builder, Function<String, NX.Projection> projections) {
+        this.builder = builder;
+        this.projections = projections;
+    }
+
+    String rootName() {
+        return rootName;
+    }
+
+    /**
+     * @return Projection picked for the document, null if the whole document was built
+     */
+    NX.Projection projection() {
+        return projection;
+    }
+
+    /**
+     * @return Steps matched by each element on the way to projected elements, by node
+     */
+    Map<Integer, Step[]> skeleton() {
+        return skeleton;
+    }
+
+    @Override
+    public void startDTD(String name, String publicId, String systemId) {
+        builder.startDTD(name, publicId, systemId);
+    }
+
+    @Override
+    public void endDTD() {
+        builder.endDTD();
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        if (skipped > 0) {
+            skipped++;
+            return;
+        }
+
+        if (whole > 0) {
+            whole++;
+            builder.startElement(uri, localName, qName, attributes);
+            return;
+        }
+
+        if (rootName == null) {
+            rootName = localName;
+            projection = projections.apply(localName);
+
+            if (projection == null) {
+                whole = 1;
+                builder.startElement(uri, localName, qName, attributes);
+                return;
+            }
+
+            root = projection.root;
+        }
+
+        final Step[] steps = root.match(open.isEmpty() ? new Step[] { root } : open.peek(), localName, qName);
+
+        // The document element is always kept, even if nothing below it is projected
+        if (steps.length == 0 && !open.isEmpty()) {
+            skipped = 1;
+        } else if (Step.isWhole(steps)) {
+            whole = 1;
+            builder.startElement(uri, localName, qName, attributes);
+        } else {
+            builder.startElement(uri, localName, qName, projected(attributes, steps));
+            skeleton.put(builder.currentNode(), steps);
+            open.push(steps);
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        if (skipped > 0) {
+            skipped--;
+        } else if (whole > 0) {
+            whole--;
+            builder.endElement(uri, localName, qName);
+        } else {
+            open.pop();
+            builder.endElement(uri, localName, qName);
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (whole > 0) {
+            builder.characters(ch, start, length);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        if (whole > 0) {
+            builder.ignorableWhitespace(ch, start, length);
+        }
+    }
+
+    @Override
+    public void startCDATA() {
+        if (whole > 0) {
+            builder.startCDATA();
+        }
+    }
+
+    @Override
+    public void endCDATA() {
+        if (whole > 0) {
+            builder.endCDATA();
+        }
+    }
+
+    @Override
+    public void comment(char[] ch, int start, int length) {
+        if (whole > 0) {
+            builder.comment(ch, start, length);
+        }
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) {
+        if (whole > 0) {
+            builder.processingInstruction(target, data);
+        }
+    }
+
+    private Attributes projected(Attributes attributes, Step[] steps) {
+        final AttributesImpl projected = new AttributesImpl();
+
+        for (int i = 0; i < attributes.getLength(); i++) {
+            if (root.allowsAttribute(steps, attributes.getQName(i))) {
+                projected.addAttribute(attributes.getURI(i), attributes.getLocalName(i), attributes.getQName(i), attributes.getType(i), attributes.getValue(i));
+            }
+        }
+
+        return projected;
+    }
+
+
+    /**
+     * Node in a tree of projected paths. The root stands in for the document, its children
+     * are the accepted document elements and its attributes are projected on every element.
+     */
+    static final class Step {
+
+        private static final Step[] NONE = new Step[0];
+
+        // Names are lower case, either qualified or local just like cursor needles
+        private final Map<String, Step> children = new HashMap<>();
+        private final Set<String> attributes = new HashSet<>();
+        private Step wildcard;
+        private boolean whole;
+
+        /**
+         * @param paths like <code>Envelope/Body/&#42;/Order/Id</code>, <code>Envelope/Body/&#42;/Order/@currencyCode</code>
+         *              or just <code>@currencyCode</code> for an attribute of any element
+         */
+        static Step compile(List<String> paths) {
+            final Step root = new Step();
+
+            for (String path : paths) {
+                if (path == null || path.isEmpty()) {
+                    throw new IllegalArgumentException("Projected paths can't be empty");
+                }
+
+                final String[] segments = path.split("/", -1);
+                Step current = root;
+
+                for (int i = 0; i < segments.length; i++) {
+                    final String segment = segments[i];
+
+                    if (segment.isEmpty() || segment.indexOf('[') >= 0) {
+                        throw new IllegalArgumentException("Invalid projected path: " + path);
+                    } else if (segment.startsWith("@")) {
+                        if (i != segments.length - 1 || segment.length() == 1) {
+                            throw new IllegalArgumentException("Attributes must be the last step of a projected path: " + path);
+                        }
+
+                        current.attributes.add(lowerCase(localPart(segment.substring(1))));
+                        current = null;
+                        break;
+                    } else if (segment.equals("*")) {
+                        if (current.wildcard == null) {
+                            current.wildcard = new Step();
+                        }
+
+                        current = current.wildcard;
+                    } else {
+                        current = current.children.computeIfAbsent(lowerCase(segment), name -> new Step());
+                    }
+                }
+
+                if (current != null) {
+                    current.whole = true;
+                }
+            }
+
+            return root;
+        }
+
+        /**
+         * @return Steps matched by a child element of an element matching the given steps
+         */
+        Step[] match(Step[] steps, String localName, String qName) {
+            final String qualified = lowerCase(qName);
+            final String local = lowerCase(localName);
+
+            List<Step> matched = null;
+
+            for (Step step : steps) {
+                matched = add(matched, step.children.get(qualified));
+                matched = add(matched, qualified.equals(local) ? null : step.children.get(local));
+                matched = add(matched, step.wildcard);
+            }
+
+            return matched != null ? matched.toArray(NONE) : NONE;
+        }
+
+        static boolean isWhole(Step[] steps) {
+            for (Step step : steps) {
+                if (step.whole) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Prefixes are ignored, so this may allow a few children that were never built
+         */
+        static boolean allowsChild(Step[] steps, String needle) {
+            final String local = lowerCase(localPart(needle));
+
+            for (Step step : steps) {
+                if (step.wildcard != null) {
+                    return true;
+                }
+
+                for (String name : step.children.keySet()) {
+                    if (localPart(name).equals(local)) {
+                        return true;
+                    }
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Must be called on the root, namespace declarations are always allowed
+         */
+        boolean allowsAttribute(Step[] steps, String qName) {
+            if (qName.equals("xmlns") || qName.startsWith("xmlns:")) {
+                return true;
+            }
+
+            final String local = lowerCase(localPart(qName));
+            if (attributes.contains(local)) {
+                return true;
+            }
+
+            for (Step step : steps) {
+                if (step.attributes.contains(local)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private static List<Step> add(List<Step> matched, Step step) {
+            if (step == null) {
+                return matched;
+            }
+
+            final List<Step> result = matched != null ? matched : new ArrayList<>(2);
+            if (!result.contains(step)) {
+                result.add(step);
+            }
+
+            return result;
+        }
+
+        private static String localPart(String name) {
+            return name.substring(name.indexOf(':') + 1);
+        }
+
+        private static String lowerCase(String name) {
+            return name.toLowerCase(Locale.ROOT);
+        }
+
+    }
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Learns projections from the children, attributes and text cursors navigate to, one
+ * projection per name of the document element, see {@link NX#learnProjections(int)}.
+ * <p>
+ * Navigation is recorded in a tree of touched elements shared by all documents with the
+ * same document element. Once enough documents have been recorded the tree is compiled to
+ * a projection, and compiled again whenever a full parse has recorded something new.
+ */
+final class ProjectionLearner {
+
+    private final int documents;
+    private final ConcurrentMap<String, Learned> learned = new ConcurrentHashMap<>();
+
+    /**
+     * @param documents to record before projections are used
+     */
+    ProjectionLearner(int documents) {
+        if (documents < 1) {
+            throw new IllegalArgumentException("Must learn from at least one document");
+        }
+
+        this.documents = documents;
+    }
+
+    /**
+     * @param projections previously learned, by name of the document element, see {@link #projections()}
+     */
+    ProjectionLearner(int documents, Map<String, NX.Projection> projections) {
+        this(documents);
+
+        for (Map.Entry<String, NX.Projection> entry : projections.entrySet()) {
+            final Learned seeded = new Learned(localPart(entry.getKey()));
+
+            for (String path : entry.getValue().paths()) {
+                seeded.seed(path);
+            }
+
+            seeded.recorded.set(documents);
+            learned.put(key(entry.getKey()), seeded);
+        }
+    }
+
+    /**
+     * @return Projection for documents with the given document element, null while still learning
+     */
+    NX.Projection projectionFor(String rootName) {
+        final Learned document = learned.get(key(rootName));
+        return document != null && document.recorded.get() >= documents ? document.projection() : null;
+    }
+
+    /**
+     * @param fallback whether the document is parsed again after leaving the projection,
+     *                 these are always recorded
+     * @return Where navigation of the document element is recorded, null once done learning
+     */
+    Touched recording(String rootName, boolean fallback) {
+        final Learned document = learned.computeIfAbsent(key(rootName), key -> new Learned(rootName));
+
+        if (!fallback && document.recorded.get() >= documents) {
+            return null;
+        }
+
+        document.recorded.incrementAndGet();
+        return document.root;
+    }
+
+    /**
+     * @return Projections learned so far, by name of the document element
+     */
+    Map<String, NX.Projection> projections() {
+        final Map<String, NX.Projection> projections = new TreeMap<>();
+
+        for (Learned document : learned.values()) {
+            if (document.recorded.get() >= documents) {
+                projections.put(document.root.name, document.projection());
+            }
+        }
+
+        return Collections.unmodifiableMap(projections);
+    }
+
+    /**
+     * @return Where navigation of the given node is recorded, text and other character data
+     *         is recorded on the element containing it
+     */
+    static Touched touched(CompactTree tree, int node) {
+        if (node == 0) {
+            return tree.touched();
+        }
+
+        final Touched parent = touched(tree, tree.parent(node));
+        return tree.isElement(node) ? parent.child(tree.localName(node)) : parent;
+    }
+
+    private static String key(String name) {
+        return localPart(name).toLowerCase(Locale.ROOT);
+    }
+
+    private static String localPart(String name) {
+        return name.substring(name.indexOf(':') + 1);
+    }
+
+
+    /**
+     * Everything recorded for one document element
+     */
+    private static final class Learned {
+
+        private final Touched root;
+        private final AtomicInteger recorded = new AtomicInteger();
+
+        // Set whenever something new is recorded, so the projection must be compiled again
+        private volatile boolean dirty = true;
+        private volatile NX.Projection projection;
+
+        Learned(String rootName) {
+            this.root = new Touched(this, localPart(rootName));
+        }
+
+        /**
+         * Racing threads may both compile, the last projection wins and both are correct
+         */
+        NX.Projection projection() {
+            if (dirty) {
+                dirty = false;
+
+                final List<String> paths = new ArrayList<>();
+                root.collect("", paths);
+                Collections.sort(paths);
+
+                projection = NX.projection(paths.toArray(new String[0]));
+            }
+
+            return projection;
+        }
+
+        /**
+         * @param path as returned by {@link NX.Projection#paths()}, starting with the document element
+         */
+        void seed(String path) {
+            final String[] segments = path.split("/", -1);
+
+            if (!key(segments[0]).equals(key(root.name))) {
+                throw new IllegalArgumentException("Learned projection for " + root.name + " must start with the document element: " + path);
+            }
+
+            Touched current = root;
+
+            for (int i = 1; i < segments.length; i++) {
+                if (segments[i].startsWith("@")) {
+                    current.attribute(segments[i].substring(1));
+                    return;
+                }
+
+                current = current.child(segments[i]);
+            }
+
+            current.read();
+        }
+
+    }
+
+    /**
+     * Element navigated to by a cursor, the children and attributes looked up from it and
+     * whether anything depending on its content, like its text, has been read.
+     */
+    static final class Touched {
+
+        private final Learned owner;
+        private final String name;
+
+        // By lower case local name, just like the projection matches them
+        private final ConcurrentMap<String, Touched> children = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, String> attributes = new ConcurrentHashMap<>();
+        private volatile boolean read;
+
+        private Touched(Learned owner, String name) {
+            this.owner = owner;
+            this.name = name;
+        }
+
+        Touched child(String needle) {
+            final String key = key(needle);
+            final Touched existing = children.get(key);
+
+            if (existing != null) {
+                return existing;
+            }
+
+            return children.computeIfAbsent(key, ignored -> {
+                owner.dirty = true;
+                return new Touched(owner, localPart(needle));
+            });
+        }
+
+        void attribute(String name) {
+            final String key = key(name);
+
+            if (!attributes.containsKey(key) && attributes.putIfAbsent(key, localPart(name)) == null) {
+                owner.dirty = true;
+            }
+        }
+
+        /**
+         * The element will be built with all its descendants
+         */
+        void read() {
+            if (!read) {
+                read = true;
+                owner.dirty = true;
+            }
+        }
+
+        /**
+         * Elements that are read or looked up without going any further are built in full,
+         * so counting them or checking for their existence still works.
+         */
+        private void collect(String parentPath, List<String> paths) {
+            final String path = parentPath.isEmpty() ? name : parentPath + "/" + name;
+
+            if (read || (children.isEmpty() && attributes.isEmpty())) {
+                paths.add(path);
+                return;
+            }
+
+            for (String attribute : attributes.values()) {
+                paths.add(path + "/@" + attribute);
+            }
+
+            for (Touched child : children.values()) {
+                child.collect(path, paths);
+            }
+        }
+
+    }
+
+}
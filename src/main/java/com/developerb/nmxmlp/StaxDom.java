@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.List;
+
+/**
+ * Helpers for turning parts of a pull parser event stream into plain
+ * W3C DOM nodes so they can be wrapped by the regular cursor.
+ */
+final class StaxDom {
+
+    private StaxDom() { }
+
+    /**
+     * Same matching rules as the cursor: case insensitive and either the
+     * qualified or the local name will do.
+     */
+    static boolean isNamed(XMLStreamReader reader, String needle) {
+        String localName = reader.getLocalName();
+        if (localName.equalsIgnoreCase(needle)) {
+            return true;
+        }
+
+        String prefix = reader.getPrefix();
+        return prefix != null && !prefix.isEmpty() && (prefix + ":" + localName).equalsIgnoreCase(needle);
+    }
+
+    /**
+     * Remember the namespace declarations of the element the reader is positioned at.
+     * Used to carry declarations from skipped ancestors over to a detached subtree.
+     */
+    static void collectNamespaces(XMLStreamReader reader, List<String[]> declarations) {
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            declarations.add(new String[] { reader.getNamespacePrefix(i), reader.getNamespaceURI(i) });
+        }
+    }
+
+    /**
+     * Skip the element the reader is positioned at including all its descendants.
+     * The reader will be positioned at the matching end element.
+     */
+    static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Read the element the reader is positioned at, including all its descendants, into
+     * the given document. The reader will be positioned at the matching end element.
+     *
+     * @param inherited namespace declarations from ancestors that are not part of the document
+     */
+    static Element readElement(XMLStreamReader reader, Document document, List<String[]> inherited, boolean ignoreWhitespace) throws XMLStreamException {
+        Element root = createElement(reader, document);
+
+        for (int i = inherited.size() - 1; i >= 0; i--) {
+            String[] declaration = inherited.get(i);
+            String prefix = declaration[0];
+            String localName = prefix == null || prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : prefix;
+
+            // Declarations closer to the record win
+            if (!root.hasAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, localName)) {
+                root.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, xmlnsAttributeName(prefix), declaration[1]);
+            }
+        }
+
+        Node current = root;
+        while (current != null) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    current = current.appendChild(createElement(reader, document));
+                    break;
+
+                case XMLStreamConstants.END_ELEMENT:
+                    current = current == root ? null : current.getParentNode();
+                    break;
+
+                case XMLStreamConstants.SPACE:
+                    if (!ignoreWhitespace) {
+                        current.appendChild(document.createTextNode(reader.getText()));
+                    }
+                    break;
+
+                case XMLStreamConstants.CHARACTERS:
+                    current.appendChild(document.createTextNode(reader.getText()));
+                    break;
+
+                case XMLStreamConstants.CDATA:
+                    current.appendChild(document.createCDATASection(reader.getText()));
+                    break;
+
+                case XMLStreamConstants.COMMENT:
+                    current.appendChild(document.createComment(reader.getText()));
+                    break;
+
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    current.appendChild(document.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        return root;
+    }
+
+    private static Element createElement(XMLStreamReader reader, Document document) {
+        Element element = document.createElementNS(emptyToNull(reader.getNamespaceURI()), qualifiedName(reader.getPrefix(), reader.getLocalName()));
+
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, xmlnsAttributeName(reader.getNamespacePrefix(i)), reader.getNamespaceURI(i));
+        }
+
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String name = qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i));
+            element.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)), name, reader.getAttributeValue(i));
+        }
+
+        return element;
+    }
+
+    private static String xmlnsAttributeName(String prefix) {
+        return prefix == null || prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+/**
+ * Virtual threads aren't available before Java 21, so this version never reports one. On Java 21
+ * and newer it's replaced by the version in src/main/java21 through the multi release jar.
+ */
+final class Threads {
+
+    private Threads() {
+    }
+
+    static boolean isVirtual() {
+        return false;
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+/**
+ * A single operation reported to Java Flight Recorder, see {@link Events}.
+ */
+interface TracedOperation {
+
+    TracedOperation NONE = new TracedOperation() {
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void end() {
+        }
+
+        @Override
+        public void finish(NX.Cursor cursor, long bytes, int nodes) {
+        }
+
+    };
+
+    /**
+     * @return True if the operation might be recorded, so it's worth measuring
+     */
+    boolean isEnabled();
+
+    /**
+     * Marks the end of the operation, must be called before {@link #finish(NX.Cursor, long, int)}.
+     */
+    void end();
+
+    /**
+     * Records the operation unless it was faster than the configured threshold.
+     * The path of the cursor is only described if the operation is recorded.
+     *
+     * @param bytes parsed or written, zero when inserting or extracting
+     * @param nodes parsed, or the number of items inserted or extracted
+     */
+    void finish(NX.Cursor cursor, long bytes, int nodes);
+
+}
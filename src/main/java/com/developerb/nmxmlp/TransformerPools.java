@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.w3c.dom.Document;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pre-configured transformers, pooled per charset and combination of features.
+ * Output properties are only applied when a transformer is created, except for
+ * features depending on the document being dumped.
+ */
+final class TransformerPools {
+
+    private static final NX.Feature[] FEATURES = NX.Feature.values();
+
+    private final TransformerFactory factory;
+    private final ConcurrentMap<Charset, AtomicReferenceArray<Pool<Transformer>>> pools = new ConcurrentHashMap<>();
+
+    TransformerPools(TransformerFactory factory) {
+        this.factory = factory;
+    }
+
+    static int mask(NX.Feature... features) {
+        int mask = 0;
+        for (NX.Feature feature : features) {
+            mask |= 1 << feature.ordinal();
+        }
+
+        return mask;
+    }
+
+    Transformer borrow(Charset charset, int features, Document document) throws Exception {
+        final Transformer transformer = poolFor(charset, features).borrow();
+
+        for (NX.Feature feature : FEATURES) {
+            if (isEnabled(features, feature) && feature.isDocumentSpecific()) {
+                feature.applyTo(transformer, document);
+            }
+        }
+
+        return transformer;
+    }
+
+    /**
+     * Only transformers that completed their transformation should be released.
+     * Transformers configured for a specific document are dropped, as resetting
+     * output properties doesn't reliably clear them on Java 8.
+     */
+    void release(Transformer transformer, Charset charset, int features) {
+        if (!hasDocumentSpecificFeatures(features)) {
+            poolFor(charset, features).release(transformer);
+        }
+    }
+
+    private Pool<Transformer> poolFor(Charset charset, int features) {
+        AtomicReferenceArray<Pool<Transformer>> charsetPools = pools.get(charset);
+        if (charsetPools == null) {
+            pools.putIfAbsent(charset, new AtomicReferenceArray<>(1 << FEATURES.length));
+            charsetPools = pools.get(charset);
+        }
+
+        Pool<Transformer> pool = charsetPools.get(features);
+        if (pool == null) {
+            charsetPools.compareAndSet(features, null, new Pool<>(Pool.DEFAULT_CAPACITY, () -> {
+                final Transformer transformer = factory.newTransformer();
+                configure(transformer, charset, features);
+
+                return transformer;
+            }));
+
+            pool = charsetPools.get(features);
+        }
+
+        return pool;
+    }
+
+    private static void configure(Transformer transformer, Charset charset, int features) {
+        transformer.setOutputProperty(OutputKeys.ENCODING, charset.name());
+
+        for (NX.Feature feature : FEATURES) {
+            if (isEnabled(features, feature) && !feature.isDocumentSpecific()) {
+                feature.applyTo(transformer, null);
+            }
+        }
+    }
+
+    private static boolean hasDocumentSpecificFeatures(int features) {
+        for (NX.Feature feature : FEATURES) {
+            if (isEnabled(features, feature) && feature.isDocumentSpecific()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isEnabled(int features, NX.Feature feature) {
+        return (features & (1 << feature.ordinal())) != 0;
+    }
+
+}
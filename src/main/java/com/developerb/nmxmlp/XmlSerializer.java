@@ -0,0 +1,719 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hand written replacement for the identity transformer used by dumpXml.
+ * <p>
+ * It mimics the serializer bundled with Java 17 (escaping rules, namespace fix ups,
+ * merging of adjacent CDATA sections and indentation) so the output is byte for byte
+ * identical to what its transformer produces. How other versions of the transformer
+ * differ is listed in {@link NX.ConfigFeature#NATIVE_DUMP}.
+ * <p>
+ * Instances are cheap, single use and not thread safe.
+ */
+final class XmlSerializer {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final int INDENT_AMOUNT = 4;
+
+    private final Writer writer;
+    private final char[] buffer = new char[4096];
+    private int position = 0;
+
+    private final String encoding;
+    private final CharsetEncoder encoder;
+    private final char maxEncodableWithoutCheck;
+
+    private final boolean indent;
+    private final boolean omitDeclaration;
+    private final String doctypePublic;
+    private final String doctypeSystem;
+    private boolean doctypePending;
+
+    private int depth = 0;
+    private boolean startTagOpen = false;
+    private boolean startNewLine = false;
+    private boolean prevText = false;
+    private boolean cdataOpen = false;
+    private boolean preserveSpace = false;
+    private int childNodeNum = 0;
+    private int[] childNodeNums = new int[16];
+    private boolean[] preserveSpaces = new boolean[16];
+    private final StringBuilder pendingText = new StringBuilder();
+
+    private final List<String> attributeNames = new ArrayList<>();
+    private final List<String> attributeValues = new ArrayList<>();
+
+    private String[] namespacePrefixes = new String[8];
+    private String[] namespaceUris = new String[8];
+    private int[] namespaceDepths = new int[8];
+    private int namespaceCount = 0;
+
+
+    /**
+     * @param charset named in the xml declaration, characters it can't encode are written as character references
+     */
+    XmlSerializer(Writer writer, Charset charset, int features, String doctypePublic, String doctypeSystem) {
+        this.writer = writer;
+        this.encoding = charset.name();
+        this.indent = isEnabled(features, NX.Feature.DUMP_INDENTED_XML);
+        this.omitDeclaration = isEnabled(features, NX.Feature.DUMP_WITHOUT_XML_DECLARATION);
+
+        if (isEnabled(features, NX.Feature.RETAIN_DTD)) {
+            this.doctypePublic = doctypePublic;
+            this.doctypeSystem = doctypeSystem;
+        } else {
+            this.doctypePublic = null;
+            this.doctypeSystem = null;
+        }
+
+        if (charset.name().startsWith("UTF-")) {
+            this.maxEncodableWithoutCheck = Character.MAX_VALUE;
+            this.encoder = null;
+        } else if (charset.equals(StandardCharsets.ISO_8859_1)) {
+            this.maxEncodableWithoutCheck = 0xFF;
+            this.encoder = null;
+        } else {
+            this.maxEncodableWithoutCheck = 0x7F;
+            this.encoder = charset.newEncoder();
+        }
+
+        pushNamespace("", "");
+    }
+
+    private static boolean isEnabled(int features, NX.Feature feature) {
+        return (features & (1 << feature.ordinal())) != 0;
+    }
+
+
+    /**
+     * Serialize a W3C DOM node and its descendants as a complete document.
+     * Other trees can be serialized by calling the event methods below.
+     */
+    void serialize(Node node) throws IOException {
+        startDocument();
+        writeNode(node);
+        endDocument();
+    }
+
+    private void writeNode(Node node) throws IOException {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                writeElement(node);
+                break;
+
+            case Node.TEXT_NODE:
+                characters(node.getNodeValue());
+                break;
+
+            case Node.CDATA_SECTION_NODE:
+                cdata(node.getNodeValue());
+                break;
+
+            case Node.COMMENT_NODE:
+                comment(node.getNodeValue());
+                break;
+
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                processingInstruction(node.getNodeName(), node.getNodeValue());
+                break;
+
+            default:
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    writeNode(child);
+                }
+        }
+    }
+
+    private void writeElement(Node element) throws IOException {
+        final String qname = element.getNodeName();
+        startElement(qname);
+
+        final NamedNodeMap attributes = element.getAttributes();
+        final int length = attributes.getLength();
+
+        for (int i = 0; i < length; i++) {
+            final Node attribute = attributes.item(i);
+            namespaceDeclaration(attribute.getNodeName(), attribute.getNodeValue());
+        }
+
+        for (int i = 0; i < length; i++) {
+            final Node attribute = attributes.item(i);
+            attribute(attribute.getNodeName(), attribute.getNamespaceURI(), attribute.getNodeValue());
+        }
+
+        elementNamespace(qname, element.getNamespaceURI(), element.getLocalName() != null);
+
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            writeNode(child);
+        }
+
+        endElement(qname);
+    }
+
+
+    /**
+     * Namespace declarations are written before other attributes, just like the transformer.
+     * Attributes not declaring a namespace are ignored.
+     */
+    void namespaceDeclaration(String name, String value) {
+        if (name.startsWith("xmlns")) {
+            final int colon = name.lastIndexOf(':');
+            namespace(colon > 0 ? name.substring(colon + 1) : "", value);
+        }
+    }
+
+    /**
+     * Attributes in a namespace get their prefix declared if necessary.
+     * Namespace declarations are ignored, see {@link #namespaceDeclaration(String, String)}.
+     */
+    void attribute(String name, String uri, String value) {
+        if (!name.startsWith("xmlns")) {
+            if (uri != null && !uri.isEmpty()) {
+                final int colon = name.lastIndexOf(':');
+                final String prefix = colon > 0 ? name.substring(0, colon) : "ns0";
+
+                namespace(prefix, uri);
+                attribute(colon > 0 ? name : prefix + ":" + name, value);
+            } else {
+                attribute(name, value);
+            }
+        }
+    }
+
+    /**
+     * Make sure the namespace of the current element is declared.
+     */
+    void elementNamespace(String qname, String uri, boolean namespaceAware) {
+        if (uri != null) {
+            final int colon = qname.lastIndexOf(':');
+            namespace(colon > 0 ? qname.substring(0, colon) : "", uri);
+        } else if (namespaceAware) {
+            namespace("", "");
+        }
+    }
+
+
+    void startDocument() throws IOException {
+        doctypePending = true;
+
+        if (!omitDeclaration) {
+            write("<?xml version=\"1.0\" encoding=\"");
+            write(encoding);
+            write("\"?>");
+
+            if (indent && (doctypePublic != null || doctypeSystem != null)) {
+                write(LINE_SEPARATOR);
+            }
+        }
+    }
+
+    void endDocument() throws IOException {
+        if (indent) {
+            flushText(false);
+        }
+
+        closeStartTag();
+
+        if (indent && !prevText) {
+            write(LINE_SEPARATOR);
+        }
+
+        writer.write(buffer, 0, position);
+        position = 0;
+        writer.flush();
+    }
+
+    void startElement(String qname) throws IOException {
+        if (indent) {
+            childNodeNum++;
+            flushText(false);
+        }
+
+        if (cdataOpen) {
+            closeCData();
+        }
+
+        if (doctypePending && doctypeSystem != null) {
+            writeDoctype(qname);
+        }
+
+        doctypePending = false;
+        closeStartTag();
+
+        if (shouldIndent() && startNewLine) {
+            indent(depth);
+        }
+
+        startNewLine = true;
+        write('<');
+        write(qname);
+
+        if (indent) {
+            if (depth + 1 >= childNodeNums.length) {
+                childNodeNums = Arrays.copyOf(childNodeNums, childNodeNums.length * 2);
+                preserveSpaces = Arrays.copyOf(preserveSpaces, preserveSpaces.length * 2);
+            }
+
+            childNodeNums[depth] = childNodeNum;
+            preserveSpaces[depth] = preserveSpace;
+            childNodeNum = 0;
+        }
+
+        depth++;
+        startTagOpen = true;
+        prevText = false;
+    }
+
+    /**
+     * Declare a namespace on the currently open element, unless the same
+     * prefix is already bound to the same uri.
+     */
+    void namespace(String prefix, String uri) {
+        if (prefix.startsWith("xml")) {
+            return;
+        }
+
+        for (int i = namespaceCount - 1; i >= 0; i--) {
+            if (namespacePrefixes[i].equals(prefix)) {
+                if (namespaceUris[i].equals(uri)) {
+                    return;
+                }
+
+                break;
+            }
+        }
+
+        pushNamespace(prefix, uri);
+        attribute(prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix, uri);
+    }
+
+    private void pushNamespace(String prefix, String uri) {
+        if (namespaceCount == namespacePrefixes.length) {
+            namespacePrefixes = Arrays.copyOf(namespacePrefixes, namespaceCount * 2);
+            namespaceUris = Arrays.copyOf(namespaceUris, namespaceCount * 2);
+            namespaceDepths = Arrays.copyOf(namespaceDepths, namespaceCount * 2);
+        }
+
+        namespacePrefixes[namespaceCount] = prefix;
+        namespaceUris[namespaceCount] = uri;
+        namespaceDepths[namespaceCount] = depth;
+        namespaceCount++;
+    }
+
+    private void attribute(String name, String value) {
+        if (indent && name.equals("xml:space")) {
+            if (value.equals("preserve")) {
+                preserveSpace = true;
+            } else if (value.equals("default")) {
+                preserveSpace = false;
+            }
+        }
+
+        final int existing = attributeNames.indexOf(name);
+        if (existing >= 0) {
+            attributeValues.set(existing, value);
+        } else {
+            attributeNames.add(name);
+            attributeValues.add(value);
+        }
+    }
+
+    void endElement(String qname) throws IOException {
+        if (indent) {
+            flushText(false);
+        }
+
+        while (namespaceCount > 0 && namespaceDepths[namespaceCount - 1] >= depth) {
+            namespaceCount--;
+        }
+
+        if (startTagOpen) {
+            writeAttributes();
+            write("/>");
+            startTagOpen = false;
+        } else {
+            if (cdataOpen) {
+                closeCData();
+            }
+
+            if (shouldIndent() && (childNodeNum > 1 || !prevText)) {
+                indent(depth - 1);
+            }
+
+            write("</");
+            write(qname);
+            write('>');
+        }
+
+        depth--;
+
+        if (indent) {
+            childNodeNum = childNodeNums[depth];
+            preserveSpace = preserveSpaces[depth];
+            prevText = false;
+        }
+    }
+
+    void characters(String text) throws IOException {
+        if (text.isEmpty()) {
+            return;
+        }
+
+        closeStartTag();
+
+        if (cdataOpen) {
+            closeCData();
+        }
+
+        if (shouldFormatOutput()) {
+            pendingText.append(text);
+        } else {
+            writeText(text, 0);
+            prevText = true;
+        }
+    }
+
+    void cdata(String text) throws IOException {
+        if (indent) {
+            flushText(true);
+        }
+
+        closeStartTag();
+
+        if (!cdataOpen && shouldIndent() && childNodeNum > 1) {
+            indent(depth);
+        }
+
+        if (!text.isEmpty() && isEncodable(text.charAt(0)) && !cdataOpen) {
+            write("<![CDATA[");
+            cdataOpen = true;
+        }
+
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+
+            if (c == '\n') {
+                write(LINE_SEPARATOR);
+            } else if (!isEncodable(c)) {
+                if (cdataOpen) {
+                    closeCData();
+                }
+
+                i = writeCharacterReference(text, i);
+            } else if (c == ']' && i < length - 2 && text.charAt(i + 1) == ']' && text.charAt(i + 2) == '>') {
+                write("]]]]><![CDATA[>");
+                i += 2;
+            } else {
+                if (!cdataOpen) {
+                    write("<![CDATA[");
+                    cdataOpen = true;
+                }
+
+                write(c);
+            }
+        }
+
+        if (cdataOpen) {
+            closeCData();
+        }
+
+        prevText = true;
+    }
+
+    void comment(String text) throws IOException {
+        if (indent) {
+            childNodeNum++;
+            flushText(false);
+        }
+
+        closeStartTag();
+
+        if (cdataOpen) {
+            closeCData();
+        }
+
+        if (shouldIndent()) {
+            indent(depth);
+        }
+
+        write("<!--");
+
+        boolean wasDash = false;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (wasDash && c == '-') {
+                write(" -");
+                wasDash = false;
+            } else {
+                write(c);
+                wasDash = c == '-';
+            }
+        }
+
+        if (!text.isEmpty() && text.charAt(text.length() - 1) == '-') {
+            write(' ');
+        }
+
+        write("-->");
+        startNewLine = true;
+    }
+
+    void processingInstruction(String target, String data) throws IOException {
+        if (indent) {
+            childNodeNum++;
+            flushText(false);
+        }
+
+        closeStartTag();
+
+        if (cdataOpen) {
+            closeCData();
+        }
+
+        if (shouldIndent()) {
+            indent(depth);
+        }
+
+        write("<?");
+        write(target);
+
+        if (!data.isEmpty() && !Character.isSpaceChar(data.charAt(0))) {
+            write(' ');
+        }
+
+        write(data.replace("?>", "? >"));
+        write("?>");
+        startNewLine = true;
+    }
+
+
+    private boolean shouldFormatOutput() {
+        return indent && !preserveSpace;
+    }
+
+    private boolean shouldIndent() {
+        return shouldFormatOutput() && depth > 0;
+    }
+
+    private void indent(int level) throws IOException {
+        if (startNewLine) {
+            write(LINE_SEPARATOR);
+        }
+
+        for (int i = 0; i < level * INDENT_AMOUNT; i++) {
+            write(' ');
+        }
+    }
+
+    private void flushText(boolean isText) throws IOException {
+        if (shouldFormatOutput() && pendingText.length() > 0) {
+            if (!isText) {
+                childNodeNum++;
+            }
+
+            int start = 0;
+            if (shouldIndent() && childNodeNum > 1) {
+                indent(depth);
+                startNewLine = true;
+
+                while (start < pendingText.length() && pendingText.charAt(start) == '\n') {
+                    start++;
+                }
+            }
+
+            if (start < pendingText.length()) {
+                writeText(pendingText, start);
+                prevText = true;
+            }
+        }
+
+        pendingText.setLength(0);
+    }
+
+    private void closeStartTag() throws IOException {
+        if (startTagOpen) {
+            writeAttributes();
+            write('>');
+            startTagOpen = false;
+        }
+    }
+
+    private void closeCData() throws IOException {
+        write("]]>");
+        cdataOpen = false;
+    }
+
+    private void writeDoctype(String name) throws IOException {
+        write("<!DOCTYPE ");
+        write(name);
+
+        if (doctypePublic != null) {
+            write(" PUBLIC \"");
+            write(doctypePublic);
+            write("\" \"");
+        } else {
+            write(" SYSTEM \"");
+        }
+
+        write(doctypeSystem);
+        write("\">");
+        write(LINE_SEPARATOR);
+    }
+
+    private void writeAttributes() throws IOException {
+        for (int i = 0; i < attributeNames.size(); i++) {
+            write(' ');
+            write(attributeNames.get(i));
+            write("=\"");
+            writeAttributeValue(attributeValues.get(i));
+            write('"');
+        }
+
+        attributeNames.clear();
+        attributeValues.clear();
+    }
+
+    private void writeText(CharSequence text, int start) throws IOException {
+        final int length = text.length();
+
+        for (int i = start; i < length; i++) {
+            final char c = text.charAt(i);
+
+            if (c >= 0x20 && c < 0x7F && c != '&' && c != '<' && c != '>') {
+                write(c);
+            } else if (c == '&') {
+                write("&amp;");
+            } else if (c == '<') {
+                write("&lt;");
+            } else if (c == '>') {
+                write("&gt;");
+            } else if (c == '\n') {
+                write(LINE_SEPARATOR);
+            } else if (c == '\t') {
+                write(c);
+            } else {
+                i = writeOther(text, i);
+            }
+        }
+    }
+
+    private void writeAttributeValue(String value) throws IOException {
+        final int length = value.length();
+
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+
+            if (c >= 0x20 && c < 0x7F && c != '&' && c != '<' && c != '>' && c != '"') {
+                write(c);
+            } else if (c == '&') {
+                write("&amp;");
+            } else if (c == '<') {
+                write("&lt;");
+            } else if (c == '>') {
+                write("&gt;");
+            } else if (c == '"') {
+                write("&quot;");
+            } else if (c < 0x20 || !isEncodable(c)) {
+                i = writeCharacterReference(value, i);
+            } else {
+                // Unlike text, the transformer doesn't escape C1 control characters in attributes
+                write(c);
+            }
+        }
+    }
+
+    /**
+     * Control characters, surrogate pairs and anything the charset can't
+     * represent is written as character references, like Java 17 does.
+     */
+    private int writeOther(CharSequence text, int i) throws IOException {
+        final char c = text.charAt(i);
+
+        if (c < 0x20 || (c >= 0x7F && c <= 0x9F) || !isEncodable(c)) {
+            return writeCharacterReference(text, i);
+        } else {
+            write(c);
+            return i;
+        }
+    }
+
+    private int writeCharacterReference(CharSequence text, int i) throws IOException {
+        final char c = text.charAt(i);
+        int codePoint = c;
+
+        if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+            codePoint = Character.toCodePoint(c, text.charAt(++i));
+        }
+
+        write("&#");
+        write(Integer.toString(codePoint));
+        write(';');
+
+        return i;
+    }
+
+    private boolean isEncodable(char c) {
+        if (Character.isSurrogate(c)) {
+            return false;
+        } else if (c <= maxEncodableWithoutCheck) {
+            return true;
+        } else {
+            return encoder != null && encoder.canEncode(c);
+        }
+    }
+
+    private void write(char c) throws IOException {
+        if (position == buffer.length) {
+            writer.write(buffer, 0, position);
+            position = 0;
+        }
+
+        buffer[position++] = c;
+    }
+
+    private void write(String text) throws IOException {
+        final int length = text.length();
+
+        if (position + length > buffer.length) {
+            writer.write(buffer, 0, position);
+            position = 0;
+
+            if (length > buffer.length) {
+                writer.write(text);
+                return;
+            }
+        }
+
+        text.getChars(0, length, buffer, position);
+        position += length;
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events for parsing, dumping, inserting and extracting.
+ * <p>
+ * Replaces the no-op version on Java 11 and newer. Events are recorded whenever a recording
+ * is running and the operation takes longer than the threshold, 1 ms unless overridden in
+ * the recording settings.
+ */
+final class Events {
+
+    private Events() {
+    }
+
+    static TracedOperation parse() {
+        return begin(new ParseEvent());
+    }
+
+    static TracedOperation dump() {
+        return begin(new DumpEvent());
+    }
+
+    static TracedOperation insertCollection() {
+        return begin(new InsertCollectionEvent());
+    }
+
+    static TracedOperation extractCollection() {
+        return begin(new ExtractCollectionEvent());
+    }
+
+    private static TracedOperation begin(XmlEvent event) {
+        if (event.isEnabled()) {
+            event.begin();
+            return event;
+        } else {
+            return TracedOperation.NONE;
+        }
+    }
+
+
+    @Category("XML")
+    @Threshold("1 ms")
+    abstract static class XmlEvent extends Event implements TracedOperation {
+
+        @Label("Path")
+        @Description("Path of the cursor, see Cursor.describePath")
+        String path;
+
+        @Override
+        public void finish(NX.Cursor cursor, long bytes, int nodes) {
+            if (shouldCommit()) {
+                path = cursor.describePath();
+                record(bytes, nodes);
+                commit();
+            }
+        }
+
+        abstract void record(long bytes, int nodes);
+
+    }
+
+    @Name("com.developerb.nmxmlp.Parse")
+    @Label("XML Parse")
+    @Description("NX.from")
+    static class ParseEvent extends XmlEvent {
+
+        @Label("Size")
+        @DataAmount
+        long size;
+
+        @Label("Nodes")
+        @Description("Nodes in the document, not counting attributes")
+        int nodes;
+
+        @Override
+        void record(long bytes, int nodes) {
+            this.size = bytes;
+            this.nodes = nodes;
+        }
+
+    }
+
+    @Name("com.developerb.nmxmlp.Dump")
+    @Label("XML Dump")
+    @Description("Cursor.dumpXml")
+    static class DumpEvent extends XmlEvent {
+
+        @Label("Size")
+        @DataAmount
+        long size;
+
+        @Override
+        void record(long bytes, int nodes) {
+            this.size = bytes;
+        }
+
+    }
+
+    @Name("com.developerb.nmxmlp.InsertCollection")
+    @Label("XML Insert Collection")
+    @Description("Cursor.insertCollection")
+    static class InsertCollectionEvent extends XmlEvent {
+
+        @Label("Items")
+        int items;
+
+        @Override
+        void record(long bytes, int nodes) {
+            this.items = nodes;
+        }
+
+    }
+
+    @Name("com.developerb.nmxmlp.ExtractCollection")
+    @Label("XML Extract Collection")
+    @Description("Cursor.extractCollection")
+    static class ExtractCollectionEvent extends XmlEvent {
+
+        @Label("Items")
+        int items;
+
+        @Override
+        void record(long bytes, int nodes) {
+            this.items = nodes;
+        }
+
+    }
+
+}
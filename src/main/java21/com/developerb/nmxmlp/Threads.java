@@ -0,0 +1,30 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+/**
+ * Replaces the version always returning false on Java 21 and newer, see {@link NX.ConfigFeature#VIRTUAL_THREADS}.
+ */
+final class Threads {
+
+    private Threads() {
+    }
+
+    static boolean isVirtual() {
+        return Thread.currentThread().isVirtual();
+    }
+
+}
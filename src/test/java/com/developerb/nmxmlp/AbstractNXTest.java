@@ -20,6 +20,7 @@ import com.google.common.io.Resources;
 import org.junit.jupiter.api.BeforeEach;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 
 
@@ -45,6 +46,21 @@ public abstract class AbstractNXTest {
         return parse(svgByteSource);
     }
 
+    protected NX.Cursor parseResource(NX nx, String resourceName) {
+        return parseResource(nx, resourceName, new NX.ReadContext(null));
+    }
+
+    /**
+     * For tests comparing how differently configured instances parse the same resource
+     */
+    protected NX.Cursor parseResource(NX nx, String resourceName, NX.ReadContext context) {
+        try (InputStream stream = Resources.getResource(resourceName).openStream()) {
+            return nx.from(stream, context);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     protected NX.Cursor parse(String xml) {
         return nx.from(xml);
     }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveProjectionTest {
+
+    private final String xml = "<soap:Envelope xmlns:soap='http://schemas.xmlsoap.org/soap/envelope/'>" +
+            "<soap:Header><Session>secret</Session></soap:Header>" +
+            "<soap:Body>" +
+            "<GetOrdersResponse>" +
+            "<Order currencyCode='NOK'><Id>1</Id><Lines><Line>Nøff</Line></Lines></Order>" +
+            "<Order currencyCode='SEK'><Id>2</Id><Lines><Line>Duck</Line></Lines></Order>" +
+            "<Summary>Two orders</Summary>" +
+            "</GetOrdersResponse>" +
+            "</soap:Body>" +
+            "</soap:Envelope>";
+
+    // Envelope, Header, Session, Body, GetOrdersResponse, two orders and a summary with their descendants and text
+    private final int fullNodes = 20;
+
+    private final NX.Extractor<List<Integer>> ids = envelope -> envelope.to("Body", "GetOrdersResponse")
+            .extractCollection("Order", order -> order.to("Id").extractInt());
+
+    private final NX.Extractor<List<String>> currencies = envelope -> envelope.to("Body", "GetOrdersResponse")
+            .extractCollection("Order", order -> order.attr("currencyCode").text());
+
+    @Test
+    void projectedOnceEnoughDocumentsAreLearned() {
+        NX.HistogramMetrics metrics = new NX.HistogramMetrics();
+        NX nx = new NX().registerMetrics(metrics).learnProjections(2);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Arrays.asList(1, 2), nx.extract(stream(), new NX.ReadContext(null), ids));
+        }
+
+        // Envelope, Body, GetOrdersResponse, two orders with an id and its text
+        assertEquals(3, metrics.parsedNodes().count());
+        assertEquals(2 * fullNodes + 9, metrics.parsedNodes().sum());
+
+        Map<String, NX.Projection> learned = nx.learnedProjections();
+        assertEquals(Collections.singleton("Envelope"), learned.keySet());
+        assertEquals(Collections.singletonList("Envelope/Body/GetOrdersResponse/Order/Id"), learned.get("Envelope").paths());
+    }
+
+    @Test
+    void fallsBackToFullParseOutsideTheProjection() {
+        NX.HistogramMetrics metrics = new NX.HistogramMetrics();
+        NX nx = new NX().registerMetrics(metrics).learnProjections(1);
+
+        nx.extract(stream(), new NX.ReadContext(null), ids);
+        assertEquals(Arrays.asList("NOK", "SEK"), nx.extract(stream(), new NX.ReadContext(null), currencies));
+        assertEquals(3, metrics.parsedNodes().count());
+
+        assertEquals(Arrays.asList("Envelope/Body/GetOrdersResponse/Order/@currencyCode", "Envelope/Body/GetOrdersResponse/Order/Id"),
+                nx.learnedProjections().get("Envelope").paths());
+
+        // Learned from the full parse, so no fallback this time
+        assertEquals(Arrays.asList("NOK", "SEK"), nx.extract(stream(), new NX.ReadContext(null), currencies));
+        assertEquals(4, metrics.parsedNodes().count());
+        assertEquals(2 * fullNodes + 2 * 9, metrics.parsedNodes().sum());
+    }
+
+    @Test
+    void learnedProjectionsCanBeLoadedAtStartup() {
+        NX learning = new NX().learnProjections(1);
+        learning.extract(stream(), new NX.ReadContext(null), ids);
+
+        NX.HistogramMetrics metrics = new NX.HistogramMetrics();
+        NX nx = new NX().registerMetrics(metrics).learnProjections(100, learning.learnedProjections());
+
+        assertEquals(Arrays.asList(1, 2), nx.extract(stream(), new NX.ReadContext(null), ids));
+        assertEquals(9, metrics.parsedNodes().sum());
+        assertEquals(learning.learnedProjections().get("Envelope").paths(), nx.learnedProjections().get("Envelope").paths());
+
+        Map<String, NX.Projection> withWildcard = Collections.singletonMap("Envelope", NX.projection("Envelope/Body/*/Order/Id"));
+        assertEquals(Arrays.asList(1, 2), new NX().learnProjections(1, withWildcard).extract(stream(), new NX.ReadContext(null), ids));
+    }
+
+    @Test
+    void invalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new NX().learnProjections(0));
+        assertThrows(IllegalArgumentException.class, () -> new NX().learnProjections(1, Collections.singletonMap("Envelope", NX.projection("@currencyCode"))));
+        assertThrows(IllegalArgumentException.class, () -> new NX().learnProjections(1, Collections.singletonMap("Envelope", NX.projection("Body/Order"))));
+        assertTrue(new NX().learnedProjections().isEmpty());
+    }
+
+    @Test
+    void parsedDocumentsAreLeftAlone() {
+        NX nx = new NX().learnProjections(1);
+
+        NX.Cursor envelope = nx.from(xml);
+        assertEquals("secret", envelope.to("Header", "Session").text());
+        envelope.to("Body").append("Appended").text("Still a W3C DOM document");
+
+        assertTrue(nx.learnedProjections().isEmpty());
+
+        nx.extract(stream(), new NX.ReadContext(null), ids);
+        assertEquals(Collections.singletonList("Envelope/Body/GetOrdersResponse/Order/Id"), nx.learnedProjections().get("Envelope").paths());
+        assertEquals("Two orders", nx.from(xml).to("Body", "GetOrdersResponse", "Summary").text());
+    }
+
+    @Test
+    void asyncAndBatchExtraction() throws Exception {
+        NX nx = new NX().learnProjections(1);
+
+        assertEquals(Arrays.asList(1, 2), nx.extractAsync(stream(), new NX.ReadContext(null), ids).get());
+
+        List<NX.BatchResult<List<String>>> results = nx.fromAll(Arrays.asList(stream(), stream()), currencies, Runnable::run);
+        for (NX.BatchResult<List<String>> result : results) {
+            assertEquals(Arrays.asList("NOK", "SEK"), result.get());
+        }
+
+        assertEquals(2, nx.learnedProjections().get("Envelope").paths().size());
+    }
+
+    private InputStream stream() {
+        return new ByteArrayInputStream(xml.getBytes(UTF_8));
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.developerb.nmxmlp.NX.XmlExecutor.RejectionPolicy.CALLER_RUNS;
+import static com.developerb.nmxmlp.NX.XmlExecutor.RejectionPolicy.DISCARD_OLDEST;
+import static com.developerb.nmxmlp.NX.XmlExecutor.RejectionPolicy.FAIL;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncTest {
+
+    private final String xml = "<people><person name='Nasse Nøff'/><person name='Donald Duck'/></people>";
+
+    @Test
+    void parseExtractAndDump() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            for (NX nx : new NX[] { new NX(), new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE)) }) {
+                NX.Cursor people = nx.fromAsync(stream(xml), new NX.ReadContext(null), executor).get(5, TimeUnit.SECONDS);
+                assertEquals(2, people.count("person"));
+
+                CompletableFuture<Integer> count = nx.extractAsync(stream(xml), new NX.ReadContext(null), cursor -> cursor.count("person"));
+                assertEquals(2, count.get(5, TimeUnit.SECONDS).intValue());
+
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                people.dumpXmlAsync(output, UTF_8).get(5, TimeUnit.SECONDS);
+                assertEquals(people.dumpXml(UTF_8), new String(output.toByteArray(), UTF_8));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void failuresCompleteTheFuture() {
+        NX nx = new NX();
+
+        CompletionException broken = assertThrows(CompletionException.class, () -> nx.fromAsync(stream("<broken>"), new NX.ReadContext(null)).join());
+        assertTrue(broken.getCause() instanceof NX.Ex);
+
+        NX.Cursor missing = nx.from(xml).toOptional("missing");
+        CompletionException empty = assertThrows(CompletionException.class, () -> missing.dumpXmlAsync(new ByteArrayOutputStream(), UTF_8).join());
+        assertTrue(empty.getCause() instanceof UnsupportedOperationException);
+    }
+
+    @Test
+    void failWhenTheQueueIsFull() throws Exception {
+        try (NX.XmlExecutor executor = new NX.XmlExecutor(1, 1, FAIL)) {
+            NX nx = new NX().registerXmlExecutor(executor);
+            CountDownLatch release = new CountDownLatch(1);
+
+            CompletableFuture<String> running = nx.extractAsync(stream(xml), null, blockUntil(release));
+            CompletableFuture<String> queued = nx.extractAsync(stream(xml), null, NX.Cursor::name);
+            CompletableFuture<String> rejected = nx.extractAsync(stream(xml), null, NX.Cursor::name);
+
+            assertTrue(rejected.isCompletedExceptionally());
+            assertTrue(assertThrows(CompletionException.class, rejected::join).getCause() instanceof NX.Overloaded);
+
+            release.countDown();
+            assertEquals("people", running.get(5, TimeUnit.SECONDS));
+            assertEquals("people", queued.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void discardOldestQueuedTask() throws Exception {
+        try (NX.XmlExecutor executor = new NX.XmlExecutor(1, 1, DISCARD_OLDEST)) {
+            NX nx = new NX().registerXmlExecutor(executor);
+            CountDownLatch release = new CountDownLatch(1);
+
+            CompletableFuture<String> running = nx.extractAsync(stream(xml), null, blockUntil(release));
+            CompletableFuture<String> discarded = nx.extractAsync(stream(xml), null, NX.Cursor::name);
+            CompletableFuture<String> newest = nx.extractAsync(stream(xml), null, NX.Cursor::name);
+
+            assertTrue(assertThrows(CompletionException.class, discarded::join).getCause() instanceof NX.Overloaded);
+            assertEquals(1, executor.queued());
+
+            release.countDown();
+            assertEquals("people", running.get(5, TimeUnit.SECONDS));
+            assertEquals("people", newest.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void callerRunsWhenTheQueueIsFull() throws Exception {
+        try (NX.XmlExecutor executor = new NX.XmlExecutor(1, 1, CALLER_RUNS)) {
+            NX nx = new NX().registerXmlExecutor(executor);
+            CountDownLatch release = new CountDownLatch(1);
+
+            CompletableFuture<String> running = nx.extractAsync(stream(xml), null, blockUntil(release));
+            CompletableFuture<String> queued = nx.extractAsync(stream(xml), null, cursor -> Thread.currentThread().getName());
+            CompletableFuture<String> overflow = nx.extractAsync(stream(xml), null, cursor -> Thread.currentThread().getName());
+
+            assertEquals(Thread.currentThread().getName(), overflow.getNow(null));
+
+            release.countDown();
+            assertEquals("people", running.get(5, TimeUnit.SECONDS));
+            assertTrue(queued.get(5, TimeUnit.SECONDS).startsWith("nmxmlp-xml-"));
+        }
+    }
+
+    @Test
+    void closedExecutorsRejectNewTasks() {
+        NX.XmlExecutor executor = new NX.XmlExecutor(1, 1, CALLER_RUNS);
+        executor.close();
+
+        CompletableFuture<NX.Cursor> future = new NX().registerXmlExecutor(executor).fromAsync(stream(xml), null);
+        assertTrue(assertThrows(CompletionException.class, future::join).getCause() instanceof NX.Overloaded);
+    }
+
+    @Test
+    void streamsOfOverloadedTasksAreClosed() throws Exception {
+        try (NX.XmlExecutor executor = new NX.XmlExecutor(1, 1, DISCARD_OLDEST)) {
+            NX nx = new NX().registerXmlExecutor(executor);
+            CountDownLatch release = new CountDownLatch(1);
+            Set<InputStream> closed = ConcurrentHashMap.newKeySet();
+
+            CompletableFuture<String> running = nx.extractAsync(stream(xml), null, blockUntil(release));
+            InputStream discarded = closing(stream(xml), closed);
+            nx.extractAsync(discarded, null, NX.Cursor::name);
+            nx.extractAsync(stream(xml), null, NX.Cursor::name);
+
+            assertTrue(closed.contains(discarded));
+
+            release.countDown();
+            assertEquals("people", running.get(5, TimeUnit.SECONDS));
+        }
+
+        NX.XmlExecutor rejecting = new NX.XmlExecutor(1, 1, FAIL);
+        rejecting.close();
+
+        Set<InputStream> closed = ConcurrentHashMap.newKeySet();
+        InputStream rejected = closing(stream(xml), closed);
+        new NX().registerXmlExecutor(rejecting).fromAsync(rejected, null);
+
+        assertTrue(closed.contains(rejected));
+    }
+
+    private static InputStream closing(InputStream input, Set<InputStream> closed) {
+        return new FilterInputStream(input) {
+            @Override
+            public void close() throws IOException {
+                closed.add(this);
+                super.close();
+            }
+        };
+    }
+
+    private static NX.Extractor<String> blockUntil(CountDownLatch release) {
+        return cursor -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+
+            return cursor.name();
+        };
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(UTF_8));
+    }
+
+}
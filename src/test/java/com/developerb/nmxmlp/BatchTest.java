@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchTest {
+
+    private final NX.Extractor<Integer> id = cursor -> cursor.attrAsInt("id");
+
+    @Test
+    void resultsAreInInputOrder() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            for (NX nx : new NX[] { new NX(), new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE)) }) {
+                List<NX.BatchResult<Integer>> results = nx.fromAll(documents(500), id, executor);
+
+                assertEquals(500, results.size());
+                for (int i = 0; i < results.size(); i++) {
+                    assertTrue(results.get(i).isSuccess());
+                    assertEquals(i, results.get(i).get().intValue());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void failuresAreCapturedPerDocument() {
+        List<InputStream> streams = documents(3);
+        streams.add(1, stream("<broken>"));
+        streams.add(3, stream("<record/>"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            List<NX.BatchResult<Integer>> results = new NX().fromAll(streams, new NX.ReadContext(null), id, executor, 2);
+
+            assertEquals(5, results.size());
+            assertEquals(0, results.get(0).get().intValue());
+            assertEquals(1, results.get(2).get().intValue());
+            assertEquals(2, results.get(4).get().intValue());
+
+            NX.BatchResult<Integer> broken = results.get(1);
+            assertFalse(broken.isSuccess());
+            assertTrue(broken.failure() instanceof NX.Ex);
+            assertSame(broken.failure(), assertThrows(NX.Ex.class, broken::get));
+
+            assertTrue(results.get(3).failure() instanceof NX.MissingAttribute);
+            assertTrue(results.get(3).toString().startsWith("Failure("));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void rejectedWorkersRunInTheCallingThread() {
+        List<NX.BatchResult<Integer>> results = new NX().fromAll(documents(10), new NX.ReadContext(null), id, command -> {
+            throw new RejectedExecutionException("Overloaded");
+        }, 3);
+
+        assertEquals(10, results.size());
+        assertEquals(9, results.get(9).get().intValue());
+    }
+
+    @Test
+    void batchesFromTasksOnTheSameExecutor() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+
+        try {
+            Future<List<NX.BatchResult<Integer>>> nested = executor.submit(() -> new NX().fromAll(documents(2), id, executor));
+            List<NX.BatchResult<Integer>> results = nested.get(10, TimeUnit.SECONDS);
+
+            assertEquals(1, results.get(1).get().intValue());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void errorsFailTheBatchAndCloseTheRemainingStreams() {
+        Set<InputStream> closed = ConcurrentHashMap.newKeySet();
+        List<InputStream> streams = new ArrayList<>();
+
+        for (InputStream document : documents(5)) {
+            streams.add(new FilterInputStream(document) {
+                @Override
+                public void close() {
+                    closed.add(this);
+                }
+            });
+        }
+
+        NX.Extractor<Integer> failing = cursor -> {
+            throw new Fatal();
+        };
+
+        assertThrows(Fatal.class, () -> new NX().fromAll(streams, new NX.ReadContext(null), failing, Runnable::run, 1));
+        assertEquals(5, closed.size());
+    }
+
+    @Test
+    void emptyBatch() {
+        assertTrue(new NX().fromAll(new ArrayList<>(), id, Runnable::run).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new NX().fromAll(documents(1), new NX.ReadContext(null), id, Runnable::run, 0));
+    }
+
+    private static List<InputStream> documents(int count) {
+        List<InputStream> streams = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            streams.add(stream("<record id='" + i + "'><name>Record " + i + "</name></record>"));
+        }
+
+        return streams;
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(UTF_8));
+    }
+
+
+    private static class Fatal extends Error {
+    }
+
+}
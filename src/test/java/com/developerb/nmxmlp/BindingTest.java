@@ -0,0 +1,221 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BindingTest extends AbstractNXTest {
+
+    @Test
+    void bindAttributes() {
+        NX.Cursor countries = parseResource("data/countries.xml");
+        List<Country> extracted = countries.extractCollection("country", NX.binding(Country.class));
+
+        assertEquals(countries.count("country"), extracted.size());
+
+        Country norway = extracted.stream().filter(country -> country.code.equals("NO")).findFirst().orElseThrow(IllegalStateException::new);
+        assertEquals("Norway", norway.name);
+        assertEquals(Continent.EU, norway.continent);
+        assertTrue(norway.population > 4_000_000);
+        assertEquals(324220.0f, norway.area);
+        assertNull(norway.missing);
+    }
+
+    @Test
+    void bindChildNodes() {
+        String xml = "<person active='true'><name>Nasse Nøff</name><age> 5 </age><address><city>Hundremeterskogen</city></address></person>";
+
+        for (NX nx : new NX[] { new NX(), new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE)) }) {
+            Person person = nx.from(xml).extract(NX.binding(Person.class));
+
+            assertEquals("Nasse Nøff", person.name);
+            assertEquals(5, person.age);
+            assertEquals("Hundremeterskogen", person.city);
+            assertNull(person.nickname);
+            assertNull(person.height);
+            assertTrue(person.active);
+        }
+    }
+
+    @Test
+    void nestedTypesUseRegisteredExtractors() {
+        NX nx = new NX()
+                .registerExtractor(Name.class, NX.binding(Name.class))
+                .registerExtractor(Code.class, NX.binding(Code.class));
+
+        Member member = nx.from("<member code='X1'><name><first>Nasse</first><last>Nøff</last></name></member>")
+                .extract(NX.binding(Member.class));
+
+        assertEquals("Nasse", member.name.first);
+        assertEquals("Nøff", member.name.last);
+        assertEquals("X1", member.code.value);
+    }
+
+    @Test
+    void failuresIncludeThePath() {
+        NX.Extractor<Person> binding = NX.binding(Person.class);
+
+        NX.MissingNode missing = assertThrows(NX.MissingNode.class, () -> parse("<person active='true'><name>Nasse</name><address><city>x</city></address></person>").extract(binding));
+        assertThat(missing.getMessage()).startsWith("person -- Unable to find 'age'");
+
+        NX.InvalidNumber invalid = assertThrows(NX.InvalidNumber.class, () -> parse("<person active='no'><name>Nasse</name><age>old</age><address><city>x</city></address></person>").extract(binding));
+        assertThat(invalid.getMessage()).startsWith("person >> age -- Expected int");
+    }
+
+    @Test
+    void invalidBindings() {
+        assertThrows(IllegalArgumentException.class, () -> NX.binding(Runnable.class));
+        assertThrows(IllegalArgumentException.class, () -> NX.binding(Inner.class));
+        assertThrows(IllegalArgumentException.class, () -> NX.binding(TwoConstructors.class));
+        assertThrows(IllegalArgumentException.class, () -> NX.binding(OptionalPrimitive.class));
+        assertThrows(IllegalArgumentException.class, () -> NX.binding(AmbiguousParameter.class));
+    }
+
+    @Test
+    void creatorPicksTheConstructor() {
+        Code code = parse("<code value='A'/>").extract(NX.binding(Creator.class)).code;
+        assertEquals("A", code.value);
+        assertFalse(NX.binding(Creator.class).toString().isEmpty());
+    }
+
+
+    enum Continent { AF, AN, AS, EU, NA, OC, SA }
+
+    static class Country {
+
+        final String code, name, missing;
+        final Continent continent;
+        final int population;
+        final float area;
+
+        Country(@NX.Attr("countryCode") String code, @NX.Attr("countryName") String name, @NX.Attr("continent") Continent continent,
+                @NX.Attr("population") int population, @NX.Attr("areaInSqKm") float area, @NX.Attr(value = "missing", required = false) String missing) {
+            this.code = code;
+            this.name = name;
+            this.continent = continent;
+            this.population = population;
+            this.area = area;
+            this.missing = missing;
+        }
+
+    }
+
+    static class Person {
+
+        final String name, city, nickname;
+        final int age;
+        final Double height;
+        final boolean active;
+
+        private Person(@NX.Child("name") String name, @NX.Child("age") int age, @NX.Child({ "address", "city" }) String city,
+                       @NX.Child(value = "nickname", required = false) String nickname, @NX.Child(value = "height", required = false) Double height,
+                       @NX.Attr("active") boolean active) {
+            this.name = name;
+            this.age = age;
+            this.city = city;
+            this.nickname = nickname;
+            this.height = height;
+            this.active = active;
+        }
+
+    }
+
+    static class Name {
+
+        final String first, last;
+
+        Name(@NX.Child("first") String first, @NX.Child("last") String last) {
+            this.first = first;
+            this.last = last;
+        }
+
+    }
+
+    static class Code {
+
+        final String value;
+
+        Code(@NX.Attr("code") String value) {
+            this.value = value;
+        }
+
+    }
+
+    static class Member {
+
+        final Name name;
+        final Code code;
+
+        Member(@NX.Child("name") Name name, @NX.Self Code code) {
+            this.name = name;
+            this.code = code;
+        }
+
+    }
+
+    static class Creator {
+
+        final Code code;
+
+        Creator() {
+            this(null);
+        }
+
+        @NX.Creator
+        Creator(@NX.Attr("value") String value) {
+            this.code = new Code(value);
+        }
+
+    }
+
+    class Inner {
+    }
+
+    static class TwoConstructors {
+
+        TwoConstructors() {
+        }
+
+        TwoConstructors(@NX.Attr("a") String a) {
+        }
+
+    }
+
+    static class OptionalPrimitive {
+
+        OptionalPrimitive(@NX.Attr(value = "a", required = false) int a) {
+        }
+
+    }
+
+    static class AmbiguousParameter {
+
+        AmbiguousParameter(@NX.Attr("a") @NX.Child("a") String a) {
+        }
+
+    }
+
+}
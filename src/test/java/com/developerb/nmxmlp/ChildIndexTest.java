@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChildIndexTest extends AbstractNXTest {
+
+    private final NX plainNx = new NX();
+    private final NX indexedNx = new NX(EnumSet.of(NX.ConfigFeature.CHILD_INDEX));
+    private final NX indexedCompactNx = new NX(EnumSet.of(NX.ConfigFeature.CHILD_INDEX, NX.ConfigFeature.COMPACT_TREE));
+
+    @Test
+    void navigateLikeWithoutIndex() {
+        for (NX nx : new NX[] { indexedNx, indexedCompactNx }) {
+            NX.Cursor expected = parseResource(plainNx, "data/countries.xml");
+            NX.Cursor actual = parseResource(nx, "data/countries.xml");
+
+            assertEquals(expected.count("country"), actual.count("country"));
+            assertEquals(expected.to(10, "country").describePath(), actual.to(10, "country").describePath());
+            assertEquals(expected.to(10, "country").attr("countryName").text(), actual.to(10, "COUNTRY").attr("countryName").text());
+
+            NX.Ex expectedMissing = assertThrows(NX.MissingNode.class, () -> expected.to(1000, "country"));
+            NX.Ex actualMissing = assertThrows(NX.MissingNode.class, () -> actual.to(1000, "country"));
+            assertEquals(expectedMissing.getMessage(), actualMissing.getMessage());
+
+            assertThrows(NX.Ambiguous.class, () -> actual.to("country"));
+            assertEquals(0, actual.count("missing"));
+            assertFalse(actual.hasChildNode("missing"));
+        }
+    }
+
+    @Test
+    void namespacePrefixIsOptional() {
+        for (NX nx : new NX[] { indexedNx, indexedCompactNx }) {
+            NX.Cursor header = parseResource(nx, "soap/soap-request.xml").to("Header", "RequestHeader");
+
+            assertEquals(1, header.count("networkCode"));
+            assertEquals(1, header.count("ns1:networkCode"));
+            assertEquals(header.to("networkCode").text(), header.to(0, "ns1:NetworkCode").text());
+        }
+    }
+
+    @Test
+    void appendedAndRemovedNodes() {
+        NX.Cursor cursor = indexedNx.from("<root><a>1</a><b>2</b></root>");
+        assertEquals(1, cursor.count("a"));
+
+        cursor.append("a").text("3");
+        assertEquals(2, cursor.count("a"));
+        assertEquals("3", cursor.to(1, "a").text());
+
+        cursor.appendAfter("c", child -> child.name().equals("b"));
+        assertEquals(1, cursor.count("c"));
+
+        cursor.to(0, "a").remove();
+        assertEquals("3", cursor.to("a").text());
+
+        cursor.removeChildren(child -> child.name().equals("b"));
+        assertFalse(cursor.hasChildNode("b"));
+    }
+
+    @Test
+    void replacedText() {
+        NX.Cursor cursor = indexedNx.from("<root><a><b>1</b></a></root>");
+        assertTrue(cursor.to("a").hasChildNode("b"));
+
+        cursor.to("a").text("replaced");
+        assertFalse(cursor.to("a").hasChildNode("b"));
+        assertEquals("replaced", cursor.to("a").text());
+    }
+
+    @Test
+    void insertedCollection() {
+        NX.Cursor cursor = indexedNx.from("<people><person name='Prototype' /></people>");
+        assertEquals(1, cursor.count("person"));
+
+        cursor.insertCollection("person", Arrays.asList("Nasse Nøff", "Donald Duck"), (person, name) -> person.attr("name").text(name));
+
+        assertEquals(2, cursor.count("person"));
+        assertEquals("Donald Duck", cursor.to(1, "person").attr("name").text());
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+import java.util.EnumSet;
+import java.util.List;
+
+import static com.developerb.nmxmlp.NX.Feature.RETAIN_DTD;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactTreeTest extends AbstractNXTest {
+
+    private final NX.ReadContext noDtd = new NX.ReadContext((publicId, systemId) -> new InputSource(new StringReader("")));
+
+    private final NX domNx = new NX(EnumSet.of(NX.ConfigFeature.NATIVE_DUMP));
+    private final NX compactNx = new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE));
+
+    @Test
+    void navigateLikeDom() {
+        NX.Cursor dom = parseResource(domNx, "soap/soap-request.xml", noDtd);
+        NX.Cursor compact = parseResource(compactNx, "soap/soap-request.xml", noDtd);
+
+        NX.Cursor domHeader = dom.to("Header", "RequestHeader");
+        NX.Cursor compactHeader = compact.to("Header", "RequestHeader");
+
+        assertEquals(domHeader.describePath(), compactHeader.describePath());
+        assertEquals(domHeader.name(), compactHeader.name());
+        assertEquals(domHeader.text(), compactHeader.text());
+        assertEquals(domHeader.to("networkCode").text(), compactHeader.to("NETWORKCODE").text());
+        assertEquals(domHeader.attr("mustUnderstand").text(), compactHeader.attr("soapenv:mustUnderstand").text());
+        assertEquals(domHeader.count("networkCode"), compactHeader.count("ns1:networkCode"));
+        assertEquals("urn:x", compactNx.from("<a xmlns:x=\"urn:x\"/>").attr("xmlns:x").text());
+
+        assertEquals(dom.text(), compact.text());
+        assertEquals(dom.toString(), compact.toString());
+    }
+
+    @Test
+    void iterateAndExtract() {
+        NX.Cursor dom = parseResource(domNx, "data/countries.xml", noDtd);
+        NX.Cursor compact = parseResource(compactNx, "data/countries.xml", noDtd);
+
+        NX.Extractor<String> extractor = cursor -> cursor.describePath() + " " + cursor.attr("countryName").text() + " " + cursor.optionalAttr("missing").text();
+        List<String> expected = dom.extractCollection("country", extractor);
+
+        assertEquals(expected, compact.extractCollection("country", extractor));
+        assertEquals(dom.count("country"), compact.count("country"));
+        assertEquals(dom.to(10, "country").describePath(), compact.to(10, "country").describePath());
+        assertEquals(2000L, (long) compactNx.from("<a><b>2000</b></a>").to("b").extract(Long.class));
+    }
+
+    @Test
+    void textIncludesCdataAndDescendants() {
+        String xml = "<a>one &amp; <b>two <![CDATA[<three>]]></b><!-- not text --><?pi not text?> four</a>";
+
+        assertEquals(domNx.from(xml).text(), compactNx.from(xml).text());
+        assertEquals("two <three>", compactNx.from(xml).to("b").text());
+        assertEquals("", compactNx.from("<a><b/></a>").to("b").text());
+    }
+
+    @Test
+    void errorsLikeDom() {
+        String xml = "<root><a>1</a><a>2</a><b>3</b></root>";
+
+        NX.Ex domMissing = assertThrows(NX.MissingNode.class, () -> domNx.from(xml).to("c"));
+        NX.Ex compactMissing = assertThrows(NX.MissingNode.class, () -> compactNx.from(xml).to("c"));
+        assertEquals(domMissing.getMessage(), compactMissing.getMessage());
+
+        NX.Ex domPosition = assertThrows(NX.MissingNode.class, () -> domNx.from(xml).to(2, "a"));
+        NX.Ex compactPosition = assertThrows(NX.MissingNode.class, () -> compactNx.from(xml).to(2, "a"));
+        assertEquals(domPosition.getMessage(), compactPosition.getMessage());
+
+        assertThrows(NX.Ambiguous.class, () -> compactNx.from(xml).to("a"));
+        assertThrows(NX.MissingAttribute.class, () -> compactNx.from(xml).attr("missing"));
+
+        assertThat(compactNx.from(xml).toOptional("c", "d").describePath()).isEqualTo("root >> ???");
+        assertNull(compactNx.from(xml).toOptional("c").text());
+        assertTrue(compactNx.from(xml).hasChildNode("b"));
+        assertFalse(compactNx.from(xml).hasAttr("b"));
+        assertEquals("3", compactNx.from(xml).require(cursor -> cursor.name().equals("b")).text());
+    }
+
+    @Test
+    void cursorsAreReadOnly() {
+        NX.Cursor cursor = compactNx.from("<root a=\"1\"><b>text</b></root>");
+
+        assertThrows(UnsupportedOperationException.class, () -> cursor.append("c"));
+        assertThrows(UnsupportedOperationException.class, () -> cursor.setAttr("a", "2"));
+        assertThrows(UnsupportedOperationException.class, () -> cursor.attr("a").text("2"));
+        assertThrows(UnsupportedOperationException.class, () -> cursor.to("b").text("changed"));
+        assertThrows(UnsupportedOperationException.class, () -> cursor.to("b").remove());
+    }
+
+    @Test
+    void dumpLikeDom() {
+        for (String resource : new String[] { "data/countries.xml", "soap/soap-request.xml", "svg/simple-svg.xhtml" }) {
+            NX.Cursor dom = parseResource(domNx, resource, noDtd);
+            NX.Cursor compact = parseResource(compactNx, resource, noDtd);
+
+            assertEquals(dom.dumpXml(UTF_8), compact.dumpXml(UTF_8), resource);
+            assertEquals(dom.dumpXml(ISO_8859_1), compact.dumpXml(ISO_8859_1), resource);
+        }
+
+        String mixed = "<!DOCTYPE a SYSTEM \"test://a.dtd\"><a x=\"&quot;\">one<![CDATA[two]]><!--three--><?four five?><b/></a>";
+        assertEquals(domNx.from(mixed, noDtd).dumpXml(UTF_8, RETAIN_DTD), compactNx.from(mixed, noDtd).dumpXml(UTF_8, RETAIN_DTD));
+    }
+
+}
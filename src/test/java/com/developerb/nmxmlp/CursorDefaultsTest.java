@@ -0,0 +1,231 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Cursors implemented outside of this library only have to implement the methods
+ * that were part of the interface before the rest got default implementations.
+ */
+class CursorDefaultsTest {
+
+    private final NX.Cursor root = new Forwarding(new NX().from("<root size='2'><n>1</n><n> 20 </n><d>0.5</d><text>abc</text></root>"));
+
+    @Test
+    void navigateByPath() {
+        assertEquals(" 20 ", root.to(NX.path().to(1, "n")).text());
+        assertEquals("0.5", root.toOptional(NX.path("d")).text());
+        assertNull(root.toOptional(NX.path().to(2, "n")).text());
+        assertNull(root.toOptional(NX.path("missing", "deeper")).text());
+        assertThrows(NX.MissingNode.class, () -> root.to(NX.path("missing")));
+    }
+
+    @Test
+    void extractNumbers() {
+        assertEquals(20, root.to(1, "n").extractInt());
+        assertEquals(1L, root.to(0, "n").extractLong());
+        assertEquals(0.5, root.to("d").extractDouble());
+        assertEquals(2, root.attrAsInt("size"));
+
+        assertArrayEquals(new int[] { 1, 20 }, root.extractCollectionAsIntArray("n"));
+        assertArrayEquals(new long[] { 1, 20 }, root.extractCollectionAsLongArray("n"));
+
+        assertThrows(NX.InvalidNumber.class, () -> root.to("text").extractInt());
+    }
+
+    @Test
+    void collections() {
+        assertEquals("1,  20 ", root.stream("n").map(NX.Cursor::text).collect(Collectors.joining(", ")));
+        assertEquals("[1,  20 ]", root.extractCollectionParallel("n", NX.Cursor::text, ForkJoinPool.commonPool()).toString());
+    }
+
+    @Test
+    void freezeAndDump() {
+        NX.Cursor frozen = root.freeze();
+        assertEquals(" 20 ", frozen.to(1, "n").text());
+        assertThrows(UnsupportedOperationException.class, () -> frozen.append("more"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        root.to("d").dumpXmlAsync(output, UTF_8, NX.Feature.DUMP_WITHOUT_XML_DECLARATION).join();
+        assertEquals("<d>0.5</d>", new String(output.toByteArray(), UTF_8));
+    }
+
+    private static final class Forwarding implements NX.Cursor {
+
+        private final NX.Cursor delegate;
+
+        Forwarding(NX.Cursor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public NX.Cursor to(String firstName, String... remainingNames) {
+            return new Forwarding(delegate.to(firstName, remainingNames));
+        }
+
+        @Override
+        public NX.Cursor toOptional(String firstNeedle, String... remainingNeedles) {
+            return new Forwarding(delegate.toOptional(firstNeedle, remainingNeedles));
+        }
+
+        @Override
+        public NX.Cursor to(int position, String tagName) {
+            return new Forwarding(delegate.to(position, tagName));
+        }
+
+        @Override
+        public NX.Cursor append(String nodeName) {
+            return new Forwarding(delegate.append(nodeName));
+        }
+
+        @Override
+        public NX.Cursor appendAfter(String nodeName, Predicate<NX.Cursor> predicate) {
+            return new Forwarding(delegate.appendAfter(nodeName, predicate));
+        }
+
+        @Override
+        public void setAttr(String name, String value) {
+            delegate.setAttr(name, value);
+        }
+
+        @Override
+        public int count(String tagName) {
+            return delegate.count(tagName);
+        }
+
+        @Override
+        public <R> R extract(NX.Extractor<R> extractor) {
+            return extractor.transform(this);
+        }
+
+        @Override
+        public <R> R extract(Class<R> type) {
+            return delegate.extract(type);
+        }
+
+        @Override
+        public <R> List<R> extractCollection(String needle, NX.Extractor<R> extractor) {
+            return delegate.extractCollection(needle, cursor -> extractor.transform(new Forwarding(cursor)));
+        }
+
+        @Override
+        public <R> List<R> extractCollection(String needle, Class<R> type) {
+            return delegate.extractCollection(needle, type);
+        }
+
+        @Override
+        public void iterateCollection(String needle, NX.Iterator extractor) {
+            delegate.iterateCollection(needle, cursor -> extractor.on(new Forwarding(cursor)));
+        }
+
+        @Override
+        public void remove() {
+            delegate.remove();
+        }
+
+        @Override
+        public void removeChildren(Predicate<NX.Cursor> predicate) {
+            delegate.removeChildren(predicate);
+        }
+
+        @Override
+        public String text() {
+            return delegate.text();
+        }
+
+        @Override
+        public String describePath() {
+            return delegate.describePath();
+        }
+
+        @Override
+        public String name() {
+            return delegate.name();
+        }
+
+        @Override
+        public void removeAttr(String name) {
+            delegate.removeAttr(name);
+        }
+
+        @Override
+        public NX.Cursor text(String updatedText) {
+            return new Forwarding(delegate.text(updatedText));
+        }
+
+        @Override
+        public String dumpXml(Charset charset, NX.Feature... features) {
+            return delegate.dumpXml(charset, features);
+        }
+
+        @Override
+        public void dumpXml(OutputStream output, Charset charset, NX.Feature... features) {
+            delegate.dumpXml(output, charset, features);
+        }
+
+        @Override
+        public NX.Attribute attr(String name) {
+            return delegate.attr(name);
+        }
+
+        @Override
+        public NX.Attribute optionalAttr(String name) {
+            return delegate.optionalAttr(name);
+        }
+
+        @Override
+        public <R> void insertCollection(String prototypeName, Iterable<R> input, NX.Inserter<R> inserter) {
+            delegate.insertCollection(prototypeName, input, inserter);
+        }
+
+        @Override
+        public <R> void update(R payload, NX.Inserter<R> inserter) {
+            delegate.update(payload, inserter);
+        }
+
+        @Override
+        public boolean hasAttr(String attributeName) {
+            return delegate.hasAttr(attributeName);
+        }
+
+        @Override
+        public boolean hasChildNode(String name) {
+            return delegate.hasChildNode(name);
+        }
+
+        @Override
+        public NX.Cursor require(Predicate<NX.Cursor> predicate) {
+            return new Forwarding(delegate.require(predicate));
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class DocumentBuilderPoolTest {
+
+    private final String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<!DOCTYPE root SYSTEM \"test://entities.dtd\">" +
+            "<root><name>&name;</name></root>";
+
+    private final String dtd = "<!ENTITY name \"Donald Duck\">";
+
+    @Test
+    void entityResolverIsAppliedPerParse() {
+        NX nx = new NX();
+        NX.ReadContext context = new NX.ReadContext((publicId, systemId) -> new InputSource(new StringReader(dtd)));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Donald Duck", nx.from(xml, context).to("name").text());
+        }
+
+        try {
+            nx.from(xml);
+            fail("Should not have used the entity resolver from a previous parse");
+        } catch (NX.Ex expected) {
+            // test:// is not a known protocol
+        }
+
+        assertEquals("Donald Duck", nx.from(xml, context).to("name").text());
+    }
+
+    @Test
+    void buildersCanBeReusedAfterFailedParse() {
+        NX nx = new NX();
+
+        for (int i = 0; i < 10; i++) {
+            try {
+                nx.from("<root><unclosedTag></root>");
+                fail("Should not have accepted invalid xml");
+            } catch (NX.Ex expected) {
+            }
+
+            assertEquals("value", nx.from("<root><a>value</a></root>").to("a").text());
+        }
+    }
+
+    @Test
+    void parseConcurrently() throws Exception {
+        NX nx = new NX();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                final int number = i;
+                futures.add(executor.submit(() -> nx.from("<root><n>" + number + "</n></root>").to("n").extract(Integer.class)));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(i, (int) futures.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -17,10 +17,15 @@ package com.developerb.nmxmlp;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
 class ExtractorRegistryTest {
@@ -67,6 +72,80 @@ class ExtractorRegistryTest {
         }
     }
 
+    @Test
+    void extractorsAreUsedForSubtypes() {
+        NX nx = new NX().registerExtractor(Member.class, new MemberExtractor());
+        NX.Cursor cursor = nx.from("<person><first>Nasse</first><last>Nøff</last></person>");
+
+        assertThrows(NX.NoExtractor.class, () -> cursor.extract(Named.class));
+
+        nx.registerExtractor(Named.class, c -> new Board("Nøff"));
+        assertEquals(new Board("Nøff"), cursor.extract(Board.class));
+        assertEquals(new Member("Nasse", "Nøff"), cursor.extract(Member.class));
+
+        nx.registerExtractor(Object.class, NX.Cursor::text);
+        assertThat(cursor.extract(CharSequence.class)).isEqualTo("NasseNøff");
+
+        NX.Ex wrongType = assertThrows(NX.Ex.class, () -> cursor.extract(StringBuilder.class));
+        assertThat(wrongType).hasMessage("person -- Extractor registered for java.lang.Object returned java.lang.String, expected java.lang.StringBuilder");
+    }
+
+    @Test
+    void registerInBulk() {
+        NX nx = new NX().registerExtractors(registration -> registration
+                .register(Member.class, new MemberExtractor())
+                .register(String.class, NX.Cursor::text));
+
+        NX.Cursor cursor = nx.from("<person><first>Nasse</first><last>Nøff</last></person>");
+
+        assertEquals(new Member("Nasse", "Nøff"), cursor.extract(Member.class));
+        assertEquals("Nasse", cursor.to("first").extract(String.class));
+    }
+
+    @Test
+    void registerWhileExtracting() throws Exception {
+        NX nx = new NX();
+        NX.Cursor cursor = nx.from("<root><n>1</n><n>2</n></root>").freeze();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<List<Integer>>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(executor.submit(() -> cursor.extractCollection("n", Integer.class)));
+                nx.registerExtractor(Member.class, new MemberExtractor());
+            }
+
+            for (Future<List<Integer>> future : futures) {
+                assertThat(future.get()).containsExactly(1, 2);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    interface Named {
+    }
+
+    static class Board implements Named {
+
+        final String name;
+
+        Board(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Board && name.equals(((Board) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+    }
 
     static class MemberExtractor implements NX.Extractor<Member> {
 
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.developerb.nmxmlp.NX.Feature.RETAIN_DTD;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FreezeTest extends AbstractNXTest {
+
+    @Test
+    void frozenDocumentsLookTheSame() {
+        for (String resource : new String[] { "data/countries.xml", "soap/soap-request.xml", "svg/simple-svg.xhtml" }) {
+            NX.Cursor cursor = parseResource(resource);
+            NX.Cursor frozen = cursor.freeze();
+
+            assertEquals(cursor.dumpXml(UTF_8), frozen.dumpXml(UTF_8), resource);
+            assertEquals(cursor.text(), frozen.text(), resource);
+        }
+
+        String mixed = "<a x=\"1\">one<![CDATA[two]]><!--three--><?four five?><b/></a>";
+        assertEquals(parse(mixed).dumpXml(UTF_8, RETAIN_DTD), parse(mixed).freeze().dumpXml(UTF_8, RETAIN_DTD));
+    }
+
+    @Test
+    void frozenCursorPointsToTheSameNode() {
+        NX.Cursor requestHeader = parseResource("soap/soap-request.xml").to("Header", "RequestHeader");
+        NX.Cursor frozen = requestHeader.freeze();
+
+        assertEquals(requestHeader.describePath(), frozen.describePath());
+        assertEquals("123456", frozen.to("ns1:networkCode").text());
+        assertEquals("0", frozen.attr("mustUnderstand").text());
+
+        NX.Cursor country = parseResource("data/countries.xml").to(10, "country");
+        assertEquals("countries >> country[10]", country.freeze().describePath());
+        assertEquals(country.attr("countryName").text(), country.freeze().attr("countryName").text());
+
+        NX.Cursor missing = requestHeader.toOptional("missing").freeze();
+        assertNull(missing.text());
+        assertEquals(requestHeader.describePath() + " >> ???", missing.describePath());
+    }
+
+    @Test
+    void laterChangesDontAffectTheFrozenCopy() {
+        NX.Cursor people = parse("<people><person name='Prototype' /></people>");
+        people.insertCollection("person", Arrays.asList("Nasse Nøff", "Donald Duck"), (person, name) -> person.attr("name").text(name));
+        people.append("note").text("Appended");
+
+        NX.Cursor frozen = people.freeze();
+        assertEquals(people.dumpXml(UTF_8), frozen.dumpXml(UTF_8));
+
+        people.to(0, "person").remove();
+        people.to("note").text("Changed");
+
+        assertEquals(2, frozen.count("person"));
+        assertEquals("Appended", frozen.to("note").text());
+        assertEquals("Nasse Nøff", frozen.to(0, "person").attr("name").text());
+    }
+
+    @Test
+    void frozenCursorsAreReadOnly() {
+        NX.Cursor frozen = parse("<root><a>1</a></root>").freeze();
+
+        assertThrows(UnsupportedOperationException.class, () -> frozen.append("b"));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.to("a").text("2"));
+    }
+
+    @Test
+    void removedNodesCantBeFrozen() {
+        NX.Cursor root = parse("<root><a>1</a></root>");
+        NX.Cursor a = root.to("a");
+        a.remove();
+
+        assertThrows(NX.Ex.class, a::freeze);
+    }
+
+    @Test
+    void concurrentNavigation() throws Exception {
+        NX.Cursor countries = parseResource("data/countries.xml").freeze();
+        List<String> expected = countries.extractCollection("country", country -> country.attr("countryName").text());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executor.submit(() -> countries.extractCollection("country", country -> country.attr("countryName").text())));
+            }
+
+            for (Future<List<String>> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -17,9 +17,14 @@ package com.developerb.nmxmlp;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 class IterationTest extends AbstractNXTest {
 
@@ -33,4 +38,48 @@ class IterationTest extends AbstractNXTest {
         assertEquals(3, sum.get());
     }
 
+    @Test
+    void iterateReusingCursor() throws NX.Ex {
+        NX.Cursor numbersCursor = parse("<numbers><n>1</n><x>0</x><n>2</n><n>3</n></numbers>");
+
+        List<NX.Cursor> cursors = new ArrayList<>();
+        List<NX.Cursor> copies = new ArrayList<>();
+        AtomicInteger sum = new AtomicInteger(0);
+
+        numbersCursor.iterateCollectionReusingCursor("n", cursor -> {
+            sum.addAndGet(cursor.extract(Integer.class));
+            cursors.add(cursor);
+            copies.add(cursor.copy());
+        });
+
+        assertEquals(6, sum.get());
+        assertSame(cursors.get(0), cursors.get(2));
+        assertEquals("numbers >> n[1]", copies.get(1).describePath());
+        assertEquals("2", copies.get(1).text());
+    }
+
+    @Test
+    void removeWhileReusingCursor() throws NX.Ex {
+        NX.Cursor numbersCursor = parse("<numbers><n>1</n><n>2</n><n>3</n></numbers>");
+
+        numbersCursor.iterateCollectionReusingCursor("n", cursor -> {
+            if (!cursor.text().equals("2")) {
+                cursor.remove();
+            }
+        });
+
+        assertEquals("2", numbersCursor.to("n").text());
+    }
+
+    @Test
+    void iterateCompactTreeReusingCursor() throws NX.Ex {
+        NX nx = new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE));
+        NX.Cursor numbersCursor = nx.from("<numbers><n>1</n><x>0</x><n>2</n><n>3</n></numbers>");
+
+        List<String> paths = new ArrayList<>();
+        numbersCursor.iterateCollectionReusingCursor("n", cursor -> paths.add(cursor.copy().describePath() + "=" + cursor.text()));
+
+        assertThat(paths).containsExactly("numbers >> n=1", "numbers >> n[1]=2", "numbers >> n[2]=3");
+    }
+
 }
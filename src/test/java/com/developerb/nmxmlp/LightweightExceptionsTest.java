@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static com.developerb.nmxmlp.NX.ConfigFeature.COMPACT_TREE;
+import static com.developerb.nmxmlp.NX.ConfigFeature.LIGHTWEIGHT_EXCEPTIONS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LightweightExceptionsTest {
+
+    private final String xml = "<people><person>Nasse Nøff</person><person><name>Donald</name></person><note/></people>";
+
+    @Test
+    void sameMessagesWithoutStackTraces() {
+        for (boolean compact : new boolean[] { false, true }) {
+            NX.Cursor regular = new NX(compact ? EnumSet.of(COMPACT_TREE) : EnumSet.noneOf(NX.ConfigFeature.class)).from(xml);
+            NX.Cursor lightweight = new NX(compact ? EnumSet.of(COMPACT_TREE, LIGHTWEIGHT_EXCEPTIONS) : EnumSet.of(LIGHTWEIGHT_EXCEPTIONS)).from(xml);
+
+            NX.MissingNode expected = assertThrows(NX.MissingNode.class, () -> regular.to("missing"));
+            NX.MissingNode actual = assertThrows(NX.MissingNode.class, () -> lightweight.to("missing"));
+
+            assertTrue(expected.getStackTrace().length > 0);
+            assertEquals(0, actual.getStackTrace().length);
+            assertEquals("people -- Unable to find 'missing' - Did you mean: note, person?", actual.getMessage());
+            assertEquals(expected.getMessage(), actual.getMessage());
+
+            assertEquals(
+                    assertThrows(NX.MissingNode.class, () -> regular.to(2, "person")).getMessage(),
+                    assertThrows(NX.MissingNode.class, () -> lightweight.to(2, "person")).getMessage());
+
+            assertEquals(
+                    assertThrows(NX.Ambiguous.class, () -> regular.to("person")).getMessage(),
+                    assertThrows(NX.Ambiguous.class, () -> lightweight.to("person")).getMessage());
+        }
+    }
+
+    @Test
+    void messageDescribesTheDocumentWhenThrown() {
+        NX.Cursor people = new NX(EnumSet.of(LIGHTWEIGHT_EXCEPTIONS)).from(xml);
+        NX.MissingNode ex = assertThrows(NX.MissingNode.class, () -> people.to("missing"));
+
+        people.append("added");
+
+        assertEquals("people -- Unable to find 'missing' - Did you mean: note, person?", ex.getMessage());
+        assertSame(ex.getMessage(), ex.getMessage());
+    }
+
+    @Test
+    void reusedCursorsAreDescribedWhereTheyThrew() {
+        NX.Cursor people = new NX(EnumSet.of(LIGHTWEIGHT_EXCEPTIONS)).from(xml);
+        List<NX.MissingNode> misses = new ArrayList<>();
+
+        people.iterateCollectionReusingCursor("person", cursor -> {
+            try {
+                cursor.to("missing");
+            } catch (NX.MissingNode ex) {
+                misses.add(ex);
+            }
+        });
+
+        assertEquals("people >> person -- Unable to find 'missing' - Did you mean: #text?", misses.get(0).getMessage());
+        assertEquals("people >> person[1] -- Unable to find 'missing' - Did you mean: name?", misses.get(1).getMessage());
+    }
+
+    @Test
+    void missesAreReused() {
+        for (NX nx : new NX[] { new NX(), new NX(EnumSet.of(COMPACT_TREE)) }) {
+            NX.Cursor people = nx.from(xml);
+            NX.Cursor missing = people.toOptional("missing");
+
+            assertSame(missing, people.toOptional("other"));
+            assertSame(missing, people.toOptional(NX.path("missing", "deeper")));
+            assertNull(missing.text());
+            assertEquals("people >> ???", missing.describePath());
+            assertEquals("people >> note", people.toOptional("note").describePath());
+        }
+    }
+
+}
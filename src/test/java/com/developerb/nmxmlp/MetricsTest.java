@@ -0,0 +1,139 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import com.google.common.io.Resources;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumSet;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MetricsTest {
+
+    private final String xml = "<people><person>Nasse Nøff</person><!-- comment --><person><name>Donald</name></person></people>";
+
+    @Test
+    void parseAndDump() {
+        for (NX nx : new NX[] { new NX(), new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE)) }) {
+            NX.HistogramMetrics metrics = new NX.HistogramMetrics();
+            nx.registerMetrics(metrics);
+
+            NX.Cursor cursor = nx.from(xml);
+            assertEquals(1, metrics.parsedBytes().count());
+            assertEquals(xml.getBytes().length, metrics.parsedBytes().sum());
+            assertEquals(7, metrics.parsedNodes().sum());
+            assertEquals(1, metrics.parseNanos().count());
+
+            String dumped = cursor.dumpXml(UTF_8);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            cursor.to(1, "person").dumpXml(output, UTF_8);
+
+            assertEquals(2, metrics.dumpedBytes().count());
+            assertEquals(dumped.getBytes(UTF_8).length + output.size(), metrics.dumpedBytes().sum());
+            assertEquals(2, metrics.dumpNanos().count());
+        }
+    }
+
+    @Test
+    void navigationFailures() {
+        for (NX nx : new NX[] { new NX(), new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE)) }) {
+            NX.HistogramMetrics metrics = new NX.HistogramMetrics();
+            NX.Cursor cursor = nx.registerMetrics(metrics).from(xml);
+
+            assertThrows(NX.MissingNode.class, () -> cursor.to("missing"));
+            assertThrows(NX.MissingNode.class, () -> cursor.to(2, "person"));
+            assertThrows(NX.Ambiguous.class, () -> cursor.to("person"));
+            cursor.toOptional("missing");
+
+            assertEquals(2, metrics.missingNodeCount());
+            assertEquals(1, metrics.ambiguousCount());
+        }
+    }
+
+    @Test
+    void resourcesAreCountedLikeTheCompactTree() throws IOException {
+        for (String resource : new String[] { "data/countries.xml", "soap/soap-request.xml", "svg/simple-svg.xhtml" }) {
+            NX.HistogramMetrics dom = new NX.HistogramMetrics();
+            NX.HistogramMetrics compact = new NX.HistogramMetrics();
+
+            new NX().registerMetrics(dom).from(Resources.getResource(resource).openStream(), new NX.ReadContext(null));
+            new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE)).registerMetrics(compact).from(Resources.getResource(resource).openStream(), new NX.ReadContext(null));
+
+            assertEquals(dom.parsedNodes().sum(), compact.parsedNodes().sum(), resource);
+            assertEquals(Resources.toByteArray(Resources.getResource(resource)).length, compact.parsedBytes().sum());
+        }
+    }
+
+    @Test
+    void histogram() {
+        NX.Histogram histogram = new NX.Histogram();
+        assertEquals(0, histogram.percentile(0.5));
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        histogram.record(-1);
+
+        assertEquals(101, histogram.count());
+        assertEquals(5050, histogram.sum());
+        assertEquals(100, histogram.max());
+        assertEquals(0, histogram.percentile(0));
+        assertEquals(63, histogram.percentile(0.5));
+        assertEquals(100, histogram.percentile(0.99));
+        assertEquals(1, histogram.bucketCount(0));
+        assertEquals(2, histogram.bucketCount(2));
+        assertEquals(3, NX.Histogram.bucketUpperBound(2));
+        assertThat(histogram.toString()).contains("count=101");
+    }
+
+    @Test
+    void concurrentRecording() throws InterruptedException {
+        NX.Histogram histogram = new NX.Histogram();
+        Thread[] threads = new Thread[4];
+
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    histogram.record(i);
+                }
+            });
+
+            threads[t].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40000, histogram.count());
+        assertEquals(9999, histogram.max());
+
+        long buckets = 0;
+        for (int i = 0; i < NX.Histogram.BUCKETS; i++) {
+            buckets += histogram.bucketCount(i);
+        }
+
+        assertEquals(40000, buckets);
+    }
+
+}
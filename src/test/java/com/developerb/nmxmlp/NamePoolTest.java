@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class NamePoolTest {
+
+    @Test
+    void namesDifferingInCaseShareCode() {
+        NamePool pool = new NamePool();
+
+        assertEquals(pool.code("countryCode"), pool.code("COUNTRYCODE"));
+        assertEquals(pool.code("countryCode"), pool.lookup("CountryCode"));
+        assertEquals(pool.code("Nøff"), pool.code("NØFF"));
+        assertNotEquals(pool.code("country"), pool.code("countries"));
+        assertNotEquals(pool.code("a:b"), pool.code("b"));
+    }
+
+    @Test
+    void lookupDoesNotAddNames() {
+        NamePool pool = new NamePool();
+
+        assertEquals(NamePool.UNKNOWN, pool.lookup("never-seen"));
+        assertEquals(NamePool.UNKNOWN, pool.lookup("NEVER-SEEN"));
+        assertEquals(pool.code("never-seen"), pool.lookup("NEVER-SEEN"));
+    }
+
+    @Test
+    void documentsHaveTheirOwnNames() {
+        for (NX nx : new NX[] { new NX(), new NX(EnumSet.of(NX.ConfigFeature.CHILD_INDEX)), new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE, NX.ConfigFeature.CHILD_INDEX)) }) {
+            NX.Cursor first = nx.from("<a><only-in-first>1</only-in-first></a>");
+            NX.Cursor second = nx.from("<A><B>2</B></A>");
+
+            assertEquals(0, second.count("only-in-first"));
+            assertEquals("1", first.to("ONLY-IN-FIRST").text());
+            assertEquals("2", second.to(NX.path("b")).text());
+            assertEquals(0, first.count("b"));
+        }
+    }
+
+    @Test
+    void domCodesFollowModifications() {
+        NX.Cursor root = new NX().from("<root id='1'><a/></root>");
+
+        assertEquals(1, root.count("A"));
+        assertEquals("1", root.attr("ID").text());
+
+        root.append("B");
+        root.append("a");
+        root.setAttr("Name", "x");
+        root.removeAttr("id");
+
+        assertEquals(2, root.count("a"));
+        assertEquals(1, root.count("b"));
+        assertEquals("x", root.attr("name").text());
+        assertFalse(root.hasAttr("id"));
+
+        root.removeChildren(child -> child.name().equals("B"));
+        assertEquals(0, root.count("b"));
+    }
+
+    @Test
+    void concurrentCodesAreConsistent() throws Exception {
+        NamePool pool = new NamePool();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<int[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final boolean upperCase = i % 2 == 0;
+
+                futures.add(executor.submit(() -> {
+                    int[] codes = new int[500];
+                    for (int n = 0; n < codes.length; n++) {
+                        String name = "name-" + n;
+                        codes[n] = pool.code(upperCase ? name.toUpperCase() : name);
+                    }
+
+                    return codes;
+                }));
+            }
+
+            int[] expected = futures.get(0).get();
+            for (Future<int[]> future : futures) {
+                int[] codes = future.get();
+
+                for (int n = 0; n < codes.length; n++) {
+                    assertEquals(expected[n], codes[n]);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
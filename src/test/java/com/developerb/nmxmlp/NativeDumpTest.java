@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.EnumSet;
+
+import static com.developerb.nmxmlp.NX.Feature.DUMP_INDENTED_XML;
+import static com.developerb.nmxmlp.NX.Feature.DUMP_WITHOUT_XML_DECLARATION;
+import static com.developerb.nmxmlp.NX.Feature.RETAIN_DTD;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_16;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NativeDumpTest extends AbstractNXTest {
+
+    private final NX.ReadContext noDtd = new NX.ReadContext((publicId, systemId) -> new InputSource(new StringReader("")));
+
+    private final NX transformerNx = new NX();
+    private final NX nativeNx = new NX(EnumSet.of(NX.ConfigFeature.NATIVE_DUMP));
+
+    @Test
+    void resourcesAreDumpedLikeTheTransformer() {
+        for (String resource : new String[] { "data/countries.xml", "soap/soap-request.xml", "svg/simple-svg.xhtml" }) {
+            NX.Cursor expected = parseResource(transformerNx, resource, noDtd);
+            NX.Cursor actual = parseResource(nativeNx, resource, noDtd);
+
+            for (Charset charset : new Charset[] { UTF_8, ISO_8859_1, US_ASCII, UTF_16 }) {
+                assertSameDump(expected, actual, charset);
+                assertSameDump(expected, actual, charset, DUMP_WITHOUT_XML_DECLARATION);
+                assertSameDump(expected, actual, charset, RETAIN_DTD);
+            }
+        }
+    }
+
+    @Test
+    void subtreesDeclareTheNamespacesTheyUse() {
+        NX.Cursor expected = parseResource(transformerNx, "soap/soap-request.xml", noDtd).to("Body");
+        NX.Cursor actual = parseResource(nativeNx, "soap/soap-request.xml", noDtd).to("Body");
+
+        assertSameDump(expected, actual, UTF_8);
+        assertSameDump(expected.to("getAdUnitsByStatement"), actual.to("getAdUnitsByStatement"), UTF_8);
+    }
+
+    @Test
+    void escaping() {
+        assertSameDump("<r a=\"&amp; &lt; &gt; &quot; ' &#9; &#10; &#13;\">&amp; &lt; &gt; \" ' \t &#13; \n</r>");
+        assertSameDump("<r a=\"&#127; &#128; &#159;\">&#127; &#128; &#159;</r>");
+        assertSameDump("<r a=\"Nøff ☃ 😀\">Nøff ☃ 😀</r>");
+        assertSameDump("<r><![CDATA[a < b]]><![CDATA[ && ]]]]><![CDATA[>]]><![CDATA[ø]]>tail<![CDATA[x]]]]></r>");
+        assertSameDump("<r><!-- a-b c --><?target data?><?empty?><?spaced   data?></r>");
+        assertSameDump("<r><a/><b></b><c>text</c><d><e/></d></r>");
+    }
+
+    @Test
+    void namespaces() {
+        assertSameDump("<r xmlns=\"urn:default\" xmlns:a=\"urn:a\"><a:b a:at=\"x\" at=\"y\"><c xmlns=\"\"/><a:d xmlns:a=\"urn:other\"/></a:b></r>");
+        assertSameDump("<r xmlns:a=\"urn:a\" xmlns:b=\"urn:b\"><a:x b:at=\"1\"><b:y/></a:x></r>");
+    }
+
+    @Test
+    void indentedDocuments() {
+        assertSameDump("<r><a>1</a><b><c>2</c><d/></b><e>text &amp; more</e></r>", DUMP_INDENTED_XML);
+        assertSameDump("<r><a>1</a><!--comment--><?pi data?><b>2</b></r>", DUMP_INDENTED_XML);
+        assertSameDump("<r/>", DUMP_INDENTED_XML, DUMP_WITHOUT_XML_DECLARATION);
+    }
+
+    @Test
+    void indentationFollowsRecentJavaVersions() {
+        // Java 8 ignores xml:space and Java 11 indents cdata sections
+        NX.Cursor cursor = nativeNx.from("<r><a xml:space=\"preserve\"><b>1</b></a><c><![CDATA[cdata]]></c></r>");
+        String nl = System.lineSeparator();
+
+        assertEquals("<r>" + nl +
+                "    <a xml:space=\"preserve\"><b>1</b></a>" + nl +
+                "    <c><![CDATA[cdata]]></c>" + nl +
+                "</r>" + nl, cursor.dumpXml(UTF_8, DUMP_INDENTED_XML, DUMP_WITHOUT_XML_DECLARATION));
+    }
+
+    @Test
+    void documentType() {
+        String publicAndSystem = "<!DOCTYPE root PUBLIC \"NONE\" \"test://validation.dtd\"><root><name>test</name></root>";
+        String systemOnly = "<!DOCTYPE root SYSTEM \"test://validation.dtd\"><root><name>test</name></root>";
+
+        for (String xml : new String[] { publicAndSystem, systemOnly }) {
+            NX.Cursor expected = transformerNx.from(xml, noDtd);
+            NX.Cursor actual = nativeNx.from(xml, noDtd);
+
+            assertSameDump(expected, actual, UTF_8, RETAIN_DTD);
+            assertSameDump(expected, actual, UTF_8, RETAIN_DTD, DUMP_INDENTED_XML);
+            assertSameDump(expected, actual, UTF_8, RETAIN_DTD, DUMP_WITHOUT_XML_DECLARATION);
+            assertSameDump(expected.to("name"), actual.to("name"), UTF_8, RETAIN_DTD);
+        }
+    }
+
+    @Test
+    void modifiedDocuments() {
+        String xml = "<people><person age=\"29\"><name>Nils</name></person></people>";
+
+        NX.Cursor expected = transformerNx.from(xml);
+        NX.Cursor actual = nativeNx.from(xml);
+
+        for (NX.Cursor cursor : new NX.Cursor[] { expected, actual }) {
+            cursor.to("person").to("name").text("Nils & <Nøff>");
+            cursor.to("person").attr("age").text("\"30\" & up");
+        }
+
+        assertSameDump(expected, actual, ISO_8859_1);
+        assertSameDump(expected, actual, US_ASCII, DUMP_INDENTED_XML);
+    }
+
+    @Test
+    void writers() {
+        String xml = "<r a=\"Nøff\"><b>☃ &amp; 😀</b></r>";
+        NX compactNx = new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE));
+
+        for (NX nx : new NX[] { transformerNx, nativeNx, compactNx }) {
+            for (Charset charset : new Charset[] { UTF_8, US_ASCII }) {
+                NX.Cursor cursor = nx.from(xml);
+                StringWriter output = new StringWriter();
+
+                cursor.dumpXml(output, charset, DUMP_INDENTED_XML);
+                assertEquals(cursor.dumpXml(charset, DUMP_INDENTED_XML), output.toString(), "Dumped as " + charset);
+            }
+        }
+    }
+
+    @Test
+    void outputDoesntDependOnTheJavaVersion() {
+        // Java 21 writes the emoji as is, Java 8 doesn't indent whitespace only text
+        String nl = System.lineSeparator();
+
+        assertEquals("<a>é&#128512;</a>", nativeNx.from("<a>é😀</a>").dumpXml(UTF_16, DUMP_WITHOUT_XML_DECLARATION));
+        assertEquals("<r>" + nl +
+                "        " + nl +
+                "    <b>1</b>" + nl +
+                "    " + nl +
+                "</r>" + nl, nativeNx.from("<r>\n    <b>1</b>\n</r>").dumpXml(UTF_8, DUMP_INDENTED_XML, DUMP_WITHOUT_XML_DECLARATION));
+    }
+
+    private void assertSameDump(String xml, NX.Feature... features) {
+        NX.Cursor expected = transformerNx.from(xml);
+        NX.Cursor actual = nativeNx.from(xml);
+
+        for (Charset charset : new Charset[] { UTF_8, ISO_8859_1, US_ASCII }) {
+            assertSameDump(expected, actual, charset, features);
+        }
+    }
+
+    private void assertSameDump(NX.Cursor expected, NX.Cursor actual, Charset charset, NX.Feature... features) {
+        assertEquals(expected.dumpXml(charset, features), actual.dumpXml(charset, features), "Dumped as " + charset);
+    }
+
+}
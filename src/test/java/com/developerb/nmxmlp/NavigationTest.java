@@ -17,6 +17,9 @@ package com.developerb.nmxmlp;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -73,6 +76,16 @@ class NavigationTest extends AbstractNXTest {
         assertEquals("message >> header >> id", describedPath);
     }
 
+    @Test
+    void describePathOfIteratedNodes() {
+        NX.Cursor headers = parse(headersXml);
+        List<String> paths = new ArrayList<>();
+
+        headers.iterateCollection("header", header -> paths.add(header.to("v").describePath()));
+
+        assertThat(paths).containsExactly("headers >> header >> v", "headers >> header[1] >> v");
+    }
+
     @Test
     void describePathMissingNodeUnderLevelTwo() {
         NX.Cursor message = parse(messageXml);
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PathTest {
+
+    private static final NX.Path HEADER_ID = NX.path("header", "id");
+    private static final NX.Path SECOND_VALUE = NX.path().to(1, "header").to("v");
+
+    private final String messageXml = "<message><header><id>id-123</id></header><body/></message>";
+
+    private final String headersXml = "<headers><header><k>k1</k><v>v1</v></header><header><k>k2</k><v>v2</v></header></headers>";
+
+    private final NX[] nxs = {
+            new NX(),
+            new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE)),
+            new NX(EnumSet.of(NX.ConfigFeature.CHILD_INDEX))
+    };
+
+    @Test
+    void navigateLikeNamesOneAtATime() {
+        for (NX nx : nxs) {
+            NX.Cursor message = nx.from(messageXml);
+            NX.Cursor headers = nx.from(headersXml);
+
+            assertEquals(message.to("header", "id").describePath(), message.to(HEADER_ID).describePath());
+            assertEquals("id-123", message.to(NX.path("HEADER", "Id")).text());
+            assertEquals("id-123", message.toOptional(HEADER_ID).text());
+
+            assertEquals(headers.to(1, "header").to("v").describePath(), headers.to(SECOND_VALUE).describePath());
+            assertEquals("v2", headers.to(SECOND_VALUE).text());
+            assertEquals("headers", headers.to(NX.path()).describePath());
+        }
+    }
+
+    @Test
+    void errorsLikeNamesOneAtATime() {
+        for (NX nx : nxs) {
+            NX.Cursor message = nx.from(messageXml);
+            NX.Cursor headers = nx.from(headersXml);
+
+            NX.Ex expected = assertThrows(NX.MissingNode.class, () -> message.to("header", "idd"));
+            NX.Ex actual = assertThrows(NX.MissingNode.class, () -> message.to(NX.path("header", "idd")));
+            assertEquals(expected.getMessage(), actual.getMessage());
+
+            NX.Ex expectedPosition = assertThrows(NX.MissingNode.class, () -> headers.to(2, "header"));
+            NX.Ex actualPosition = assertThrows(NX.MissingNode.class, () -> headers.to(NX.path().to(2, "header")));
+            assertEquals(expectedPosition.getMessage(), actualPosition.getMessage());
+
+            assertThrows(NX.Ambiguous.class, () -> headers.to(NX.path("header")));
+            assertThrows(NX.Ambiguous.class, () -> headers.toOptional(NX.path("header")));
+        }
+    }
+
+    @Test
+    void optionalSteps() {
+        for (NX nx : nxs) {
+            NX.Cursor message = nx.from(messageXml);
+
+            assertNull(message.toOptional(NX.path("header", "missing", "more")).text());
+            assertEquals("message >> header >> ???", message.toOptional(NX.path("header", "missing", "more")).describePath());
+            assertNull(message.toOptional(NX.path().to(1, "header")).text());
+            assertNull(message.toOptional(NX.path("missing")).to(HEADER_ID).text());
+        }
+    }
+
+    @Test
+    void pathsAreImmutable() {
+        NX.Path header = NX.path("header");
+        NX.Path id = header.to("id");
+
+        assertEquals("header", header.toString());
+        assertEquals("header >> id", id.toString());
+        assertEquals("header[1] >> v", SECOND_VALUE.toString());
+
+        String[] names = { "a", "b" };
+        NX.Path path = NX.path(names);
+        names[0] = "changed";
+
+        assertThat(path.toString()).isEqualTo("a >> b");
+        assertThrows(IllegalArgumentException.class, () -> header.to(-1, "id"));
+        assertThrows(IllegalArgumentException.class, () -> NX.path("a", null));
+    }
+
+}
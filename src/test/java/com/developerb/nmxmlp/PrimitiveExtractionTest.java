@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PrimitiveExtractionTest {
+
+    private final String xml = "<root count=' 3 ' big='9223372036854775807' ratio='0.25'>" +
+            "<n>1</n><n> -20 </n><n><![CDATA[300]]></n>" +
+            "<d>1.5</d><d>-2.5e3</d><d>0.1</d>" +
+            "<split>12<![CDATA[34]]></split>" +
+            "<text>abc</text>" +
+            "</root>";
+
+    @Test
+    void extractNumbers() {
+        for (NX nx : new NX[] { new NX(), new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE)) }) {
+            NX.Cursor root = nx.from(xml);
+
+            assertEquals(1, root.to(0, "n").extractInt());
+            assertEquals(-20L, root.to(1, "n").extractLong());
+            assertEquals(300, root.to(2, "n").extractInt());
+            assertEquals(1234, root.to("split").extractInt());
+            assertEquals(-2500.0, root.to(1, "d").extractDouble());
+
+            assertEquals(3, root.attrAsInt("count"));
+            assertEquals(Long.MAX_VALUE, root.attrAsLong("big"));
+            assertEquals(0.25, root.attrAsDouble("ratio"));
+        }
+    }
+
+    @Test
+    void extractCollections() {
+        for (NX nx : new NX[] { new NX(), new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE)) }) {
+            NX.Cursor root = nx.from(xml);
+
+            assertArrayEquals(new int[] { 1, -20, 300 }, root.extractCollectionAsIntArray("n"));
+            assertArrayEquals(new long[] { 1, -20, 300 }, root.extractCollectionAsLongArray("n"));
+            assertArrayEquals(new double[] { 1.5, -2500, 0.1 }, root.extractCollectionAsDoubleArray("d"));
+            assertArrayEquals(new int[0], root.extractCollectionAsIntArray("missing"));
+            assertArrayEquals(new int[0], root.toOptional("missing").extractCollectionAsIntArray("n"));
+        }
+    }
+
+    @Test
+    void invalidNumbers() {
+        for (NX nx : new NX[] { new NX(), new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE)) }) {
+            NX.Cursor root = nx.from(xml);
+
+            NX.InvalidNumber text = assertThrows(NX.InvalidNumber.class, () -> root.to("text").extractInt());
+            assertThat(text.getMessage()).isEqualTo("root >> text -- Expected int - For input string: \"abc\"");
+
+            NX.InvalidNumber element = assertThrows(NX.InvalidNumber.class, () -> root.extractCollectionAsIntArray("d"));
+            assertThat(element.getMessage()).isEqualTo("root >> d -- Expected int - For input string: \"1.5\"");
+
+            NX.InvalidNumber attribute = assertThrows(NX.InvalidNumber.class, () -> root.attrAsInt("big"));
+            assertThat(attribute.getMessage()).contains("int in attribute 'big'");
+
+            assertThrows(NX.MissingAttribute.class, () -> root.attrAsInt("missing"));
+            assertThrows(NX.Ex.class, () -> root.toOptional("missing").extractInt());
+        }
+    }
+
+    @Test
+    void parseLong() {
+        assertEquals(42, Numbers.parseLong("42", 0, 2, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertEquals(42, Numbers.parseLong("<42>", 1, 3, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertEquals(42, Numbers.parseLong("+42", 0, 3, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertEquals(Integer.MIN_VALUE, Numbers.parseLong("-2147483648", 0, 11, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertEquals(Long.MIN_VALUE, Numbers.parseLong("-9223372036854775808", 0, 20, Long.MIN_VALUE, Long.MAX_VALUE));
+
+        for (String invalid : new String[] { "", " ", "-", "+", "1 2", "0x10", "2147483648", "-2147483649", "99999999999999999999" }) {
+            assertThrows(NumberFormatException.class, () -> Numbers.parseLong(invalid, 0, invalid.length(), Integer.MIN_VALUE, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void parseDoubleLikeTheJdk() {
+        String[] numbers = {
+                "0", "-0", "1", "1.", ".5", "0.1", "0.3", "123.456", "-1e10", "1E-5", "2.5e+3",
+                "9007199254740993", "123456789012345678", "0.000000000000000000000001", "1e23", "1e-400",
+                "1.7976931348623157e308", "NaN", "-Infinity", "1d", "0x1p3", "00012.50"
+        };
+
+        for (String number : numbers) {
+            assertEquals(Double.parseDouble(number), Numbers.parseDouble(number, 0, number.length()), number);
+        }
+
+        for (String invalid : new String[] { "", ".", "e5", "1e", "1..2", "abc" }) {
+            assertThrows(NumberFormatException.class, () -> Numbers.parseDouble(invalid, 0, invalid.length()));
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProjectionTest {
+
+    private final String xml = "<soap:Envelope xmlns:soap='http://schemas.xmlsoap.org/soap/envelope/' version='1'>" +
+            "<soap:Header><Session>secret</Session></soap:Header>" +
+            "<soap:Body>" +
+            "<GetOrdersResponse>" +
+            "<Order currencyCode='NOK' status='open'><Id>1</Id><Lines><Line>Nøff</Line></Lines></Order>" +
+            "<Order currencyCode='SEK' status='closed'><Id>2</Id><Lines><Line>Duck</Line></Lines></Order>" +
+            "<Summary>Two orders</Summary>" +
+            "</GetOrdersResponse>" +
+            "</soap:Body>" +
+            "</soap:Envelope>";
+
+    private final NX.Projection ids = NX.projection("Envelope/Body/*/Order/Id", "@currencyCode");
+
+    @Test
+    void projectedNodesBehaveNormally() {
+        NX.Cursor response = new NX().from(xml, ids).to("Body", "GetOrdersResponse");
+
+        assertEquals(Arrays.asList(1, 2), response.extractCollection("Order", order -> order.to("Id").extractInt()));
+        assertEquals("NOK", response.to(0, "Order").attr("currencyCode").text());
+        assertEquals("SEK", response.to(NX.path().to(1, "Order")).attr("currencyCode").text());
+        assertEquals(2, response.count("Order"));
+    }
+
+    @Test
+    void skippedSubtreesAreNeverBuilt() {
+        NX.HistogramMetrics full = new NX.HistogramMetrics();
+        NX.HistogramMetrics projected = new NX.HistogramMetrics();
+
+        new NX().registerMetrics(full).from(xml);
+        NX.Cursor cursor = new NX().registerMetrics(projected).from(xml, ids);
+
+        // Envelope, Body, GetOrdersResponse, two orders with an id and its text
+        assertEquals(9, projected.parsedNodes().sum());
+        assertTrue(full.parsedNodes().sum() > projected.parsedNodes().sum());
+
+        NX.Cursor order = cursor.to("Body", "GetOrdersResponse").to(0, "Order");
+        assertEquals("<Id>1</Id>", order.to("Id").dumpXml(UTF_8, NX.Feature.DUMP_WITHOUT_XML_DECLARATION));
+        assertEquals("NOK", order.attr("currencyCode").text());
+    }
+
+    @Test
+    void clearErrorsOutsideTheProjection() {
+        NX.Cursor envelope = new NX().from(xml, ids);
+        NX.Cursor response = envelope.to("Body", "GetOrdersResponse");
+        NX.Cursor order = response.to(0, "Order");
+
+        NX.OutsideProjection header = assertThrows(NX.OutsideProjection.class, () -> envelope.to("Header"));
+        assertEquals("soap:Envelope -- 'Header' is outside the projection [Envelope/Body/*/Order/Id, @currencyCode]", header.getMessage());
+
+        assertThrows(NX.OutsideProjection.class, () -> envelope.toOptional("Header"));
+        assertThrows(NX.OutsideProjection.class, () -> response.count("Summary"));
+        assertThrows(NX.OutsideProjection.class, () -> response.hasChildNode("Summary"));
+        assertThrows(NX.OutsideProjection.class, () -> order.to("Lines"));
+        assertThrows(NX.OutsideProjection.class, () -> order.extractCollection("Line", NX.Cursor::text));
+        assertThrows(NX.OutsideProjection.class, () -> order.attr("status"));
+        assertThrows(NX.OutsideProjection.class, () -> envelope.attr("version"));
+        assertThrows(NX.OutsideProjection.class, order::text);
+        assertThrows(NX.OutsideProjection.class, order::extractInt);
+    }
+
+    @Test
+    void partialElementsCantBeDumpedOrSearched() {
+        NX.Cursor response = new NX().from(xml, ids).to("Body", "GetOrdersResponse");
+        NX.Cursor order = response.to(0, "Order");
+
+        assertThrows(NX.OutsideProjection.class, () -> order.dumpXml(UTF_8));
+        assertThrows(NX.OutsideProjection.class, () -> response.dumpXml(new ByteArrayOutputStream(), UTF_8));
+        assertThrows(NX.OutsideProjection.class, () -> response.require(child -> "Summary".equals(child.name())));
+        assertThrows(NX.OutsideProjection.class, () -> order.require(child -> true));
+
+        assertEquals("1", order.to("Id").require(child -> true).text());
+    }
+
+    @Test
+    void missesWithinTheProjectionAreReportedAsUsual() {
+        NX.Cursor order = new NX().from(xml, NX.projection("Envelope/Body/*/Order/Id", "Envelope/Body/*/Order/Reference")).to("Body", "GetOrdersResponse").to(0, "Order");
+
+        assertThrows(NX.MissingNode.class, () -> order.to("Reference"));
+        assertFalse(order.hasChildNode("Reference"));
+        assertThrows(NX.MissingAttribute.class, () -> order.to("Id").attr("missing"));
+        assertEquals("1", order.to("Id").text());
+    }
+
+    @Test
+    void wholeSubtreesAndAttributePaths() {
+        NX.Projection projection = NX.projection("soap:Envelope/soap:Body/GetOrdersResponse/Summary", "Envelope/Body/GetOrdersResponse/Order/@status");
+        NX.Cursor response = new NX().from(new ByteArrayInputStream(xml.getBytes(UTF_8)), new NX.ReadContext(null), projection).to("Body", "GetOrdersResponse");
+
+        assertEquals("Two orders", response.to("Summary").text());
+        assertEquals("closed", response.to(1, "Order").attr("status").text());
+        assertThrows(NX.OutsideProjection.class, () -> response.to(1, "Order").attr("currencyCode"));
+        assertThrows(NX.OutsideProjection.class, () -> response.to(1, "Order").to("Id"));
+    }
+
+    @Test
+    void documentElementOutsideTheProjection() {
+        NX.Cursor root = new NX().from(xml, NX.projection("Other/Id"));
+
+        assertEquals("soap:Envelope", root.name());
+        assertThrows(NX.OutsideProjection.class, () -> root.to("Body"));
+    }
+
+    @Test
+    void invalidPaths() {
+        assertThrows(IllegalArgumentException.class, () -> NX.projection("a//b"));
+        assertThrows(IllegalArgumentException.class, () -> NX.projection("a/@b/c"));
+        assertThrows(IllegalArgumentException.class, () -> NX.projection("a/b[1]"));
+        assertThrows(IllegalArgumentException.class, () -> NX.projection(""));
+        assertEquals(Arrays.asList("a/b", "@c"), NX.projection("a/b", "@c").paths());
+    }
+
+}
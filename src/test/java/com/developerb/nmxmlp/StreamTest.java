@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamTest extends AbstractNXTest {
+
+    private final NX.Extractor<String> countryName = country -> country.attr("countryName").text();
+
+    @Test
+    void streamMatchingChildren() {
+        NX.Cursor countries = parseResource("data/countries.xml");
+        List<String> expected = countries.extractCollection("country", countryName);
+
+        assertEquals(expected, countries.stream("country").map(countryName::transform).collect(Collectors.toList()));
+        assertEquals(expected, countries.freeze().stream("country").map(countryName::transform).collect(Collectors.toList()));
+        assertEquals(0, countries.stream("missing").count());
+        assertEquals(0, countries.toOptional("missing").stream("country").count());
+    }
+
+    @Test
+    void streamedCursorsKnowTheirPosition() {
+        NX.Cursor countries = parseResource("data/countries.xml");
+        NX.Cursor tenth = countries.stream("country").skip(10).findFirst().orElseThrow(IllegalStateException::new);
+
+        assertEquals("countries >> country[10]", tenth.describePath());
+        assertEquals("countries >> country[10]", countries.freeze().stream("country").skip(10).findFirst().orElseThrow(IllegalStateException::new).describePath());
+    }
+
+    @Test
+    void onlyReadOnlyDocumentsAreSplit() {
+        NX.Cursor countries = parseResource("data/countries.xml");
+
+        assertNull(countries.stream("country").spliterator().trySplit());
+
+        Spliterator<NX.Cursor> spliterator = countries.freeze().stream("country").spliterator();
+        long size = spliterator.estimateSize();
+        Spliterator<NX.Cursor> prefix = spliterator.trySplit();
+
+        assertNotNull(prefix);
+        assertEquals(size, prefix.estimateSize() + spliterator.estimateSize());
+        assertTrue(prefix.hasCharacteristics(Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED));
+    }
+
+    @Test
+    void parallelStreamKeepsDocumentOrder() {
+        NX.Cursor countries = parseResource("data/countries.xml").freeze();
+        List<String> expected = countries.extractCollection("country", countryName);
+
+        assertEquals(expected, countries.stream("country").parallel().map(countryName::transform).collect(Collectors.toList()));
+    }
+
+    @Test
+    void extractCollectionParallel() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            NX.Cursor countries = parseResource("data/countries.xml");
+            List<String> expected = countries.extractCollection("country", countryName);
+
+            assertEquals(expected, countries.extractCollectionParallel("country", countryName, pool));
+            assertEquals(expected, countries.freeze().extractCollectionParallel("country", countryName, pool));
+            assertTrue(countries.extractCollectionParallel("missing", countryName, pool).isEmpty());
+            assertTrue(countries.toOptional("missing").extractCollectionParallel("country", countryName, pool).isEmpty());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import com.google.common.io.Resources;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class StreamingTest {
+
+    private final NX nx = new NX();
+
+    @Test
+    void streamRecords() {
+        List<Integer> numbers = new ArrayList<>();
+
+        nx.stream(stream("<numbers><n>1</n><skipped><n>100</n></skipped><n>2</n><N>3</N></numbers>"), "numbers", "n")
+                .extract(Integer.class, numbers::add);
+
+        assertThat(numbers)
+                .as("Streamed numbers")
+                .containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void streamCountries() throws IOException {
+        AtomicInteger europeans = new AtomicInteger();
+
+        nx.stream(Resources.getResource("data/countries.xml").openStream(), "countries", "country")
+                .iterate(country -> {
+                    if ("EU".equals(country.attr("continent").text())) {
+                        europeans.incrementAndGet();
+                    }
+                });
+
+        assertEquals(53, europeans.get());
+    }
+
+    @Test
+    void streamNestedRecordsRetainsNamespaces() throws IOException {
+        List<String> queries = new ArrayList<>();
+
+        nx.stream(Resources.getResource("soap/soap-request.xml").openStream(), "Envelope", "Body", "getAdUnitsByStatement")
+                .iterate(cursor -> {
+                    queries.add(cursor.to("filterStatement", "query").text());
+
+                    assertEquals("getAdUnitsByStatement", cursor.describePath());
+                    assertThat(cursor.dumpXml(UTF_8, NX.Feature.DUMP_WITHOUT_XML_DECLARATION))
+                            .as("Dumped record")
+                            .startsWith("<getAdUnitsByStatement xmlns=\"https://www.google.com/apis/ads/publisher/v201403\"");
+                });
+
+        assertThat(queries)
+                .as("Streamed queries")
+                .containsExactly("WHERE parentId IS NULL LIMIT 500");
+    }
+
+    @Test
+    void recordPositionIsIncludedInPath() {
+        List<String> paths = new ArrayList<>();
+
+        nx.stream(stream("<people><person /><person /></people>"), "people", "person")
+                .iterate(cursor -> paths.add(cursor.describePath()));
+
+        assertThat(paths)
+                .as("Record paths")
+                .containsExactly("person", "person[1]");
+    }
+
+    @Test
+    void noRecordsWhenRootDoesNotMatch() {
+        AtomicInteger count = new AtomicInteger();
+
+        nx.stream(stream("<people><person /></people>"), "animals", "person")
+                .iterate(cursor -> count.incrementAndGet());
+
+        assertEquals(0, count.get());
+    }
+
+    @Test
+    void recordsCanOnlyBeReadOnce() {
+        NX.Records records = nx.stream(stream("<people><person /></people>"), "people", "person");
+        records.iterate(cursor -> { });
+
+        try {
+            records.iterate(cursor -> { });
+            fail("Should not be able to read records twice");
+        } catch (IllegalStateException ex) {
+            assertThat(ex)
+                    .as("Expected exception")
+                    .hasMessage("Records have already been read");
+        }
+    }
+
+    @Test
+    void streamInvalidXml() {
+        try {
+            nx.stream(stream("<people><person></people>"), "people", "person").iterate(cursor -> { });
+            fail("Should not have accepted invalid xml");
+        } catch (NX.Ex ex) {
+            assertThat(ex)
+                    .as("Expected exception")
+                    .hasMessage("Failed to stream xml records");
+        }
+    }
+
+    private static ByteArrayInputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(UTF_8));
+    }
+
+}
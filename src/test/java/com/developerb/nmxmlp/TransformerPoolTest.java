@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.developerb.nmxmlp.NX.Feature.DUMP_INDENTED_XML;
+import static com.developerb.nmxmlp.NX.Feature.DUMP_WITHOUT_XML_DECLARATION;
+import static com.developerb.nmxmlp.NX.Feature.RETAIN_DTD;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransformerPoolTest {
+
+    private final NX nx = new NX();
+
+    @Test
+    void pooledTransformersKeepTheirFeatures() {
+        NX.Cursor root = nx.from("<a><b>value</b></a>");
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("<a><b>value</b></a>", root.dumpXml(UTF_8, DUMP_WITHOUT_XML_DECLARATION));
+            assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><a><b>value</b></a>", root.dumpXml(UTF_8));
+            assertEquals("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><a><b>value</b></a>", root.dumpXml(ISO_8859_1));
+            assertEquals(root.dumpXml(UTF_8, DUMP_INDENTED_XML, DUMP_WITHOUT_XML_DECLARATION), root.dumpXml(UTF_8, DUMP_WITHOUT_XML_DECLARATION, DUMP_INDENTED_XML));
+        }
+    }
+
+    @Test
+    void documentTypeDoesNotLeakBetweenDumps() {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<!DOCTYPE root PUBLIC \"NONE\" \"test://validation.dtd\">\n" +
+                "<root><name>test</name></root>";
+
+        NX.Cursor withDtd = nx.from(xml, new NX.ReadContext((publicId, systemId) -> new InputSource(new StringReader(""))));
+        NX.Cursor withoutDtd = nx.from("<root><name>test</name></root>");
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(xml, withDtd.dumpXml(UTF_8, RETAIN_DTD));
+            assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><root><name>test</name></root>", withoutDtd.dumpXml(UTF_8, RETAIN_DTD));
+        }
+    }
+
+    @Test
+    void dumpConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                final NX.Cursor cursor = nx.from("<n>" + i + "</n>");
+                futures.add(executor.submit(() -> cursor.dumpXml(UTF_8, DUMP_WITHOUT_XML_DECLARATION)));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals("<n>" + i + "</n>", futures.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlightRecorderTest {
+
+    private final String xml = "<people><person name='Prototype' /></people>";
+
+    @Test
+    void operationsAreRecorded() throws IOException {
+        List<RecordedEvent> events = record(() -> {
+            NX.Cursor cursor = new NX().from(xml);
+            cursor.insertCollection("person", Arrays.asList("Nasse Nøff", "Donald Duck"), (person, name) -> person.attr("name").text(name));
+            cursor.extractCollection("person", person -> person.attr("name").text());
+            cursor.dumpXml(UTF_8);
+        });
+
+        RecordedEvent parse = single(events, "com.developerb.nmxmlp.Parse");
+        assertEquals(xml.getBytes().length, parse.getLong("size"));
+        assertEquals(2, parse.getInt("nodes"));
+        assertEquals("people", parse.getString("path"));
+
+        RecordedEvent insert = single(events, "com.developerb.nmxmlp.InsertCollection");
+        assertEquals(2, insert.getInt("items"));
+        assertEquals("people", insert.getString("path"));
+
+        assertEquals(2, single(events, "com.developerb.nmxmlp.ExtractCollection").getInt("items"));
+        assertTrue(single(events, "com.developerb.nmxmlp.Dump").getLong("size") > 0);
+    }
+
+    @Test
+    void compactTreesAreRecorded() throws IOException {
+        List<RecordedEvent> events = record(() -> {
+            NX.Cursor cursor = new NX(EnumSet.of(NX.ConfigFeature.COMPACT_TREE)).from(xml);
+            cursor.extractCollection("person", person -> person.attr("name").text());
+            cursor.to("person").dumpXml(UTF_8);
+        });
+
+        assertEquals(2, single(events, "com.developerb.nmxmlp.Parse").getInt("nodes"));
+        assertEquals(1, single(events, "com.developerb.nmxmlp.ExtractCollection").getInt("items"));
+        assertEquals("people >> person", single(events, "com.developerb.nmxmlp.Dump").getString("path"));
+    }
+
+    @Test
+    void nothingIsRecordedWithoutRecording() {
+        assertTrue(Events.parse() == TracedOperation.NONE);
+        assertTrue(Events.dump() == TracedOperation.NONE);
+    }
+
+    private List<RecordedEvent> record(Runnable operations) throws IOException {
+        Path file = Files.createTempFile("nmxmlp", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] { "Parse", "Dump", "InsertCollection", "ExtractCollection" }) {
+                recording.enable("com.developerb.nmxmlp." + name).withThreshold(Duration.ZERO);
+            }
+
+            recording.start();
+            operations.run();
+            recording.stop();
+            recording.dump(file);
+
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().startsWith("com.developerb.nmxmlp."))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> named = events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+
+        assertEquals(1, named.size(), name);
+        assertNotNull(named.get(0).getDuration());
+
+        return named.get(0);
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.developerb.nmxmlp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualThreadTest {
+
+    private final NX nx = new NX(EnumSet.of(NX.ConfigFeature.VIRTUAL_THREADS));
+
+    @Test
+    void virtualThreadsAreDetected() throws Exception {
+        assertFalse(Threads.isVirtual());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            assertTrue(executor.submit(Threads::isVirtual).get());
+        }
+    }
+
+    @Test
+    void parseFromTenThousandVirtualThreads() throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 10000; i++) {
+                final int number = i;
+                futures.add(executor.submit(() -> nx.from(slowStream("<root><n>" + number + "</n></root>"), new NX.ReadContext(null)).to("n").extractInt()));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(i, futures.get(i).get().intValue());
+            }
+        }
+    }
+
+    @Test
+    void dumpFromVirtualThreads() throws Exception {
+        NX.Cursor cursor = nx.from("<people><person name='Nasse Nøff'/></people>");
+        String expected = cursor.dumpXml(UTF_8);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            String dumped = executor.submit(() -> {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                cursor.dumpXml(output, UTF_8);
+
+                return new String(output.toByteArray(), UTF_8);
+            }).get();
+
+            assertEquals(expected, dumped);
+        }
+    }
+
+    /**
+     * Returns a few bytes at a time, yielding the carrier thread between reads
+     */
+    private static InputStream slowStream(String xml) {
+        return new FilterInputStream(new ByteArrayInputStream(xml.getBytes(UTF_8))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                Thread.yield();
+                return super.read(b, off, Math.min(len, 4));
+            }
+        };
+    }
+
+}